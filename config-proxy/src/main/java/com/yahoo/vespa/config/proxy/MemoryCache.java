@@ -13,8 +13,12 @@ import com.yahoo.vespa.defaults.Defaults;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -29,6 +33,9 @@ public class MemoryCache {
     private static final String DEFAULT_DUMP_DIR = Defaults.getDefaults().underVespaHome("var/vespa/cache/config");
 
     private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    // Configs loaded from a snapshot which have not yet been put in the cache again after getting them from upstream
+    private final Set<ConfigCacheKey> unvalidated = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean modified = new AtomicBoolean(false);
 
     public RawConfig get(ConfigCacheKey key) {
         return cache.get(key);
@@ -43,7 +50,33 @@ public class MemoryCache {
         if (config.isError()) return;
 
         log.log(LogLevel.DEBUG, () -> "Putting '" + config + "' into memory cache");
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+        cache.put(key, config);
+        unvalidated.remove(key);
+        modified.set(true);
+    }
+
+    /**
+     * Puts the given config gotten from upstream for the given key in this cache, and returns the config to serve
+     * to clients. That is the given config, unless it is an error and the config for the key was loaded from a
+     * snapshot and is not yet validated. The snapshot config is then served instead, so clients keep the config
+     * they had before a restart while upstream fails. It is still unvalidated, and is replaced when upstream
+     * returns config.
+     */
+    RawConfig putFromUpstream(ConfigCacheKey key, RawConfig config) {
+        put(config);
+        if ( ! config.isError() || ! unvalidated.contains(key)) return config;
+
+        RawConfig snapshotConfig = cache.get(key);
+        return snapshotConfig != null ? snapshotConfig : config;
+    }
+
+    /**
+     * Returns whether the config with the given key, if any, has been validated against upstream,
+     * i.e. that it was not loaded from a snapshot and not yet gotten from upstream since.
+     */
+    boolean isValidated(ConfigCacheKey key) {
+        return ! unvalidated.contains(key);
     }
 
     boolean containsKey(ConfigCacheKey key) {
@@ -60,6 +93,39 @@ public class MemoryCache {
 
     public void clear() {
         cache.clear();
+        unvalidated.clear();
+        modified.set(true);
+    }
+
+    /**
+     * Loads the configs in the given snapshot file into this cache. The loaded configs are
+     * not validated until they are put in this cache again. A missing or invalid snapshot is ignored.
+     */
+    void loadSnapshot(Path file) {
+        try {
+            List<RawConfig> configs = MemoryCacheSnapshot.read(file);
+            for (RawConfig config : configs) {
+                ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+                if (cache.putIfAbsent(key, config) == null)
+                    unvalidated.add(key);
+            }
+            log.log(LogLevel.INFO, "Loaded " + configs.size() + " configs from snapshot '" + file + "'");
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not load config snapshot '" + file + "', starting with an empty cache", e);
+        }
+    }
+
+    /** Writes the configs in this cache to the given snapshot file, if this cache has changed since the last snapshot */
+    void saveSnapshot(Path file) {
+        if ( ! modified.getAndSet(false)) return;
+
+        try {
+            MemoryCacheSnapshot.write(cache.values(), file);
+            log.log(LogLevel.DEBUG, () -> "Wrote config snapshot '" + file + "'");
+        } catch (IOException | RuntimeException e) {
+            modified.set(true);
+            log.log(LogLevel.WARNING, "Could not write config snapshot '" + file + "'", e);
+        }
     }
 
     @Override
@@ -0,0 +1,172 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.text.Utf8;
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes snapshots of the configs in a {@link MemoryCache}, so that a restarted proxy can serve
+ * config before it has been able to get it from upstream.
+ *
+ * A snapshot is a header, the configs and a CRC32 checksum of everything before it. It is written to a
+ * temporary file which is then atomically moved in place, so a reader sees either the previous or the new
+ * snapshot. Snapshots which are truncated, have the wrong checksum or are of another version are not used.
+ *
+ * @author agent
+ */
+class MemoryCacheSnapshot {
+
+    private static final int magic = 0x56435053; // "VCPS"
+    private static final int version = 1;
+
+    private MemoryCacheSnapshot() {}
+
+    /** Writes the given configs to the given file, replacing any existing snapshot atomically */
+    static void write(Collection<RawConfig> configs, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 checksum = new CRC32();
+            try (OutputStream fileOut = Files.newOutputStream(tmp)) {
+                DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut), checksum));
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.writeInt(configs.size());
+                for (RawConfig config : configs)
+                    writeConfig(config, out);
+                out.flush();
+                // The checksum itself is not part of what it covers
+                new DataOutputStream(fileOut).writeLong(checksum.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads the configs in the given snapshot file.
+     *
+     * @return the configs in the snapshot, or an empty list if there is no snapshot file
+     * @throws IllegalArgumentException if the file is not a valid snapshot
+     */
+    static List<RawConfig> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 3 * Integer.BYTES + Long.BYTES) throw new IllegalArgumentException("Snapshot is truncated");
+            if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Snapshot is too large");
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer content = buffer.duplicate();
+            content.limit((int) size - Long.BYTES);
+            CRC32 checksum = new CRC32();
+            checksum.update(content.duplicate());
+            if (checksum.getValue() != buffer.getLong(content.limit()))
+                throw new IllegalArgumentException("Snapshot has wrong checksum");
+
+            if (content.getInt() != magic) throw new IllegalArgumentException("Not a config proxy snapshot");
+            int snapshotVersion = content.getInt();
+            if (snapshotVersion != version) throw new IllegalArgumentException("Unknown snapshot version " + snapshotVersion);
+            int count = content.getInt();
+            List<RawConfig> configs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                configs.add(readConfig(content));
+            return configs;
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+    }
+
+    private static void writeConfig(RawConfig config, DataOutputStream out) throws IOException {
+        writeString(config.getName(), out);
+        writeString(config.getConfigId(), out);
+        writeString(config.getNamespace(), out);
+        writeString(config.getDefMd5(), out);
+        writeString(config.getConfigMd5(), out);
+        out.writeLong(config.getGeneration());
+        out.writeBoolean(config.isInternalRedeploy());
+        List<String> defContent = config.getDefContent();
+        out.writeInt(defContent.size());
+        for (String line : defContent)
+            writeString(line, out);
+        out.writeBoolean(config.getVespaVersion().isPresent());
+        if (config.getVespaVersion().isPresent())
+            writeString(config.getVespaVersion().get().toString(), out);
+
+        Payload payload = config.getPayload();
+        writeString(payload.getCompressionInfo().getCompressionType().name(), out);
+        out.writeInt(payload.getCompressionInfo().getUncompressedSize());
+        byte[] data = new byte[payload.getData().getByteLength()];
+        payload.getData().wrap().get(data);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static RawConfig readConfig(ByteBuffer in) {
+        String name = readString(in);
+        String configId = readString(in);
+        String namespace = readString(in);
+        String defMd5 = readString(in);
+        String configMd5 = readString(in);
+        long generation = in.getLong();
+        boolean internalRedeploy = in.get() != 0;
+        int defContentSize = in.getInt();
+        List<String> defContent = new ArrayList<>(defContentSize);
+        for (int i = 0; i < defContentSize; i++)
+            defContent.add(readString(in));
+        Optional<VespaVersion> vespaVersion = (in.get() != 0) ? Optional.of(VespaVersion.fromString(readString(in)))
+                                                              : Optional.empty();
+
+        CompressionType compressionType = CompressionType.parse(readString(in));
+        int uncompressedSize = in.getInt();
+        Payload payload = Payload.from(new Utf8Array(readBytes(in)), CompressionInfo.create(compressionType, uncompressedSize));
+
+        return new RawConfig(new ConfigKey<>(name, configId, namespace), defMd5, payload, configMd5, generation,
+                             internalRedeploy, defContent, vespaVersion);
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = Utf8.toBytes(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        return Utf8.toString(readBytes(in));
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new IllegalArgumentException("Snapshot is corrupt");
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+}
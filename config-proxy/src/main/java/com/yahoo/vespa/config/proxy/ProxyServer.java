@@ -13,10 +13,15 @@ import com.yahoo.log.event.Event;
 import com.yahoo.system.CatchSigTerm;
 import com.yahoo.vespa.config.*;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
+import com.yahoo.vespa.defaults.Defaults;
 import com.yahoo.vespa.filedistribution.FileDistributionRpcServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -37,6 +42,8 @@ public class ProxyServer implements Runnable {
 
     private static final int DEFAULT_RPC_PORT = 19090;
     static final String DEFAULT_PROXY_CONFIG_SOURCES = "tcp/localhost:19070";
+    private static final String DEFAULT_CACHE_SNAPSHOT = Defaults.getDefaults().underVespaHome("var/vespa/cache/configproxy/cache.snapshot");
+    private static final int CACHE_SNAPSHOT_INTERVAL_SECONDS = 60;
 
     final static Logger log = Logger.getLogger(ProxyServer.class.getName());
     private final AtomicBoolean signalCaught = new AtomicBoolean(false);
@@ -46,6 +53,7 @@ public class ProxyServer implements Runnable {
     private final Supervisor supervisor = new Supervisor(new Transport());
     private final ClientUpdater clientUpdater;
     private ScheduledFuture<?> delayedResponseScheduler;
+    private ScheduledFuture<?> cacheSnapshotScheduler;
 
     private final ConfigProxyRpcServer rpcServer;
     final DelayedResponses delayedResponses;
@@ -56,6 +64,7 @@ public class ProxyServer implements Runnable {
     private final ConfigProxyStatistics statistics;
     private final TimingValues timingValues;
     private final MemoryCache memoryCache;
+    private final Optional<Path> cacheSnapshot;
     private static final double timingValuesRatio = 0.8;
     private final static TimingValues defaultTimingValues;
     private final boolean delayedResponseHandling;
@@ -76,7 +85,7 @@ public class ProxyServer implements Runnable {
     private ProxyServer(Spec spec, DelayedResponses delayedResponses, ConfigSourceSet source,
                         ConfigProxyStatistics statistics, TimingValues timingValues,
                         boolean delayedResponseHandling, MemoryCache memoryCache,
-                        ConfigSourceClient configClient) {
+                        Optional<Path> cacheSnapshot, ConfigSourceClient configClient) {
         this.delayedResponses = delayedResponses;
         this.configSource = source;
         log.log(LogLevel.DEBUG, "Using config source '" + source);
@@ -84,10 +93,11 @@ public class ProxyServer implements Runnable {
         this.timingValues = timingValues;
         this.delayedResponseHandling = delayedResponseHandling;
         this.memoryCache = memoryCache;
+        this.cacheSnapshot = cacheSnapshot;
         this.rpcServer = createRpcServer(spec);
         clientUpdater = new ClientUpdater(rpcServer, statistics, delayedResponses);
         this.configClient = createClient(clientUpdater, delayedResponses, source, timingValues, memoryCache, configClient);
-        this.fileDownloader = new FileDownloader(new JRTConnectionPool(source));
+        this.fileDownloader = new FileDownloader(new JRTConnectionPool(source), fileDistributionPeers());
         new FileDistributionRpcServer(supervisor, fileDownloader);
         new UrlDownloadRpcServer(supervisor);
     }
@@ -103,7 +113,7 @@ public class ProxyServer implements Runnable {
         final boolean delayedResponseHandling = false;
         return new ProxyServer(null, new DelayedResponses(statistics),
                                source, statistics, defaultTimingValues(), delayedResponseHandling,
-                               memoryCache, configSourceClient);
+                               memoryCache, Optional.empty(), configSourceClient);
     }
 
     public void run() {
@@ -121,6 +131,9 @@ public class ProxyServer implements Runnable {
         } else {
             log.log(LogLevel.INFO, "Running without delayed response handling");
         }
+        cacheSnapshot.ifPresent(file -> cacheSnapshotScheduler =
+                scheduler.scheduleAtFixedRate(() -> memoryCache.saveSnapshot(file),
+                                              CACHE_SNAPSHOT_INTERVAL_SECONDS, CACHE_SNAPSHOT_INTERVAL_SECONDS, SECONDS));
     }
 
     RawConfig resolveConfig(JRTServerConfigRequest req) {
@@ -213,8 +226,11 @@ public class ProxyServer implements Runnable {
 
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         DelayedResponses delayedResponses = new DelayedResponses(statistics);
+        // Serve config from the snapshot written before the last stop while getting it from upstream
+        MemoryCache memoryCache = new MemoryCache();
+        properties.cacheSnapshot.ifPresent(memoryCache::loadSnapshot);
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), delayedResponses, configSources, statistics,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, memoryCache, properties.cacheSnapshot, null);
         // catch termination signal
         proxyServer.setupSigTermHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -227,16 +243,30 @@ public class ProxyServer implements Runnable {
         // Read system properties
         long eventInterval = Long.getLong("eventinterval", ConfigProxyStatistics.defaultEventInterval);
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(eventInterval, inputConfigSources);
+        // An empty value disables cache snapshots
+        String cacheSnapshot = System.getProperty("proxycachesnapshot", DEFAULT_CACHE_SNAPSHOT);
+        return new Properties(eventInterval, inputConfigSources,
+                              cacheSnapshot.isEmpty() ? Optional.empty() : Optional.of(Paths.get(cacheSnapshot)));
+    }
+
+    // Other nodes which may serve file references they have downloaded, given as a comma-separated list of specs
+    // (e.g. tcp/host1:19090,tcp/host2:19090). vespa-config-ctl.sh sets this from VESPA_FILEDISTRIBUTION_PEERS, which may be
+    // set in conf/vespa/default-env.txt
+    private static Optional<ConnectionPool> fileDistributionPeers() {
+        String peers = System.getProperty("filedistributionpeers", "");
+        if (peers.isEmpty()) return Optional.empty();
+        return Optional.of(new JRTConnectionPool(Arrays.asList(peers.split(","))));
     }
 
     static class Properties {
         final long eventInterval;
         final String[] configSources;
+        final Optional<Path> cacheSnapshot;
 
-        Properties(long eventInterval, String[] configSources) {
+        Properties(long eventInterval, String[] configSources, Optional<Path> cacheSnapshot) {
             this.eventInterval = eventInterval;
             this.configSources = configSources;
+            this.cacheSnapshot = cacheSnapshot;
         }
     }
 
@@ -263,6 +293,8 @@ public class ProxyServer implements Runnable {
         Event.stopping("configproxy", "shutdown");
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
+        if (cacheSnapshotScheduler != null) cacheSnapshotScheduler.cancel(false);
+        cacheSnapshot.ifPresent(memoryCache::saveSnapshot);
         flush();
         if (statistics != null) {
             statistics.stop();
@@ -132,7 +132,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                     ret = cachedConfig;
                 }
             }
-            if (!cachedConfig.isError()) {
+            // Configs loaded from a snapshot at startup are served, but must still be gotten from upstream
+            if (!cachedConfig.isError() && memoryCache.isValidated(configCacheKey)) {
                 needToGetConfig = false;
             }
         }
@@ -7,6 +7,7 @@ import com.yahoo.config.subscription.impl.GenericConfigHandle;
 import com.yahoo.config.subscription.impl.GenericConfigSubscriber;
 import com.yahoo.config.subscription.impl.JRTConfigRequester;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.yolean.Exceptions;
 import com.yahoo.vespa.config.RawConfig;
@@ -71,8 +72,11 @@ public class UpstreamConfigSubscriber implements Subscriber {
                     "', generation=" + newConfig.getGeneration() +
                     ", payload=" + newConfig.getPayload());
         }
-        memoryCache.put(newConfig);
-        clientUpdater.updateSubscribers(newConfig);
+        RawConfig configToServe = memoryCache.putFromUpstream(new ConfigCacheKey(config.getKey(), config.getDefMd5()), newConfig);
+        if (configToServe != newConfig)
+            log.log(LogLevel.WARNING, "Got error " + newConfig.errorCode() + " for '" + newConfig.getKey() +
+                                      "' from upstream, serving config loaded from snapshot");
+        clientUpdater.updateSubscribers(configToServe);
     }
 
     @Override
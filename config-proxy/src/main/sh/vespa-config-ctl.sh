@@ -105,6 +105,7 @@ case $1 in
     start)
         nohup sbin/vespa-retention-enforcer > ${LOGDIR}/vre-start.log 2>&1 </dev/null &
         configsources=`bin/vespa-print-default configservers_rpc`
+        filedistributionpeers=${VESPA_FILEDISTRIBUTION_PEERS}
         userargs=$vespa_base__jvmargs_configproxy
         if [ "$userargs" == "" ]; then
             userargs=$services__jvmargs_configproxy
@@ -117,7 +118,8 @@ case $1 in
         vespa-runserver -r 10 -s configproxy -p $P_CONFIG_PROXY -- \
             java ${jvmopts} \
                  -XX:+ExitOnOutOfMemoryError $(getJavaOptionsIPV46) \
-                 -Dproxyconfigsources="${configsources}" ${userargs} \
+                 -Dproxyconfigsources="${configsources}" \
+                 -Dfiledistributionpeers="${filedistributionpeers}" ${userargs} \
                  -cp $cp com.yahoo.vespa.config.proxy.ProxyServer 19090
 
         echo "Waiting for config proxy to start"
@@ -8,8 +8,13 @@ import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.Payload;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Optional;
 
@@ -46,6 +51,9 @@ public class MemoryCacheTest {
     private Payload payload2;
     private Payload payloadDifferentMd5;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void setup() {
         ArrayList<String> defContent = new ArrayList<>();
@@ -121,4 +129,53 @@ public class MemoryCacheTest {
         cache.clear();
         assertThat(cache.size(), is(0));
     }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        Path snapshot = temporaryFolder.getRoot().toPath().resolve("snapshot");
+        MemoryCache cache = new MemoryCache();
+        cache.put(config);
+        cache.put(config2);
+        cache.saveSnapshot(snapshot);
+
+        MemoryCache restored = new MemoryCache();
+        restored.loadSnapshot(snapshot);
+        assertThat(restored.size(), is(2));
+        assertThat(restored.get(cacheKey), is(config));
+        assertThat(restored.get(cacheKey2), is(config2));
+        assertThat(restored.get(cacheKey2).getPayload().getData(), is(payload2.getData()));
+        assertFalse(restored.isValidated(cacheKey));
+        assertFalse(restored.isValidated(cacheKey2));
+
+        restored.put(config);
+        assertTrue(restored.isValidated(cacheKey));
+        assertFalse(restored.isValidated(cacheKey2));
+
+        // Errors from upstream are not cached, and the snapshot config is served instead until upstream returns config
+        RawConfig error = new RawConfig(configKey2, defMd52, payload2, configMd5, generation + 1, false, 1,
+                                        config2.getDefContent(), Optional.empty());
+        assertThat(restored.putFromUpstream(cacheKey2, error), is(config2));
+        assertThat(restored.get(cacheKey2), is(config2));
+        assertFalse(restored.isValidated(cacheKey2));
+        RawConfig validated = new RawConfig(configKey2, defMd52, payload2, configMd5, generation + 2, false,
+                                            config2.getDefContent(), Optional.empty());
+        assertThat(restored.putFromUpstream(cacheKey2, validated), is(validated));
+        assertTrue(restored.isValidated(cacheKey2));
+        assertThat(restored.putFromUpstream(cacheKey2, error), is(error));
+        assertThat(restored.get(cacheKey2), is(validated));
+
+        // Corrupt snapshot is ignored
+        byte[] content = Files.readAllBytes(snapshot);
+        content[content.length / 2] ^= 1;
+        Files.write(snapshot, content);
+        MemoryCache fromCorrupt = new MemoryCache();
+        fromCorrupt.loadSnapshot(snapshot);
+        assertThat(fromCorrupt.size(), is(0));
+
+        // Missing snapshot is ignored
+        MemoryCache fromMissing = new MemoryCache();
+        fromMissing.loadSnapshot(temporaryFolder.getRoot().toPath().resolve("missing"));
+        assertThat(fromMissing.size(), is(0));
+    }
+
 }
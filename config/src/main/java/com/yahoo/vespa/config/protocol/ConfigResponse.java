@@ -39,4 +39,12 @@ public interface ConfigResponse {
 
     CompressionInfo getCompressionInfo();
 
+    /**
+     * Returns the payload of this response compressed using the given compression type, ready to be
+     * put on the wire. Implementations may cache the result, as responses are shared between requests.
+     */
+    default Payload getPayload(CompressionType compressionType) {
+        return Payload.from(getPayload(), getCompressionInfo()).withCompression(compressionType);
+    }
+
 }
@@ -11,6 +11,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for serializing config responses based on {@link com.yahoo.slime.Slime} implementing the {@link ConfigResponse} interface.
@@ -26,6 +28,9 @@ public class SlimeConfigResponse implements ConfigResponse {
     private final boolean internalRedeploy;
     private final String configMd5;
 
+    /** The payload in the wire format of each compression type requested so far */
+    private final Map<CompressionType, Payload> payloads = new ConcurrentHashMap<>(2);
+
     public static SlimeConfigResponse fromConfigPayload(ConfigPayload payload, InnerCNode targetDef, long generation,
                                                         boolean internalRedeploy, String configMd5) {
         Utf8Array data = payload.toUtf8Array(true);
@@ -85,7 +90,17 @@ public class SlimeConfigResponse implements ConfigResponse {
 
     @Override
     public void serialize(OutputStream os, CompressionType type) throws IOException {
-        os.write(Payload.from(payload, compressionInfo).withCompression(type).getData().getBytes());
+        os.write(getPayload(type).getData().getBytes());
+    }
+
+    /**
+     * Returns the payload compressed with the given type. The result is kept, such that a response
+     * held in the server cache is only compressed or decompressed once per compression type.
+     */
+    @Override
+    public Payload getPayload(CompressionType compressionType) {
+        return payloads.computeIfAbsent(compressionType,
+                                        type -> Payload.from(payload, compressionInfo).withCompression(type));
     }
 
     @Override
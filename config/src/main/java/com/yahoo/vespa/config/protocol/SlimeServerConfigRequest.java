@@ -71,7 +71,7 @@ abstract class SlimeServerConfigRequest implements JRTServerConfigRequest {
 
     @Override
     public Payload payloadFromResponse(ConfigResponse response) {
-        return Payload.from(response.getPayload(), response.getCompressionInfo());
+        return response.getPayload(getCompressionType());
     }
 
     private DefContent getSchema() {
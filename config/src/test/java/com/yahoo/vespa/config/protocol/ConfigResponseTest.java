@@ -17,6 +17,7 @@ import java.util.List;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -62,4 +63,21 @@ public class ConfigResponseTest {
         assertThat(baos.toString(), is("{\"boolval\":false,\"doubleval\":0.0,\"enumval\":\"VAL1\",\"intval\":0,\"longval\":0,\"stringval\":\"s\"}"));
     }
 
+    @Test
+    public void require_that_slime_response_compresses_payload_once_per_compression_type() {
+        ConfigPayload configPayload = ConfigPayload.fromInstance(new SimpletypesConfig(new SimpletypesConfig.Builder()));
+        Utf8Array data = configPayload.toUtf8Array(true);
+        Utf8Array bytes = new Utf8Array(new LZ4PayloadCompressor().compress(data.getBytes()));
+        ConfigResponse response = new SlimeConfigResponse(bytes, null, 3, false, "mymd5", CompressionInfo.create(CompressionType.LZ4, data.getByteLength()));
+
+        Payload uncompressed = response.getPayload(CompressionType.UNCOMPRESSED);
+        assertThat(uncompressed.getCompressionInfo().getCompressionType(), is(CompressionType.UNCOMPRESSED));
+        assertThat(uncompressed.getData(), is(data));
+        assertSame(uncompressed, response.getPayload(CompressionType.UNCOMPRESSED));
+
+        Payload compressed = response.getPayload(CompressionType.LZ4);
+        assertSame(bytes, compressed.getData());
+        assertSame(compressed, response.getPayload(CompressionType.LZ4));
+    }
+
 }
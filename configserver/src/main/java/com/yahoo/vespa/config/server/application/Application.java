@@ -129,6 +129,7 @@ public class Application implements ModelResult {
                 if (logDebug()) {
                     debug("Found config " + cacheKey + " in cache");
                 }
+                metricUpdater.incCacheHits();
                 metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
                 return config;
             }
@@ -152,6 +153,7 @@ public class Application implements ModelResult {
         metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
         if (useCache(req)) {
             cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
+            metricUpdater.incCacheMisses();
             metricUpdater.setCacheConfigElems(cache.configElems());
             metricUpdater.setCacheChecksumElems(cache.checkSumElems());
         }
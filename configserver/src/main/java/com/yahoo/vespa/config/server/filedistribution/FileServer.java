@@ -17,12 +17,11 @@ import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.server.ConfigServerSpec;
 import com.yahoo.vespa.defaults.Defaults;
-import com.yahoo.vespa.filedistribution.CompressedFileReference;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDataBlob;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
-import com.yahoo.vespa.filedistribution.LazyFileReferenceData;
+import com.yahoo.vespa.filedistribution.FileReferenceSender;
 import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
@@ -140,15 +139,7 @@ public class FileServer {
     }
 
     private FileReferenceData readFileReferenceData(FileReference reference) throws IOException {
-        File file = root.getFile(reference);
-
-        if (file.isDirectory()) {
-            //TODO Here we should compress to file, but then we have to clean up too. Pending.
-            byte [] blob = CompressedFileReference.compress(file.getParentFile());
-            return new FileReferenceDataBlob(reference, file.getName(), FileReferenceData.Type.compressed, blob);
-        } else {
-            return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.file, file);
-        }
+        return FileReferenceSender.readFileReferenceData(reference, root.getFile(reference));
     }
 
     public void serveFile(String fileReference, boolean downloadFromOtherSourceIfNotFound, Request request, Receiver receiver) {
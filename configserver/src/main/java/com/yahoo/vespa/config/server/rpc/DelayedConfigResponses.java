@@ -1,7 +1,6 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server.rpc;
 
-import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jrt.Target;
 import com.yahoo.jrt.TargetWatcher;
 import com.yahoo.log.LogLevel;
@@ -15,12 +14,8 @@ import com.yahoo.vespa.config.server.tenant.TenantRepository;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -28,21 +23,26 @@ import java.util.logging.Logger;
  * Takes care of <i>delayed responses</i> in the config server.
  * A delayed response is a response sent at request (server) timeout
  * for a config which has not changed since the request was initiated.
+ * Timeouts are kept in {@link TimerWheel}s, such that holding a large number of requests
+ * is cheap, and all requests for an application can be released at once when new config is activated.
  *
  * @author hmusum
  */
 public class DelayedConfigResponses {
     private static final Logger log = Logger.getLogger(DelayedConfigResponses.class.getName());
+    private static final long timerTickMillis = 100;
+    private static final int timerWheelSize = 1024;
+
     private final RpcServer rpcServer;
 
-    private final ScheduledExecutorService executorService;
+    private final TimerWheel[] timers;
     private final boolean useJrtWatcher;
 
-    private Map<ApplicationId, MetricUpdater> metrics = new ConcurrentHashMap<>();
+    private final Map<ApplicationId, MetricUpdater> metrics = new ConcurrentHashMap<>();
     
-    /* Requests that resolve to config that has not changed are put on this queue. When reloading
-       config, all requests on this queue are reprocessed as if they were a new request */
-    private final Map<ApplicationId, BlockingQueue<DelayedConfigResponse>> delayedResponses =
+    /* Requests that resolve to config that has not changed are put in this set. When reloading
+       config, all requests in this set are reprocessed as if they were a new request */
+    private final Map<ApplicationId, Set<DelayedConfigResponse>> delayedResponses =
             new ConcurrentHashMap<>();
             
     DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads) {
@@ -52,40 +52,40 @@ public class DelayedConfigResponses {
     // Since JRT does not allow adding watcher for "fake" requests, we must be able to disable it for unit tests :(
     DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads, boolean useJrtWatcher) {
         this.rpcServer = rpcServer;
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(numTimerThreads, ThreadFactoryFactory.getThreadFactory(DelayedConfigResponses.class.getName()));
-        executor.setRemoveOnCancelPolicy(true);
-        this.executorService = executor;
+        this.timers = new TimerWheel[Math.max(1, numTimerThreads)];
+        for (int i = 0; i < timers.length; i++)
+            timers[i] = new TimerWheel(DelayedConfigResponses.class.getName(), timerTickMillis, timerWheelSize);
         this.useJrtWatcher = useJrtWatcher;
     }
 
     List<DelayedConfigResponse> allDelayedResponses() {
         List<DelayedConfigResponse> responses = new ArrayList<>();
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
+        for (Map.Entry<ApplicationId, Set<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
             responses.addAll(entry.getValue());
         }
         return responses;
     }
 
     /**
-     * The run method of this class is run by a Timer when the timeout expires.
-     * The timer associated with this response must be cancelled first.
+     * The run method of this class is run by a timer when the timeout expires, unless
+     * the timeout has been cancelled first.
      */
     class DelayedConfigResponse implements Runnable, TargetWatcher {
 
         final JRTServerConfigRequest request;
-        private final BlockingQueue<DelayedConfigResponse> delayedResponsesQueue;
+        private final Set<DelayedConfigResponse> delayedResponsesSet;
         private final ApplicationId app;
-        private ScheduledFuture<?> future;
+        private volatile TimerWheel.Timeout timeout;
 
-        DelayedConfigResponse(JRTServerConfigRequest req, BlockingQueue<DelayedConfigResponse> delayedResponsesQueue, ApplicationId app) {
+        DelayedConfigResponse(JRTServerConfigRequest req, Set<DelayedConfigResponse> delayedResponsesSet, ApplicationId app) {
             this.request = req;
-            this.delayedResponsesQueue = delayedResponsesQueue;
+            this.delayedResponsesSet = delayedResponsesSet;
             this.app = app;
         }
 
         @Override
-        public synchronized void run() {
-            removeFromQueue();
+        public void run() {
+            removeFromSet();
             removeWatcher();
             rpcServer.addToRequestQueue(request, true, null);
             if (log.isLoggable(LogLevel.DEBUG)) {
@@ -94,10 +94,10 @@ public class DelayedConfigResponses {
         }
 
         /**
-         * Remove delayed response from its queue
+         * Remove delayed response from its set
          */
-        private void removeFromQueue() {
-            delayedResponsesQueue.remove(this);
+        private boolean removeFromSet() {
+            return delayedResponsesSet.remove(this);
         }
 
         JRTServerConfigRequest getRequest() {
@@ -115,22 +115,31 @@ public class DelayedConfigResponses {
             return TenantRepository.logPre(app);
         }
 
-        synchronized void cancelAndRemove() {
-            removeFromQueue();
+        void cancelAndRemove() {
+            removeFromSet();
             cancel();
         }
 
-        synchronized boolean cancel() {
+        /**
+         * Cancels the timeout of this.
+         *
+         * @return true if this was cancelled, false if the timeout has already run or been cancelled
+         */
+        boolean cancel() {
             removeWatcher();
-            if (future == null) {
+            if (timeout == null) {
                 throw new IllegalStateException("Cannot cancel a task that has not been scheduled");
             }
-            return future.cancel(false);
+            return timeout.cancel();
         }
 
-        synchronized void schedule(long delay) throws InterruptedException {
-            delayedResponsesQueue.put(this);
-            future = executorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+        void schedule(long delay) {
+            timeout = timerFor(this).schedule(this, delay, TimeUnit.MILLISECONDS);
+            delayedResponsesSet.add(this);
+            // The timer may have run before this was added to the set
+            if (timeout.isExpired()) {
+                removeFromSet();
+            }
             addWatcher();
         }
 
@@ -158,9 +167,13 @@ public class DelayedConfigResponses {
         }
     }
 
+    private TimerWheel timerFor(DelayedConfigResponse response) {
+        return timers[Math.floorMod(System.identityHashCode(response), timers.length)];
+    }
+
     /**
      * Creates a DelayedConfigResponse object for taking care of requests that should
-     * not be responded to right away.  Puts the object on the delayedResponsesQueue.
+     * not be responded to right away.  Puts the object in the set of delayed responses for the application.
      *
      * NOTE: This method is called from multiple threads, so everything here needs to be
      * thread safe!
@@ -171,53 +184,45 @@ public class DelayedConfigResponses {
         if (request.isDelayedResponse()) {
             log.log(LogLevel.DEBUG, context.logPre()+"Request already delayed");
         } else {            
-            createQueueIfNotExists(context);
-            BlockingQueue<DelayedConfigResponse> delayedResponsesQueue = delayedResponses.get(context.applicationId());
-            DelayedConfigResponse response = new DelayedConfigResponse(request, delayedResponsesQueue, context.applicationId());
+            Set<DelayedConfigResponse> delayedResponsesSet =
+                    delayedResponses.computeIfAbsent(context.applicationId(), __ -> ConcurrentHashMap.newKeySet());
+            DelayedConfigResponse response = new DelayedConfigResponse(request, delayedResponsesSet, context.applicationId());
             request.setDelayedResponse(true);
-            try {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesQueue.size() + " elements): " +
-                            response.getRequest().getShortDescription());
-                }
-                // Config will be resolved in the run() method of DelayedConfigResponse,
-                // when the timer expires or config is updated/reloaded.
-                response.schedule(Math.max(0, request.getTimeout()));
-                metricDelayedResponses(context.applicationId(), delayedResponsesQueue.size());
-            } catch (InterruptedException e) {
-                log.log(LogLevel.WARNING, context.logPre()+"Interrupted when putting on delayed requests queue.");
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesSet.size() + " elements): " +
+                        response.getRequest().getShortDescription());
             }
+            // Config will be resolved in the run() method of DelayedConfigResponse,
+            // when the timer expires or config is updated/reloaded.
+            response.schedule(Math.max(0, request.getTimeout()));
+            metricDelayedResponses(context.applicationId(), delayedResponsesSet.size());
         }
     }
 
-    private synchronized void metricDelayedResponses(ApplicationId app, int elems) {
-        if ( ! metrics.containsKey(app)) {
-            metrics.put(app, rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)));
-        }
-        metrics.get(app).setDelayedResponses(elems);
-    }
-
-    private synchronized void createQueueIfNotExists(GetConfigContext context) {
-        if ( ! delayedResponses.containsKey(context.applicationId())) {
-            delayedResponses.put(context.applicationId(), new LinkedBlockingQueue<>());
-        }
+    private void metricDelayedResponses(ApplicationId app, int elems) {
+        metrics.computeIfAbsent(app, __ -> rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)))
+               .setDelayedResponses(elems);
     }
 
     void stop() {
-        executorService.shutdown();
+        for (TimerWheel timer : timers)
+            timer.stop();
     }
 
     /**
-     * Drains delayed responses queue and returns responses in an array
+     * Removes all delayed responses for an application and returns them in a list
      *
-     * @return and array of DelayedConfigResponse objects
+     * @return a list of DelayedConfigResponse objects
      */
     List<DelayedConfigResponse> drainQueue(ApplicationId app) {
         ArrayList<DelayedConfigResponse> ret = new ArrayList<>();
         
-        if (delayedResponses.containsKey(app)) {
-            BlockingQueue<DelayedConfigResponse> queue = delayedResponses.get(app);
-            queue.drainTo(ret);
+        Set<DelayedConfigResponse> responses = delayedResponses.get(app);
+        if (responses != null) {
+            for (DelayedConfigResponse response : responses) {
+                if (response.removeFromSet())
+                    ret.add(response);
+            }
         }
         metrics.remove(app);
         return ret;
@@ -231,7 +236,7 @@ public class DelayedConfigResponses {
     int size() {
         int totalQueueSize = 0;
         int numQueues = 0;
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
+        for (Map.Entry<ApplicationId, Set<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
             numQueues++;
             totalQueueSize+=e.getValue().size();
         }
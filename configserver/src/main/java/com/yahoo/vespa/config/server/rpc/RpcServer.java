@@ -10,9 +10,7 @@ import com.yahoo.config.provision.HostLivenessTracker;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.component.Version;
 import com.yahoo.jrt.Acceptor;
-import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
-import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.ListenFailedException;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
@@ -42,11 +40,10 @@ import com.yahoo.vespa.config.server.tenant.TenantHandlerProvider;
 import com.yahoo.vespa.config.server.tenant.TenantListener;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 import com.yahoo.vespa.filedistribution.FileDownloader;
-import com.yahoo.vespa.filedistribution.FileReceiver;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceSender;
 
-import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -261,8 +258,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         }
         int responsesSent = 0;
         CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executorService);
-        while (!responses.isEmpty()) {
-            DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse = responses.remove(0);
+        for (DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse : responses) {
             // Discard the ones that we have already answered
             // Doing cancel here deals with the case where the timer is already running or has not run, so
             // there is no need for any extra check.
@@ -463,81 +459,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
 
         @Override
         public void receive(FileReferenceData fileData, FileServer.ReplayStatus status) {
-            int session = sendMeta(fileData);
-            sendParts(session, fileData);
-            sendEof(session, fileData, status);
-        }
-        private void sendParts(int session, FileReferenceData fileData) {
-            ByteBuffer bb = ByteBuffer.allocate(0x100000);
-            for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
-                byte [] buf = bb.array();
-                if (buf.length != bb.position()) {
-                    buf = new byte [bb.position()];
-                    bb.flip();
-                    bb.get(buf);
-                }
-                sendPart(session, fileData.fileReference(), partId, buf);
-                bb.clear();
-            }
-        }
-        private int sendMeta(FileReferenceData fileData) {
-            Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new StringValue(fileData.filename()));
-            request.parameters().add(new StringValue(fileData.type().name()));
-            request.parameters().add(new Int64Value(fileData.size()));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                log.warning("Failed delivering meta for reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
-                        target.toString() + " with error: '" + request.errorMessage() + "'.");
-                return 1;
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-                return request.returnValues().get(1).asInt32();
-            }
-        }
-        private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
-            Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
-            request.parameters().add(new StringValue(ref.value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int32Value(partId));
-            request.parameters().add(new DataValue(buf));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering reference '" + ref.value() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
-        }
-        private void sendEof(int session, FileReferenceData fileData, FileServer.ReplayStatus status) {
-            Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int64Value(fileData.xxhash()));
-            request.parameters().add(new Int32Value(status.getCode()));
-            request.parameters().add(new StringValue(status.getDescription()));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
-        }
-
-        private void invokeRpcIfValidConnection(Request request) {
-            if (target.isValid()) {
-                target.invokeSync(request, 600);
-            } else {
-                throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
-            }
+            new FileReferenceSender(target).send(fileData, status.getCode(), status.getDescription());
         }
     }
 
@@ -0,0 +1,175 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.log.LogLevel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timer wheel for running a large number of tasks with coarse grained timeouts,
+ * such as the responses to config requests held by the config server.
+ *
+ * Scheduling and cancelling a task are both O(1) and lock free: new timeouts are handed over to the
+ * timer thread through a queue, and cancelled timeouts are just marked as such and dropped by the
+ * timer thread when their bucket comes up. Tasks are run by the timer thread, so they should be cheap,
+ * e.g. hand the work over to another executor. A task may run up to one tick later than requested.
+ *
+ * @author agent
+ */
+class TimerWheel {
+
+    private static final Logger log = Logger.getLogger(TimerWheel.class.getName());
+
+    private final long tickNanos;
+    private final int mask;
+    private final Timeout[] buckets;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a timer wheel.
+     *
+     * @param name the name of the timer thread
+     * @param tickMillis the resolution of this timer
+     * @param wheelSize the number of buckets in the wheel, rounded up to a power of two
+     */
+    TimerWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Tick must be positive, was " + tickMillis);
+        if (wheelSize <= 0) throw new IllegalArgumentException("Wheel size must be positive, was " + wheelSize);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.buckets = new Timeout[Math.max(1, size)];
+        this.mask = buckets.length - 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.thread = ThreadFactoryFactory.getDaemonThreadFactory(name).newThread(this::run);
+        thread.start();
+    }
+
+    /** Schedules the given task to be run by the timer thread after the given delay */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay)));
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /** Stops the timer thread. Tasks not yet run are dropped */
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            waitForTick(tick);
+            if ( ! running) break;
+            transferNewTimeouts(tick);
+            expire(tick);
+            tick++;
+        }
+    }
+
+    private void waitForTick(long tick) {
+        long tickEnd = startNanos + (tick + 1) * tickNanos;
+        long remaining;
+        while (running && (remaining = tickEnd - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void transferNewTimeouts(long tick) {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+
+            long deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            int index = (int) (Math.max(deadlineTick, tick) & mask);
+            timeout.next = buckets[index];
+            buckets[index] = timeout;
+        }
+    }
+
+    private void expire(long tick) {
+        int index = (int) (tick & mask);
+        Timeout previous = null;
+        Timeout timeout = buckets[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean remove = true;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                remove = timeout.isCancelled();
+            } else if (timeout.expire()) {
+                runTask(timeout.task);
+            }
+            if (remove) {
+                if (previous == null)
+                    buckets[index] = next;
+                else
+                    previous.next = next;
+                timeout.next = null;
+            } else {
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            log.log(LogLevel.WARNING, "Timer task " + task + " failed", e);
+        }
+    }
+
+    /** A handle to a scheduled task, which can be used to cancel it */
+    static class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> stateUpdater =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = PENDING;
+
+        // Owned by the timer thread
+        private long remainingRounds;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timeout.
+         *
+         * @return true if the task was cancelled, false if it has already run or been cancelled
+         */
+        boolean cancel() {
+            return stateUpdater.compareAndSet(this, PENDING, CANCELLED);
+        }
+
+        boolean isCancelled() { return state == CANCELLED; }
+
+        boolean isExpired() { return state == EXPIRED; }
+
+        private boolean expire() {
+            return stateUpdater.compareAndSet(this, PENDING, EXPIRED);
+        }
+
+    }
+
+}
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -78,6 +80,40 @@ public class DelayedConfigResponseTest {
         assertThat(rpc.latestRequest, is(req));
     }
 
+    @Test
+    public void testManyDelayedConfigResponses() throws IOException, InterruptedException {
+        int subscribers = 50000;
+        AtomicInteger responded = new AtomicInteger();
+        MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder()) {
+            @Override
+            public Boolean addToRequestQueue(JRTServerConfigRequest request, boolean forceResponse, CompletionService<Boolean> completionService) {
+                responded.incrementAndGet();
+                return true;
+            }
+        };
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        ApplicationId activated = ApplicationId.from("tenant", "activated", "default");
+        GetConfigContext activatedContext = GetConfigContext.testContext(activated);
+        GetConfigContext timedOutContext = GetConfigContext.testContext(ApplicationId.defaultId());
+        for (int i = 0; i < subscribers; i++) {
+            responses.delayResponse(createRequest("foo", "md5", "myid/" + i, "mymd5", 3, 1000000, "bar"), activatedContext);
+            responses.delayResponse(createRequest("foo", "md5", "myid/" + i, "mymd5", 3, 100, "bar"), timedOutContext);
+        }
+
+        // All requests held for an application are released at once when a new generation is activated
+        List<DelayedConfigResponses.DelayedConfigResponse> drained = responses.drainQueue(activated);
+        assertThat(drained.size(), is(subscribers));
+        assertTrue(drained.stream().allMatch(DelayedConfigResponses.DelayedConfigResponse::cancel));
+        assertTrue(responses.drainQueue(activated).isEmpty());
+
+        long end = System.currentTimeMillis() + 60_000;
+        while (responded.get() < subscribers && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertThat(responded.get(), is(subscribers));
+        assertThat(responses.size(), is(0));
+        responses.stop();
+    }
+
     private JRTServerConfigRequest createRequest(String configName, String defMd5, String configId, String md5, long generation, long timeout, String namespace) {
         Request request = JRTClientConfigRequestV3.
                 createWithParams(new ConfigKey<>(configName, configId, namespace, defMd5, null), DefContent.fromList(Collections.emptyList()),
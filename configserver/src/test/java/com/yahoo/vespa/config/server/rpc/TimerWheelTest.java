@@ -0,0 +1,59 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class TimerWheelTest {
+
+    private final TimerWheel timer = new TimerWheel(TimerWheelTest.class.getName(), 1, 8);
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    public void tasks_are_run_after_their_delay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        long start = System.nanoTime();
+        timer.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+        timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+        // Longer than a full round of the wheel
+        TimerWheel.Timeout timeout = timer.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void cancelled_tasks_are_not_run() throws InterruptedException {
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        TimerWheel.Timeout cancelled = timer.schedule(cancelledRuns::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+        TimerWheel.Timeout cancelledLater = timer.schedule(cancelledRuns::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        Thread.sleep(2);
+        assertTrue(cancelledLater.cancel());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        timer.schedule(latch::countDown, 40, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertEquals(0, cancelledRuns.get());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.isExpired());
+    }
+
+}
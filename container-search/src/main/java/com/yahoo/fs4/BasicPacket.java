@@ -30,6 +30,9 @@ public abstract class BasicPacket {
 
     protected ByteBuffer encodingBuffer;
 
+    /** The encoding handed out as copies by grantEncodingBuffer when this packet is shared, or null if not shared */
+    private ByteBuffer sharedEncoding;
+
     /** The length of this packet in bytes or -1 if not known */
     protected int length = -1;
 
@@ -252,14 +255,39 @@ public abstract class BasicPacket {
         }
     }
 
+    /**
+     * Encodes this packet once, and makes {@link #grantEncodingBuffer} return a copy of that encoding with
+     * the channel ID patched in from now on. Use this when the same packet is sent on several channels,
+     * such as a query sent to all content nodes, to avoid encoding it once for each of them.
+     * The packet must not be changed after this is called.
+     */
+    public final void encodeForSharing() {
+        if (sharedEncoding != null) return;
+
+        allocateAndEncode(0);
+        sharedEncoding = encodingBuffer.asReadOnlyBuffer();
+        encodingBuffer = null;
+    }
+
+    private ByteBuffer copyOfSharedEncoding(int channelId) {
+        ByteBuffer copy = ByteBuffer.allocate(sharedEncoding.remaining());
+        copy.put(sharedEncoding.duplicate());
+        copy.flip();
+        patchChannelId(copy, channelId);
+        return copy;
+    }
+
     // No channel ID for BasicPacket instances, so it's a NOP
     protected void patchChannelId(ByteBuffer buf, int channelId) {}
 
     /**
      * Return buffer containing the encoded form of this package and
-     * remove internal reference to it.
+     * remove internal reference to it. If this packet is encoded for sharing,
+     * a copy of the shared encoding is returned instead.
      */
     public final ByteBuffer grantEncodingBuffer(int channelId) {
+        if (sharedEncoding != null) return copyOfSharedEncoding(channelId);
+
         if (encodingBuffer == null) {
             allocateAndEncode(channelId);
         } else {
@@ -271,6 +299,8 @@ public abstract class BasicPacket {
     }
 
     public final ByteBuffer grantEncodingBuffer(int channelId, int initialSize) {
+        if (sharedEncoding != null) return copyOfSharedEncoding(channelId);
+
         if (encodingBuffer == null) {
             allocateAndEncode(channelId, initialSize);
         } else {
@@ -58,8 +58,11 @@ public class FastHit extends Hit {
      * is to reduce garbage collection and decoding cost, with the assumption
      * that most fields passes through the container with no processing most
      * of the time.
+     *
+     * This list is never modified, but replaced when summaries are added or removed,
+     * as hits usually have no more than one summary.
      */
-    private List<SummaryData> summaries = new ArrayList<>(1);
+    private List<SummaryData> summaries = Collections.emptyList();
 
     /** Removed field values, which should therefore not be returned if present in summary data */
     private Set<String> removedFields = null;
@@ -157,7 +160,15 @@ public class FastHit extends Hit {
     public void addSummary(DocsumDefinition docsumDef, Inspector value) {
         if (removedFields != null)
             removedFields.removeAll(docsumDef.fieldNames());
-        summaries.add(0, new SummaryData(this, docsumDef, value, 1 + summaries.size()));
+        SummaryData summary = new SummaryData(this, docsumDef, value, 1 + summaries.size());
+        if (summaries.isEmpty()) {
+            summaries = Collections.singletonList(summary);
+        } else {
+            List<SummaryData> newSummaries = new ArrayList<>(summaries.size() + 1);
+            newSummaries.add(summary);
+            newSummaries.addAll(summaries);
+            summaries = newSummaries;
+        }
     }
 
     /**
@@ -261,7 +272,7 @@ public class FastHit extends Hit {
     /** Removes all fields of this */
     @Override
     public void clearFields() {
-        summaries.clear();
+        summaries = Collections.emptyList();
         if (removedFields != null)
             removedFields = null;
         super.clearFields();
@@ -241,7 +241,7 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
         return result;
     }
 
-    protected QueryPacket createQueryPacket(String serverId, Query query) {
+    public QueryPacket createQueryPacket(String serverId, Query query) {
         QueryPacket queryPacket = QueryPacket.create(serverId, query);
         int compressionLimit = query.properties().getInteger(PACKET_COMPRESSION_LIMIT, 0);
         queryPacket.setCompressionLimit(compressionLimit);
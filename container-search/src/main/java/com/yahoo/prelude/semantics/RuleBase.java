@@ -108,6 +108,12 @@ public class RuleBase {
     /** Returns whether stemmed matches are allowed. True by default */
     public boolean getStemming() { return stemming; }
 
+    /**
+     * Sets whether rules should be looked up in an index on the terms they can start matching at (default),
+     * or all rules should be evaluated at every term. This does not change the outcome of analyzing a query.
+     */
+    public void setIndexRules(boolean indexRules) { analyzer.setIndexed(indexRules); }
+
     /**
      * <p>Include another rule base into this. This <b>transfers ownership</b>
      * of the given rule base - it can not be subsequently used for any purpose
@@ -302,6 +308,7 @@ public class RuleBase {
     public void initialize() {
         inlineIncluded();
         makeReferences();
+        analyzer.initialize();
     }
 
     /**
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import com.yahoo.search.Query;
 import com.yahoo.prelude.semantics.RuleBase;
@@ -34,6 +35,20 @@ public class RuleBaseBenchmark {
         while((line=reader.readLine())!=null){
             queries.add(line);
         }
+        ruleBase.setIndexRules(false);
+        long unindexedElapsed = run(ruleBase, queries, iterations);
+        ruleBase.setIndexRules(true);
+        long indexedElapsed = run(ruleBase, queries, iterations);
+        System.out.print("BENCHMARK: rulebase=" + ruleBaseFile +
+                "\n           fsa=" + fsaFile +
+                "\n           rules=" + ruleBase.rules().size() +
+                "\n           queries=" + queryFile +
+                "\n           iterations=" + iterations +
+                "\n           elapsed without rule index=" + unindexedElapsed + "ms" +
+                "\n           elapsed with rule index=" + indexedElapsed + "ms\n");
+    }
+
+    private long run(RuleBase ruleBase, List<String> queries, int iterations) {
         Date start = new Date();
         for (int i=0;i<iterations;i++){
             for (Iterator<String> iter = queries.iterator(); iter.hasNext(); ){
@@ -43,12 +58,7 @@ public class RuleBaseBenchmark {
             }
         }
         Date end = new Date();
-        long elapsed = end.getTime()-start.getTime();
-        System.out.print("BENCHMARK: rulebase=" + ruleBaseFile +
-                "\n           fsa=" + fsaFile +
-                "\n           queries=" + queryFile +
-                "\n           iterations=" + iterations +
-                "\n           elapsed=" + elapsed + "ms\n");
+        return end.getTime()-start.getTime();
     }
 
 
@@ -110,6 +110,9 @@ public class Evaluation {
 
     public int getQuerySize() { return flattenedItems.size(); }
 
+    /** Returns the query items of this, as of the last reset */
+    List<FlattenedItem> items() { return flattenedItems; }
+
     /** Advances to the next item as current item */
     public void next() {
         currentIndex++;
@@ -7,6 +7,8 @@ import com.yahoo.prelude.semantics.RuleBase;
 import com.yahoo.prelude.semantics.RuleBaseException;
 import com.yahoo.prelude.semantics.rule.ProductionRule;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.ListIterator;
 
 /**
@@ -19,10 +21,29 @@ public class RuleEngine {
 
     private RuleBase rules;
 
+    /** The index of the rules to evaluate, or null to evaluate all rules of the rule base */
+    private volatile RuleIndex index = null;
+
+    private boolean indexed = true;
+
     public RuleEngine(RuleBase rules) {
         this.rules=rules;
     }
 
+    /** Indexes the rules of the rule base. Call this when all rules are added, before any evaluation starts */
+    public void initialize() {
+        index = indexed ? new RuleIndex(rules.rules()) : null;
+    }
+
+    /**
+     * Sets whether rules should be looked up in an index on the terms they can start matching at (default),
+     * or all rules should be evaluated at every term. This does not change the outcome of any evaluation.
+     */
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+        initialize();
+    }
+
     /**
      * Evaluates a rule base over a query
      *
@@ -32,19 +53,31 @@ public class RuleEngine {
      *         If there is an error, this query is destroyed (unusable)
      */
     public String evaluate(Query query,int traceLevel) {
-        // TODO: This is O(query size*rule base size). We'll eventually need to create indices
-        //       on rules to look up rule candidates per term to make it O(query size) instead
-        //       Probably create indices on the first term like Prolog implementations use to
-
         boolean matchedAnything=false;
         Evaluation evaluation=new Evaluation(query,traceLevel);
         evaluation.setStemming(rules.getStemming());
         evaluation.trace(2,"Evaluating query '" + evaluation.getQuery().getModel().getQueryTree().getRoot() + "':");
-        for (ListIterator<ProductionRule> i=rules.ruleIterator(); i.hasNext(); ) {
-            evaluation.reset();
-            ProductionRule rule=i.next();
-            boolean matched=matchRuleAtAllStartPoints(evaluation,rule);
-            matchedAnything|=matched;
+
+        RuleIndex index = this.index;
+        if (index != null && index.size() == rules.rules().size()) {
+            // Only evaluate the rules which may match the terms of the query as it is when each rule is evaluated
+            List<ProductionRule> indexedRules = index.rules();
+            BitSet candidates = index.candidates(evaluation.items(), evaluation.getStemming());
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                evaluation.reset();
+                boolean matched=matchRuleAtAllStartPoints(evaluation,indexedRules.get(i));
+                if (matched) // the query has changed, and is flattened again after the last change
+                    candidates = index.candidates(evaluation.items(), evaluation.getStemming());
+                matchedAnything|=matched;
+            }
+        }
+        else { // Not initialized, or rules are added after initialization
+            for (ListIterator<ProductionRule> i=rules.ruleIterator(); i.hasNext(); ) {
+                evaluation.reset();
+                ProductionRule rule=i.next();
+                boolean matched=matchRuleAtAllStartPoints(evaluation,rule);
+                matchedAnything|=matched;
+            }
         }
 
         if (!matchedAnything) return null;
@@ -0,0 +1,183 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.engine;
+
+import com.yahoo.prelude.query.TermItem;
+import com.yahoo.prelude.semantics.rule.AndCondition;
+import com.yahoo.prelude.semantics.rule.ChoiceCondition;
+import com.yahoo.prelude.semantics.rule.CompositeCondition;
+import com.yahoo.prelude.semantics.rule.CompositeItemCondition;
+import com.yahoo.prelude.semantics.rule.Condition;
+import com.yahoo.prelude.semantics.rule.ConditionReference;
+import com.yahoo.prelude.semantics.rule.LiteralCondition;
+import com.yahoo.prelude.semantics.rule.NamedCondition;
+import com.yahoo.prelude.semantics.rule.ProductionRule;
+import com.yahoo.prelude.semantics.rule.SequenceCondition;
+import com.yahoo.prelude.semantics.rule.SuperCondition;
+import com.yahoo.prelude.semantics.rule.TermCondition;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the rules of a rule base on the first terms they can match, like Prolog implementations
+ * index clauses on their first argument. This is used to evaluate only the rules which may match
+ * some term of a query, instead of every rule at every term.
+ *
+ * A rule is indexed on the terms, or automata annotations, its condition can start matching at.
+ * Rules where this can not be determined, e.g because the condition starts by an ellipsis, a negation
+ * or a condition in another name space, may match any query and are always evaluated.
+ *
+ * @author agent
+ */
+final class RuleIndex {
+
+    private final List<ProductionRule> rules;
+
+    /** The positions of the rules which can start matching at a term, by term */
+    private final Map<String, int[]> rulesByTerm = new HashMap<>();
+
+    /** The positions of the rules which can start matching at an item with an automata annotation, by annotation */
+    private final Map<String, int[]> rulesByAnnotation = new HashMap<>();
+
+    /** The positions of the rules which are not indexed */
+    private final BitSet unindexedRules = new BitSet();
+
+    /** Whether a condition always matches at least one item, may match none, or if this is unknown */
+    private enum Extent { NONEMPTY, MAYBE_EMPTY, UNKNOWN }
+
+    RuleIndex(List<ProductionRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        Map<String, List<Integer>> byTerm = new HashMap<>();
+        Map<String, List<Integer>> byAnnotation = new HashMap<>();
+        for (int position = 0; position < this.rules.size(); position++) {
+            Set<String> terms = new HashSet<>();
+            Set<String> annotations = new HashSet<>();
+            Extent extent = addStarts(this.rules.get(position).getCondition(), terms, annotations, new HashSet<>());
+            if (extent != Extent.NONEMPTY) {
+                unindexedRules.set(position);
+                continue;
+            }
+            for (String term : terms)
+                byTerm.computeIfAbsent(term, __ -> new ArrayList<>()).add(position);
+            for (String annotation : annotations)
+                byAnnotation.computeIfAbsent(annotation, __ -> new ArrayList<>()).add(position);
+        }
+        byTerm.forEach((term, positions) -> rulesByTerm.put(term, toArray(positions)));
+        byAnnotation.forEach((annotation, positions) -> rulesByAnnotation.put(annotation, toArray(positions)));
+    }
+
+    /** Returns the rules indexed by this, in the order they should be evaluated */
+    List<ProductionRule> rules() { return Collections.unmodifiableList(rules); }
+
+    /** Returns the number of rules indexed by this */
+    int size() { return rules.size(); }
+
+    /** Returns the number of rules which are always evaluated */
+    int unindexedCount() { return unindexedRules.cardinality(); }
+
+    /**
+     * Returns the positions of the rules which may match at some of the given items.
+     * The other rules are guaranteed to not match.
+     *
+     * @param items the items of the query to find candidate rules for
+     * @param stemming whether the terms of rules match the singular and plural form of query terms
+     */
+    BitSet candidates(List<FlattenedItem> items, boolean stemming) {
+        BitSet candidates = (BitSet)unindexedRules.clone();
+        for (FlattenedItem flattenedItem : items) {
+            TermItem item = flattenedItem.getItem();
+            String term = item.stringValue();
+            addAll(rulesByTerm.get(term), candidates);
+            if (stemming && term.length() >= 3) { // Keep in sync with TermCondition
+                addAll(rulesByTerm.get(term + "s"), candidates);
+                if (term.endsWith("s"))
+                    addAll(rulesByTerm.get(term.substring(0, term.length() - 1)), candidates);
+            }
+            for (Map.Entry<String, int[]> annotationRules : rulesByAnnotation.entrySet()) {
+                if (item.hasAnnotation(annotationRules.getKey()))
+                    addAll(annotationRules.getValue(), candidates);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds the terms and automata annotations a match of the given condition can start at to the given sets.
+     *
+     * @param visiting the named conditions we are inside, to avoid infinite recursion
+     * @return whether the condition always matches at least one item, in which case it can only start matching
+     *         at the added terms and annotations
+     */
+    private static Extent addStarts(Condition condition, Set<String> terms, Set<String> annotations,
+                                    Set<NamedCondition> visiting) {
+        if (condition == null) return Extent.UNKNOWN;
+        if (condition.getNameSpace() != null) return Extent.UNKNOWN;
+
+        if (condition instanceof TermCondition) {
+            String term = ((TermCondition)condition).getTerm();
+            if (term == null) return Extent.UNKNOWN;
+            terms.add(term);
+            return Extent.NONEMPTY;
+        }
+        else if (condition instanceof LiteralCondition) {
+            return Extent.MAYBE_EMPTY;
+        }
+        else if (condition instanceof ConditionReference) {
+            ConditionReference reference = (ConditionReference)condition;
+            if (reference.isAutomataLookup()) {
+                annotations.add(reference.getConditionName());
+                return Extent.NONEMPTY;
+            }
+            NamedCondition namedCondition = reference.getNamedCondition();
+            if (namedCondition == null || ! visiting.add(namedCondition)) return Extent.UNKNOWN;
+            try {
+                return addStarts(namedCondition.getCondition(), terms, annotations, visiting);
+            }
+            finally {
+                visiting.remove(namedCondition);
+            }
+        }
+        else if (condition instanceof SuperCondition) {
+            return addStarts(((SuperCondition)condition).getCondition(), terms, annotations, visiting);
+        }
+        else if (condition instanceof ChoiceCondition) {
+            Extent extent = Extent.NONEMPTY;
+            for (Iterator<Condition> i = ((ChoiceCondition)condition).conditionIterator(); i.hasNext(); ) {
+                Extent alternativeExtent = addStarts(i.next(), terms, annotations, visiting);
+                if (alternativeExtent == Extent.UNKNOWN) return Extent.UNKNOWN;
+                if (alternativeExtent == Extent.MAYBE_EMPTY) extent = Extent.MAYBE_EMPTY;
+            }
+            return extent;
+        }
+        else if (condition instanceof SequenceCondition || condition instanceof AndCondition ||
+                 condition instanceof CompositeItemCondition) {
+            // Matches in sequence, so it starts where the first element which must match an item starts
+            for (Iterator<Condition> i = ((CompositeCondition)condition).conditionIterator(); i.hasNext(); ) {
+                Extent elementExtent = addStarts(i.next(), terms, annotations, visiting);
+                if (elementExtent != Extent.MAYBE_EMPTY) return elementExtent;
+            }
+            return Extent.MAYBE_EMPTY;
+        }
+        else {
+            return Extent.UNKNOWN;
+        }
+    }
+
+    private static void addAll(int[] positions, BitSet candidates) {
+        if (positions == null) return;
+        for (int position : positions)
+            candidates.set(position);
+    }
+
+    private static int[] toArray(List<Integer> positions) {
+        return positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+}
@@ -51,6 +51,12 @@ public class ConditionReference extends Condition {
 
     public void setConditionName(String name) { this.conditionName=name; }
 
+    /** Returns the condition referenced by this, or null if not initialized, not found or if this is an automata lookup */
+    public NamedCondition getNamedCondition() { return namedCondition; }
+
+    /** Returns whether this condition is looked up in the automata annotations of the item */
+    public boolean isAutomataLookup() { return automataLookup; }
+
     public boolean doesMatch(RuleEvaluation e) {
         if (automataLookup) return automataMatch(e);
 
@@ -0,0 +1,68 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.component.ComponentId;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.searchchain.Execution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A searcher which produces its result asynchronously, typically a source waiting for some backend.
+ * <p>
+ * When such a searcher is the first in a chain executed by an
+ * {@link com.yahoo.search.searchchain.AsyncExecution}, e.g by a federator,
+ * it is invoked in the calling thread and no thread is used while waiting for the result.
+ * When it is invoked synchronously, the calling thread blocks until the result is available or the query times out.
+ * <p>
+ * The future returned by {@link #searchAsync} must eventually complete, and the searcher must not block
+ * while producing it. Note that the future is typically completed by another thread, so any work done
+ * in stages depending on it should be cheap.
+ *
+ * @author agent
+ */
+@Beta
+public abstract class AsyncSearcher extends Searcher {
+
+    public AsyncSearcher() {}
+
+    /** Creates a searcher from an id */
+    public AsyncSearcher(ComponentId id) {
+        super(id);
+    }
+
+    /**
+     * Override this to implement your searcher. This is the asynchronous equivalent of
+     * {@link Searcher#search(Query, Execution)} and is subject to the same contract.
+     *
+     * @return a future which completes with the result of the query, or exceptionally if it fails unexpectedly
+     */
+    public abstract CompletableFuture<Result> searchAsync(Query query, Execution execution);
+
+    /** Calls {@link #searchAsync} and waits for the result until the query times out */
+    @Override
+    public final Result search(Query query, Execution execution) {
+        CompletableFuture<Result> result = searchAsync(query, execution);
+        try {
+            return result.get(Math.max(0, query.getTimeLeft()), TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            result.cancel(false);
+            return new Result(query, ErrorMessage.createTimeout(this + " did not produce a result in time"));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(query, ErrorMessage.createUnspecifiedError(this + " was interrupted"));
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            if (e.getCause() instanceof Error) throw (Error)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+}
@@ -72,7 +72,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     /**
      * Sends search queries to the contained {@link SearchInvoker} sub-invokers. If the search
      * query has an offset other than zero, it will be reset to zero and the expected hit amount
-     * will be adjusted accordingly.
+     * will be adjusted accordingly. The query packet is encoded once and shared by all sub-invokers.
      */
     @Override
     protected void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException {
@@ -86,8 +86,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         query.setOffset(0);
         trimResult = originalHits != query.getHits() || originalOffset != query.getOffset();
 
+        QueryPacket sharedQueryPacket = createSharedQueryPacket(query);
         for (SearchInvoker invoker : invokers) {
-            invoker.sendSearchRequest(query, null);
+            invoker.sendSearchRequest(query, sharedQueryPacket);
             askedNodes++;
         }
 
@@ -95,6 +96,15 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         query.setOffset(originalOffset);
     }
 
+    /** Returns a query packet which is encoded once for all invokers, or null to let each invoker create its own */
+    private QueryPacket createSharedQueryPacket(Query query) {
+        if (searcher == null) return null;
+
+        QueryPacket queryPacket = searcher.createQueryPacket(searcher.getServerId(), query);
+        queryPacket.encodeForSharing();
+        return queryPacket;
+    }
+
     @Override
     protected Result getSearchResult(CacheKey cacheKey, Execution execution) throws IOException {
         long nextTimeout = query.getTimeLeft();
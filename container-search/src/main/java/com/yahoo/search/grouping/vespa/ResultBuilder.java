@@ -142,11 +142,17 @@ class ResultBuilder {
         rootBuilder.childGroups.get(0).fill(root);
     }
 
+    /**
+     * Builds a group. The child groups of a group are only added to it when it is built, so the subtrees below
+     * groups which are not on the requested page are never processed.
+     */
     private class GroupBuilder {
 
-        boolean [] results = new boolean[8];
-        GroupListBuilder [] childLists = new GroupListBuilder[8];
+        boolean [] results = null;
+        GroupListBuilder [] childLists = null;
         int childCount = 0;
+        /** The execution groups merged into this whose children are not added to the child lists yet */
+        List<com.yahoo.searchlib.aggregation.Group> pendingChildren = null;
         final ResultId resultId;
         final com.yahoo.searchlib.aggregation.Group group;
         final boolean stable;
@@ -162,6 +168,7 @@ class ResultBuilder {
         }
 
         Group fill(Group group) {
+            addPendingChildren();
             for (AggregationResult res : this.group.getAggregationResults()) {
                 int tag = res.getTag();
                 if (res instanceof HitsAggregationResult) {
@@ -173,17 +180,42 @@ class ResultBuilder {
                     }
                 }
             }
-            for (GroupListBuilder child : childLists) {
-                if (child != null) {
-                    group.add(child.build());
+            if (childLists != null) {
+                for (GroupListBuilder child : childLists) {
+                    if (child != null) {
+                        group.add(child.build());
+                    }
                 }
             }
             return group;
         }
 
+        void addChildren(com.yahoo.searchlib.aggregation.Group execGroup) {
+            if (execGroup.getChildren().isEmpty()) return;
+            if (pendingChildren == null) {
+                pendingChildren = new ArrayList<>(1);
+            }
+            pendingChildren.add(execGroup);
+        }
+
+        private void addPendingChildren() {
+            if (pendingChildren == null) return;
+            for (com.yahoo.searchlib.aggregation.Group execGroup : pendingChildren) {
+                boolean ranked = execGroup.getChildren().get(0).isRankedByRelevance();
+                execGroup.sortChildrenByRank();
+                for (com.yahoo.searchlib.aggregation.Group childGroup : execGroup.getChildren()) {
+                    GroupListBuilder childList = getOrCreateChildList(childGroup.getTag(), ranked);
+                    childList.addGroup(childGroup);
+                }
+            }
+            pendingChildren = null;
+        }
+
         GroupListBuilder getOrCreateChildList(int tag, boolean ranked) {
             int index = tag + 1; // Add 1 to avoid the dreaded -1 default value.
-            if (index >= childLists.length) {
+            if (childLists == null) {
+                childLists = new GroupListBuilder[Math.max(8, index + 1)];
+            } else if (index >= childLists.length) {
                 childLists = Arrays.copyOf(childLists, tag + 8);
             }
             GroupListBuilder ret = childLists[index];
@@ -198,7 +230,9 @@ class ResultBuilder {
         void merge(com.yahoo.searchlib.aggregation.Group group) {
             for (AggregationResult res : group.getAggregationResults()) {
                 int tag = res.getTag() + 1; // Add 1 due to dreaded -1 initialization as default.
-                if (tag >= results.length) {
+                if (results == null) {
+                    results = new boolean[Math.max(8, tag + 1)];
+                } else if (tag >= results.length) {
                     results = Arrays.copyOf(results, tag+8);
                 }
                 if ( ! results[tag] ) {
@@ -318,15 +352,7 @@ class ResultBuilder {
         }
 
         void addGroup(com.yahoo.searchlib.aggregation.Group execGroup) {
-            GroupBuilder groupBuilder = getOrCreateGroup(execGroup);
-            if (!execGroup.getChildren().isEmpty()) {
-                boolean ranked = execGroup.getChildren().get(0).isRankedByRelevance();
-                execGroup.sortChildrenByRank();
-                for (com.yahoo.searchlib.aggregation.Group childGroup : execGroup.getChildren()) {
-                    GroupListBuilder childList = groupBuilder.getOrCreateChildList(childGroup.getTag(), ranked);
-                    childList.addGroup(childGroup);
-                }
-            }
+            getOrCreateGroup(execGroup).addChildren(execGroup);
         }
 
         GroupBuilder getOrCreateGroup(com.yahoo.searchlib.aggregation.Group execGroup) {
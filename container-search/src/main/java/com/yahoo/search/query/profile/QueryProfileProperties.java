@@ -16,6 +16,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Properties backed by a query profile.
@@ -31,9 +32,23 @@ public class QueryProfileProperties extends Properties {
 
     /** Values which has been overridden at runtime, or null if none */
     private Map<CompoundName, Object> values = null;
+    /** Whether the values map is shared with a clone and must be copied before it is modified */
+    private boolean valuesShared = false;
     /** Query profile references which has been overridden at runtime, or null if none. Earlier values has precedence */
     private List<Pair<CompoundName, CompiledQueryProfile>> references = null;
 
+    /** Marks a memoized lookup which found no value */
+    private static final Object noValue = new Object();
+
+    /**
+     * Values looked up in the profile, before substitution, or null if none.
+     * These are valid as long as lookups are done in contexts having the memoized values of the dimensions
+     * of the profile, which is normally the case for the entire query.
+     */
+    private Map<CompoundName, Object> memoizedValues = null;
+    /** The values of the dimensions of the profile in the memoized context */
+    private String[] memoizedDimensionValues = null;
+
     /** Creates an instance from a profile, throws an exception if the given profile is null */
     public QueryProfileProperties(CompiledQueryProfile profile) {
         Validator.ensureNotNull("The profile wrapped by this cannot be null", profile);
@@ -58,12 +73,51 @@ public class QueryProfileProperties extends Properties {
         }
 
         if (value == null)
-            value = profile.get(name, context, substitution);
+            value = getFromProfile(name, context, substitution);
         if (value == null)
             value = super.get(name, context, substitution);
         return value;
     }
 
+    /** Returns a value from the profile, memoizing the lookup if the profile has multiple variants */
+    private Object getFromProfile(CompoundName name, Map<String,String> context,
+                                  com.yahoo.processing.request.Properties substitution) {
+        if (profile.getDimensions().isEmpty() || context == null)
+            return profile.get(name, context, substitution);
+
+        if ( ! isMemoizedContext(context)) {
+            memoizedValues = new HashMap<>();
+            memoizedDimensionValues = dimensionValues(context);
+        }
+        Object value = memoizedValues.get(name);
+        if (value == null) {
+            value = profile.getUnsubstituted(name, context);
+            memoizedValues.put(name, value == null ? noValue : value);
+        }
+        else if (value == noValue) {
+            value = null;
+        }
+        return profile.substitute(value, context, substitution);
+    }
+
+    /** Returns whether the given context has the same values for the dimensions of the profile as the memoized one */
+    private boolean isMemoizedContext(Map<String,String> context) {
+        if (memoizedValues == null) return false;
+        List<String> dimensions = profile.getDimensions();
+        for (int i = 0; i < dimensions.size(); i++) {
+            if ( ! Objects.equals(memoizedDimensionValues[i], context.get(dimensions.get(i)))) return false;
+        }
+        return true;
+    }
+
+    private String[] dimensionValues(Map<String,String> context) {
+        List<String> dimensions = profile.getDimensions();
+        String[] values = new String[dimensions.size()];
+        for (int i = 0; i < dimensions.size(); i++)
+            values[i] = context.get(dimensions.get(i));
+        return values;
+    }
+
     /**
      * Sets a value in this query profile
      *
@@ -124,6 +178,9 @@ public class QueryProfileProperties extends Properties {
             else {
                 if (values == null)
                     values = new HashMap<>();
+                else if (valuesShared)
+                    values = new HashMap<>(values);
+                valuesShared = false;
                 values.put(name, value);
             }
         }
@@ -250,8 +307,18 @@ public class QueryProfileProperties extends Properties {
     @Override
     public QueryProfileProperties clone() {
         QueryProfileProperties clone = (QueryProfileProperties)super.clone();
-        if (this.values != null)
-            clone.values = PropertyMap.cloneMap(this.values);
+        if (this.values != null) {
+            if (PropertyMap.hasCloneableValues(this.values)) {
+                clone.values = PropertyMap.cloneMap(this.values);
+                clone.valuesShared = false;
+            }
+            else { // share until modified
+                this.valuesShared = true;
+                clone.valuesShared = true;
+            }
+        }
+        clone.memoizedValues = null;
+        clone.memoizedDimensionValues = null;
         return clone;
     }
 
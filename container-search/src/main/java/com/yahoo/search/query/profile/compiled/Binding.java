@@ -75,6 +75,17 @@ public class Binding implements Comparable<Binding> {
         this.hashCode = bindingHash;
     }
 
+    /** Returns the dimensions bound by this. The returned array must not be modified. */
+    String[] getDimensions() { return dimensions; }
+
+    /** Returns the value of the given dimension in this, or null if it is not bound */
+    String getValue(String dimension) {
+        for (int i = 0; i < dimensions.length; i++) {
+            if (dimensions[i].equals(dimension)) return dimensionValues[i];
+        }
+        return null;
+    }
+
     /** Returns true only if this binding is null (contains no values for its dimensions (if any) */
     public boolean isNull() { return dimensions.length == 0; }
 
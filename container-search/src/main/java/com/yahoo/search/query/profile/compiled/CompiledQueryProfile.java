@@ -11,6 +11,7 @@ import com.yahoo.search.query.profile.types.QueryProfileType;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
@@ -157,7 +158,19 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         return substitute(entries.get(name, context), context, substitution);
     }
 
-    private Object substitute(Object value, Map<String, String> context, Properties substitution) {
+    /**
+     * Returns the value of the given name in the given context without substituting any substitution strings in it,
+     * or null if none. The value returned only depends on the values the context has for the dimensions of this.
+     */
+    public final Object getUnsubstituted(CompoundName name, Map<String, String> context) {
+        return entries.get(name, context);
+    }
+
+    /** Returns the dimensions which may change the value of some name in this, or an empty list if none */
+    public List<String> getDimensions() { return entries.dimensions(); }
+
+    /** Returns the given value with any substitution string resolved using the given substitution properties */
+    public Object substitute(Object value, Map<String, String> context, Properties substitution) {
         if (value == null) return value;
         if (substitution == null) return value;
         if (value.getClass() != SubstituteString.class) return value;
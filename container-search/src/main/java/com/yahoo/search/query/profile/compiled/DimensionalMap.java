@@ -5,8 +5,10 @@ import com.google.common.collect.ImmutableMap;
 import com.yahoo.search.query.profile.DimensionBinding;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A map which may return different values depending on the values given in a context
@@ -20,8 +22,15 @@ public class DimensionalMap<KEY, VALUE> {
 
     private final Map<KEY, DimensionalValue<VALUE>> values;
 
+    /** The dimensions which are bound by some value in this */
+    private final List<String> dimensions;
+
     private DimensionalMap(Map<KEY, DimensionalValue<VALUE>> values) {
         this.values = ImmutableMap.copyOf(values);
+        Set<String> dimensions = new TreeSet<>();
+        for (DimensionalValue<VALUE> value : values.values())
+            dimensions.addAll(value.dimensions());
+        this.dimensions = List.copyOf(dimensions);
     }
 
     /** Returns the value for this key matching a context, or null if none */
@@ -36,6 +45,9 @@ public class DimensionalMap<KEY, VALUE> {
         return values.entrySet();
     }
 
+    /** Returns the dimensions which may change the value returned for some key, or an empty list if none */
+    public List<String> dimensions() { return dimensions; }
+
     /** Returns true if this is empty for all contexts. */
     public boolean isEmpty() {
         return values.isEmpty();
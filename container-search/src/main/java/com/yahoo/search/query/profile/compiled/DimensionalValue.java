@@ -4,12 +4,15 @@ package com.yahoo.search.query.profile.compiled;
 import com.yahoo.search.query.profile.DimensionBinding;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Contains the values a given key in a DimensionalMap may take for different dimensional contexts.
@@ -18,11 +21,18 @@ import java.util.Set;
  */
 public class DimensionalValue<VALUE> {
 
+    /** The number of variants above which lookups use an index instead of matching each variant */
+    private static final int indexThreshold = 8;
+
     private final List<Value<VALUE>> values;
 
+    /** An index of the values by the dimensions they bind, or null if there are too few values to index */
+    private final Shape[] shapes;
+
     /** Create a set of variants which is a single value regardless of dimensions */
     public DimensionalValue(Value<VALUE> value) {
         this.values = Collections.singletonList(value);
+        this.shapes = null;
     }
 
     public DimensionalValue(List<Value<VALUE>> valueVariants) {
@@ -33,12 +43,15 @@ public class DimensionalValue<VALUE> {
             this.values = new ArrayList<>(valueVariants);
             Collections.sort(this.values);
         }
+        this.shapes = values.size() > indexThreshold ? Shape.createFrom(values) : null;
     }
 
     /** Returns the value matching this context, or null if none */
     public VALUE get(Map<String, String> context) {
         if (context == null)
             context = Collections.emptyMap();
+        if (shapes != null)
+            return getIndexed(context);
         for (Value<VALUE> value : values) {
             if (value.matches(context))
                 return value.value();
@@ -46,6 +59,29 @@ public class DimensionalValue<VALUE> {
         return null;
     }
 
+    /**
+     * Returns the first value matching the context, by looking up the context values of each set of
+     * dimensions bound by some value. This is O(shapes * dimensions) rather than O(values).
+     */
+    private VALUE getIndexed(Map<String, String> context) {
+        int first = Integer.MAX_VALUE;
+        for (Shape shape : shapes) {
+            if (shape.first > first) break; // no value in this or later shapes can come before the one found
+            int position = shape.lookup(context);
+            if (position < first)
+                first = position;
+        }
+        return first == Integer.MAX_VALUE ? null : values.get(first).value();
+    }
+
+    /** Returns the dimensions which are bound by some value in this */
+    Set<String> dimensions() {
+        Set<String> dimensions = new TreeSet<>();
+        for (Value<VALUE> value : values)
+            dimensions.addAll(Arrays.asList(value.binding().getDimensions()));
+        return dimensions;
+    }
+
     public boolean isEmpty() { return values.isEmpty(); }
 
     @Override
@@ -79,6 +115,63 @@ public class DimensionalValue<VALUE> {
 
     }
 
+    /**
+     * The values which bind a particular set of dimensions, indexed by the values they bind those dimensions to.
+     * As values are sorted by generality, the first value in the context is the one with the
+     * lowest position among the matches of each shape.
+     */
+    private static class Shape {
+
+        /** The dimensions of this shape, in a fixed order */
+        private final String[] dimensions;
+
+        /** The position of the first value for each combination of dimension values */
+        private final Map<List<String>, Integer> positions = new HashMap<>();
+
+        /** The lowest position of any value in this */
+        private final int first;
+
+        private Shape(String[] dimensions, int first) {
+            this.dimensions = dimensions;
+            this.first = first;
+        }
+
+        /** Returns the position of the first value of this matching the context, or Integer.MAX_VALUE if none */
+        int lookup(Map<String, String> context) {
+            String[] contextValues = new String[dimensions.length];
+            for (int i = 0; i < dimensions.length; i++) {
+                contextValues[i] = context.get(dimensions[i]);
+                if (contextValues[i] == null) return Integer.MAX_VALUE;
+            }
+            Integer position = positions.get(Arrays.asList(contextValues));
+            return position == null ? Integer.MAX_VALUE : position;
+        }
+
+        /** Returns the shapes of the given values, ordered by the position of their first value */
+        static Shape[] createFrom(List<? extends Value<?>> values) {
+            Map<Set<String>, Shape> shapes = new LinkedHashMap<>();
+            for (int position = 0; position < values.size(); position++) {
+                Binding binding = values.get(position).binding();
+                Set<String> dimensionSet = new TreeSet<>(Arrays.asList(binding.getDimensions()));
+                Shape shape = shapes.get(dimensionSet);
+                if (shape == null) {
+                    shape = new Shape(dimensionSet.toArray(new String[0]), position);
+                    shapes.put(dimensionSet, shape);
+                }
+                shape.positions.putIfAbsent(Arrays.asList(shape.valuesOf(binding)), position);
+            }
+            return shapes.values().toArray(new Shape[0]);
+        }
+
+        private String[] valuesOf(Binding binding) {
+            String[] values = new String[dimensions.length];
+            for (int i = 0; i < dimensions.length; i++)
+                values[i] = binding.getValue(dimensions[i]);
+            return values;
+        }
+
+    }
+
     /** A value for a particular binding */
     private static class Value<VALUE> implements Comparable<Value> {
 
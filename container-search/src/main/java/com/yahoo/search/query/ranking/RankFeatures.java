@@ -14,12 +14,16 @@ import java.util.Optional;
 
 /**
  * Contains the rank features of a query.
+ * Clones share the features until one of them is modified.
  *
  * @author bratseth
  */
 public class RankFeatures implements Cloneable {
 
-    private final Map<String, Object> features;
+    private Map<String, Object> features;
+
+    /** Whether the features map is shared with a clone and must be copied before it is modified */
+    private boolean shared = false;
 
     public RankFeatures() {
         this(new LinkedHashMap<>());
@@ -31,12 +35,12 @@ public class RankFeatures implements Cloneable {
 
     /** Sets a rank feature by full name to a value */
     public void put(String name, String value) {
-        features.put(name, value);
+        writableFeatures().put(name, value);
     }
 
     /** Sets a tensor rank feature */
     public void put(String name, Tensor value) {
-        features.put(name, value);
+        writableFeatures().put(name, value);
     }
 
     /** Returns a rank feature as a string by full name or null if not set */
@@ -67,7 +71,15 @@ public class RankFeatures implements Cloneable {
      * Returns the map holding the features of this.
      * This map may be modified to change the rank features of the query.
      */
-    public Map<String, Object> asMap() { return features; }
+    public Map<String, Object> asMap() { return writableFeatures(); }
+
+    private Map<String, Object> writableFeatures() {
+        if (shared) {
+            features = new LinkedHashMap<>(features);
+            shared = false;
+        }
+        return features;
+    }
 
     public boolean isEmpty() {
         return features.isEmpty();
@@ -96,7 +108,7 @@ public class RankFeatures implements Cloneable {
             }
         }
         for (int i = 0; i < featuresToRemove.size(); ++i) {
-            rankProperties.put(propertiesToInsert.get(i), features.remove(featuresToRemove.get(i)));
+            rankProperties.put(propertiesToInsert.get(i), writableFeatures().remove(featuresToRemove.get(i)));
         }
     }
 
@@ -119,7 +131,11 @@ public class RankFeatures implements Cloneable {
 
     @Override
     public RankFeatures clone() {
-        return new RankFeatures(new LinkedHashMap<>(features));
+        // Values are strings and tensors, which are immutable, so only the map needs to be copied on write
+        RankFeatures clone = new RankFeatures(features);
+        this.shared = true;
+        clone.shared = true;
+        return clone;
     }
 
     @Override
@@ -15,12 +15,16 @@ import java.util.Map;
 /**
  * Contains the properties properties of a query.
  * This is a multimap: Multiple properties may be set for the same key.
+ * Clones share the properties until one of them is modified.
  *
  * @author bratseth
  */
 public class RankProperties implements Cloneable {
 
-    private Map<String, List<Object>> properties = new LinkedHashMap<>();
+    private Map<String, List<Object>> properties;
+
+    /** Whether the properties map and its lists are shared with a clone and must be copied before they are modified */
+    private boolean shared = false;
 
     public RankProperties() {
         this(new LinkedHashMap<>());
@@ -36,7 +40,7 @@ public class RankProperties implements Cloneable {
 
     /** Adds a property by full name to a value */
     public void put(String name, Object value) {
-        List<Object> list = properties.get(name);
+        List<Object> list = writableProperties().get(name);
         if (list == null) {
             list = new ArrayList<>();
             properties.put(name, list);
@@ -63,7 +67,7 @@ public class RankProperties implements Cloneable {
 
     /** Removes all properties properties for a given name */
     public void remove(String name) {
-        properties.remove(name);
+        writableProperties().remove(name);
     }
 
     public boolean isEmpty() {
@@ -71,7 +75,18 @@ public class RankProperties implements Cloneable {
     }
 
     /** Returns a modifiable map of the properties of this */
-    public Map<String, List<Object>> asMap() { return properties; }
+    public Map<String, List<Object>> asMap() { return writableProperties(); }
+
+    private Map<String, List<Object>> writableProperties() {
+        if (shared) {
+            Map<String, List<Object>> copy = new LinkedHashMap<>();
+            for (Map.Entry<String, List<Object>> entry : properties.entrySet())
+                copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            properties = copy;
+            shared = false;
+        }
+        return properties;
+    }
 
     /** Encodes this in a binary internal representation and returns the number of property maps encoded (0 or 1) */
     public int encode(ByteBuffer buffer, boolean encodeQueryData) {
@@ -100,10 +115,10 @@ public class RankProperties implements Cloneable {
 
     @Override
     public RankProperties clone() {
-        Map<String, List<Object>> clone = new LinkedHashMap<>();
-        for (Map.Entry<String, List<Object>> entry : properties.entrySet())
-            clone.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-        return new RankProperties(clone);
+        RankProperties clone = new RankProperties(properties);
+        this.shared = true;
+        clone.shared = true;
+        return clone;
     }
 
     @Override
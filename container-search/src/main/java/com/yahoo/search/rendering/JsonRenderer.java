@@ -668,6 +668,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
      */
     private static class FieldConsumer implements Hit.RawUtf8Consumer {
 
+        private static final char[] hexDigits = "0123456789ABCDEF".toCharArray();
+
         private final JsonGenerator generator;
         private final boolean debugRendering;
 
@@ -763,14 +765,65 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         }
 
         private void renderInspector(Inspector data) throws IOException {
-            StringBuilder intermediate = new StringBuilder();
             Inspector asMap = wrapAsMap(data);
-            if (asMap != null) {
-                JsonRender.render(asMap, intermediate, true);
-            } else {
-                JsonRender.render(data, intermediate, true);
+            renderInspectorDirect(asMap != null ? asMap : data);
+        }
+
+        /**
+         * Renders the given data directly to the generator, without creating an intermediate representation.
+         * Strings are written from their UTF-8 form, which is how they are stored in docsums.
+         */
+        private void renderInspectorDirect(Inspector data) throws IOException {
+            switch (data.type()) {
+                case EMPTY:
+                    generator.writeNull();
+                    break;
+                case BOOL:
+                    generator.writeBoolean(data.asBool());
+                    break;
+                case LONG:
+                    generator.writeNumber(data.asLong());
+                    break;
+                case DOUBLE:
+                    double value = data.asDouble();
+                    if (Double.isFinite(value))
+                        generator.writeNumber(value);
+                    else
+                        generator.writeNull();
+                    break;
+                case STRING:
+                    byte[] utf8 = data.asUtf8();
+                    generator.writeUTF8String(utf8, 0, utf8.length);
+                    break;
+                case DATA:
+                    generator.writeString(hexEncode(data.asData()));
+                    break;
+                case ARRAY:
+                    generator.writeStartArray();
+                    for (int i = 0; i < data.entryCount(); i++)
+                        renderInspectorDirect(data.entry(i));
+                    generator.writeEndArray();
+                    break;
+                case OBJECT:
+                    generator.writeStartObject();
+                    for (Map.Entry<String, Inspector> field : data.fields()) {
+                        generator.writeFieldName(field.getKey());
+                        renderInspectorDirect(field.getValue());
+                    }
+                    generator.writeEndObject();
+                    break;
+            }
+        }
+
+        /** Encodes data the same way as {@link JsonRender} */
+        private static String hexEncode(byte[] data) {
+            StringBuilder b = new StringBuilder(2 + data.length * 2);
+            b.append("0x");
+            for (byte dataByte : data) {
+                b.append(hexDigits[(dataByte >> 4) & 0xf]);
+                b.append(hexDigits[dataByte & 0xf]);
             }
-            generator.writeRawValue(intermediate.toString());
+            return b.toString();
         }
 
         private void renderFieldContents(Object field) throws IOException {
@@ -64,8 +64,8 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     /** The id of this hit */
     private URI id;
 
-    /** The types of this hit */
-    private Set<String> types = new ArraySet<>(1);
+    /** The types of this hit, or null if none has been added */
+    private Set<String> types = null;
 
     /** The relevance of this hit */
     private Relevance relevance;
@@ -84,6 +84,12 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     private Set<String> filled = null;
     private Set<String> unmodifiableFilled = null;
 
+    /**
+     * The last filled set containing a single summary class created by any hit. As hits are usually
+     * filled with the same summary class this lets most hits share the same immutable filled set.
+     */
+    private static volatile Set<String> lastSingleFilledSet = Collections.singleton(null);
+
     /** The name of the source creating this hit */
     private String source = null;
 
@@ -355,8 +361,10 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
      **/
     public void setFilled(String summaryClass) {
         if (filled == null || filled.size() == 0) {
-            filled = Collections.singleton(summaryClass);
+            filled = singleFilledSet(summaryClass);
             unmodifiableFilled = filled;
+        } else if (filled.contains(summaryClass)) {
+            return;
         } else if (filled.size() == 1) {
             filled = new HashSet<>(filled);
             unmodifiableFilled = Collections.unmodifiableSet(filled);
@@ -367,6 +375,15 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    private static Set<String> singleFilledSet(String summaryClass) {
+        Set<String> filledSet = lastSingleFilledSet;
+        if ( ! filledSet.contains(summaryClass)) {
+            filledSet = Collections.singleton(summaryClass);
+            lastSingleFilledSet = filledSet;
+        }
+        return filledSet;
+    }
+
     public boolean isFillable() {
         return filled != null;
     }
@@ -515,7 +532,11 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     }
 
     /** Returns the types of this as a modifiable set. Modifications to this set are directly reflected in this hit */
-    public Set<String> types() { return types; }
+    public Set<String> types() {
+        if (types == null)
+            types = new ArraySet<>(1);
+        return types;
+    }
 
     /**
      * Returns the add number, assigned when adding the hit to a Result.
@@ -660,8 +681,8 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
 
         hit.fields = fields != null ? new LinkedHashMap<>(fields) : null;
         hit.unmodifiableFieldMap = null;
-        hit.types = new LinkedHashSet<>(types);
-        if (filled != null) {
+        hit.types = types != null ? new LinkedHashSet<>(types) : null;
+        if (filled != null && filled != unmodifiableFilled) { // otherwise filled is immutable and can be shared
             hit.setFilledInternal(new HashSet<>(filled));
         }
 
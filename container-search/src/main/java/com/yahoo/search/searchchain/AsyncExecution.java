@@ -10,7 +10,13 @@ import com.yahoo.search.Searcher;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides asynchronous execution of searchchains.
@@ -34,6 +40,12 @@ import java.util.concurrent.*;
  * </pre>
  *
  * <p>
+ * If the first searcher to execute is an {@link com.yahoo.search.AsyncSearcher}, the search is invoked in the
+ * calling thread and no thread is used while waiting for the result. Otherwise, it is executed in a thread
+ * of a shared pool.
+ * </p>
+ *
+ * <p>
  * Note that the query is not a thread safe object and cannot be shared between
  * multiple concurrent executions - a clone() must be made, or a new query
  * created for each AsyncExecution instance.
@@ -118,9 +130,23 @@ public class AsyncExecution {
      * @see com.yahoo.search.searchchain.Execution
      */
     public FutureResult search(Query query) {
+        if (execution.isNextAsync())
+            return searchAsynchronously(query);
         return getFutureResult(() -> execution.search(query), query);
     }
 
+    private FutureResult searchAsynchronously(Query query) {
+        CompletableFuture<Result> result;
+        try {
+            result = execution.searchAsync(query);
+        }
+        catch (RuntimeException e) { // fail through the future like when running the search in another thread
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        return new FutureResult(result, execution, query);
+    }
+
     public FutureResult searchAndFill(Query query) {
         return getFutureResult(() -> {
             Result result = execution.search(query);
@@ -146,19 +172,6 @@ public class AsyncExecution {
 
     }
 
-    private static <T> Future<T> getFuture(Callable<T> callable) {
-        FutureTask<T> future = new FutureTask<>(callable);
-        getExecutor().execute(future);
-        return future;
-    }
-
-    private static Future<Void> runTask(Runnable runnable) {
-        return getFuture(() -> {
-            runnable.run();
-            return null;
-        });
-    }
-
     private FutureResult getFutureResult(Callable<Result> callable, Query query) {
         FutureResult future = new FutureResult(callable, execution, query);
         getExecutor().execute(future);
@@ -176,13 +189,11 @@ public class AsyncExecution {
     public static List<Result> waitForAll(Collection<FutureResult> tasks, long timeoutMs) {
         // Copy the list in case it is modified while we are waiting
         List<FutureResult> workingTasks = new ArrayList<>(tasks);
-        try {
-            runTask(() -> {
-                for (FutureResult task : workingTasks)
-                    task.get();
-            }).get(timeoutMs, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException | InterruptedException | ExecutionException e) {
-            // Handle timeouts below
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        // Wait in this thread rather than using another one for it
+        for (FutureResult task : workingTasks) {
+            task.getIfAvailable(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            if ( ! task.isDone()) break; // timed out: Handle below
         }
 
         List<Result> results = new ArrayList<>(tasks.size());
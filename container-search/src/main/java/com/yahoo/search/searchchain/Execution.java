@@ -12,6 +12,7 @@ import com.yahoo.processing.Processor;
 import com.yahoo.processing.Request;
 import com.yahoo.processing.Response;
 import com.yahoo.protect.Validator;
+import com.yahoo.search.AsyncSearcher;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -19,6 +20,7 @@ import com.yahoo.search.cluster.PingableSearcher;
 import com.yahoo.search.rendering.RendererRegistry;
 import com.yahoo.search.statistics.TimeTracker;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 /**
@@ -510,6 +512,35 @@ public class Execution extends com.yahoo.processing.execution.Execution {
         return (Result)super.process(query);
     }
 
+    /**
+     * Calls search on the next searcher in this chain without blocking if it is an {@link AsyncSearcher},
+     * and synchronously otherwise. If there is no next, a completed future of an empty result is returned.
+     * <p>
+     * The asynchronous searcher is given an execution of its own, so this execution may be used
+     * for other purposes before the returned future completes.
+     */
+    public CompletableFuture<Result> searchAsync(Query query) {
+        if ( ! (next() instanceof AsyncSearcher))
+            return CompletableFuture.completedFuture(search(query));
+
+        timer.sampleSearch(nextIndex(), context.getDetailedDiagnostics());
+        AsyncSearcher searcher = (AsyncSearcher)next();
+        Execution searcherExecution = new Execution(this);
+        searcherExecution.nextProcessor();
+        query.getModel().setExecution(searcherExecution);
+        searcherExecution.trace().setTraceLevel(query.getTraceLevel());
+        searcherExecution.onInvoking(query, searcher);
+        CompletableFuture<Result> result = searcher.searchAsync(query, searcherExecution);
+        if (result == null)
+            throw new NullPointerException(searcher + " returned null, not a future Result");
+        return result.whenComplete((completed, exception) -> onReturning(query, searcher, completed));
+    }
+
+    /** Returns whether the next searcher in this chain can be invoked without blocking by {@link #searchAsync} */
+    boolean isNextAsync() {
+        return next() instanceof AsyncSearcher;
+    }
+
     @Override
     protected void onInvoking(Request request, Processor processor) {
         super.onInvoking(request,processor);
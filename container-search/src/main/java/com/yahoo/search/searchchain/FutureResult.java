@@ -8,6 +8,8 @@ import com.yahoo.yolean.Exceptions;
 
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -16,8 +18,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Extends a {@code FutureTask<Result>}, with some added error handling
- * 
+ * Extends a {@code FutureTask<Result>}, with some added error handling.
+ * This may also wrap a {@code CompletableFuture<Result>}, in which case it is done when that is completed.
+ *
  * @author bratseth
  */
 public class FutureResult extends FutureTask<Result> {
@@ -27,12 +30,54 @@ public class FutureResult extends FutureTask<Result> {
     /** Only used for generating messages */
     private final Execution execution;
 
+    /** The future this wraps, or null if this is run as a task */
+    private final CompletableFuture<Result> source;
+
     private final static Logger log = Logger.getLogger(FutureResult.class.getName());
 
     public FutureResult(Callable<Result> callable, Execution execution, Query query) {
         super(callable);
         this.query = query;
         this.execution = execution;
+        this.source = null;
+    }
+
+    /**
+     * Creates a future result which is done when the given future completes.
+     * This should not be run: It is completed by the thread completing the given future.
+     */
+    public FutureResult(CompletableFuture<Result> future, Execution execution, Query query) {
+        super(() -> resultOf(future));
+        this.query = query;
+        this.execution = execution;
+        this.source = future;
+        future.whenComplete((result, exception) -> super.run());
+    }
+
+    /** Does nothing if this wraps a future, as this is then completed by that */
+    @Override
+    public void run() {
+        if (source == null)
+            super.run();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (source == null)
+            return super.cancel(mayInterruptIfRunning);
+        source.cancel(false);
+        return super.cancel(false); // never interrupt the thread completing the source
+    }
+
+    /** Returns the result of a completed future, throwing the exception it was completed with, if any */
+    private static Result resultOf(CompletableFuture<Result> future) throws Exception {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+            throw e;
+        }
     }
 
     /** 
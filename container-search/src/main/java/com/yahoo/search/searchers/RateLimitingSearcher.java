@@ -18,10 +18,11 @@ import com.yahoo.search.searchchain.Execution;
 import com.yahoo.yolean.chain.Provides;
 
 import java.time.Clock;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A simple rate limiter.
@@ -69,8 +70,8 @@ public class RateLimitingSearcher extends Searcher {
     /** Shared capacity across all threads. Each thread will ask for more capacity from here when they run out. */
     private final AvailableCapacity availableCapacity;
 
-    /** Capacity already allocated to this thread */
-    private final ThreadLocal<Map<String, Double>> allocatedCapacity = new ThreadLocal<>();
+    /** Capacity already allocated to this thread, by id */
+    private final ThreadLocal<Map<String, AllocatedCapacity>> allocatedCapacity = ThreadLocal.withInitial(HashMap::new);
 
     /** For emitting metrics */
     private final Counter overQuotaCounter;
@@ -111,18 +112,20 @@ public class RateLimitingSearcher extends Searcher {
 
         rate = rate / nodeCount;
 
-        if (allocatedCapacity.get() == null) // new thread
-            allocatedCapacity.set(new HashMap<>());
-        if (allocatedCapacity.get().get(id) == null) // new id in this thread
-            requestCapacity(id, rate);
+        AllocatedCapacity allocated = allocatedCapacity.get().get(id);
+        if (allocated == null) { // new id in this thread
+            allocated = new AllocatedCapacity();
+            allocatedCapacity.get().put(id, allocated);
+            requestCapacity(id, allocated, rate);
+        }
 
         // Check if there is capacity available. Cannot check for exact cost as it may be computed after execution
-        // no capacity means we're over rate. Only recheck occasionally to limit synchronization.
-        if (getAllocatedCapacity(id) <= 0 && ThreadLocalRandom.current().nextDouble() < recheckForCapacityProbability) {
-            requestCapacity(id, rate);
+        // no capacity means we're over rate. Only recheck occasionally to limit contention.
+        if (allocated.capacity <= 0 && ThreadLocalRandom.current().nextDouble() < recheckForCapacityProbability) {
+            requestCapacity(id, allocated, rate);
         }
 
-        if (rate==0 || getAllocatedCapacity(id) <= 0) { // we are still over rate: reject
+        if (rate==0 || allocated.capacity <= 0) { // we are still over rate: reject
             String idDim = query.properties().getString(idDimensionKey, null);
             if (idDim == null) {
                 overQuotaCounter.add(1);
@@ -134,10 +137,10 @@ public class RateLimitingSearcher extends Searcher {
         }
 
         Result result = execution.search(query);
-        addAllocatedCapacity(id, - query.properties().getDouble(costKey, 1.0));
+        allocated.capacity -= query.properties().getDouble(costKey, 1.0);
 
-        if (getAllocatedCapacity(id) <= 0) // make sure we ask for more with 100% probability when first running out
-            requestCapacity(id, rate);
+        if (allocated.capacity <= 0) // make sure we ask for more with 100% probability when first running out
+            requestCapacity(id, allocated, rate);
 
         return result;
     }
@@ -146,23 +149,17 @@ public class RateLimitingSearcher extends Searcher {
         return overQuotaCounter.builder().set(dimensionName, dimensionValue).build();
     }
 
-    private double getAllocatedCapacity(String id) {
-        Double value = allocatedCapacity.get().get(id);
-        if (value == null) return 0;
-        return value;
+    private void requestCapacity(String id, AllocatedCapacity allocated, double rate) {
+        double minimumRequested = Math.max(0, -allocated.capacity); // If we are below, make sure we reach 0
+        double preferredRequested = Math.max(capacityIncrement, -allocated.capacity);
+        allocated.capacity += availableCapacity.request(id, minimumRequested, preferredRequested, rate);
     }
 
-    private void addAllocatedCapacity(String id, double newCapacity) {
-        Double capacity = allocatedCapacity.get().get(id);
-        if (capacity != null)
-            newCapacity += capacity;
-        allocatedCapacity.get().put(id, newCapacity);
-    }
+    /** The capacity allocated to a thread for an id. This is only accessed by the owning thread. */
+    private static class AllocatedCapacity {
+
+        private double capacity = 0;
 
-    private void requestCapacity(String id, double rate) {
-        double minimumRequested = Math.max(0, -getAllocatedCapacity(id)); // If we are below, make sure we reach 0
-        double preferredRequested = Math.max(capacityIncrement, -getAllocatedCapacity(id));
-        addAllocatedCapacity(id, availableCapacity.request(id, minimumRequested, preferredRequested, rate));
     }
 
     /**
@@ -170,13 +167,14 @@ public class RateLimitingSearcher extends Searcher {
      * across all threads. Capacity is supplied at the rate per second given by the clients quota.
      * When all the capacity is spent, no further capacity will be handed out, leading to request rejection.
      * Capacity has a max value it will never exceed to avoid clients saving capacity for future overspending.
+     * Requests for different ids never contend, and requests for the same id do not block each other.
      */
     private static class AvailableCapacity {
 
         private final double maxAvailableCapacity;
         private final Clock clock;
 
-        private final Map<String, CapacityAllocation> available = new HashMap<>();
+        private final Map<String, CapacityAllocation> available = new ConcurrentHashMap<>();
 
         public AvailableCapacity(double maxAvailableCapacity, Clock clock) {
             this.maxAvailableCapacity = maxAvailableCapacity;
@@ -184,41 +182,55 @@ public class RateLimitingSearcher extends Searcher {
         }
 
         /** Returns an amount of capacity between 0 and the requested amount based on availability for this id */
-        public synchronized double request(String id, double minimumRequested, double preferredRequested, double rate) {
+        public double request(String id, double minimumRequested, double preferredRequested, double rate) {
             CapacityAllocation allocation = available.get(id);
-            if (allocation == null) {
-                allocation = new CapacityAllocation(rate, clock);
-                available.put(id, allocation);
-            }
+            if (allocation == null)
+                allocation = available.computeIfAbsent(id, __ -> new CapacityAllocation(rate, clock));
             return allocation.request(minimumRequested, preferredRequested, rate, maxAvailableCapacity);
         }
 
     }
 
+    /** A token bucket for an id, which is updated by compare-and-set rather than locking */
     private static class CapacityAllocation {
 
-        private double capacity;
         private final Clock clock;
-        private long lastAllocatedTime;
+        private final AtomicReference<State> state;
 
         public CapacityAllocation(double initialCapacity, Clock clock) {
-            this.capacity = initialCapacity;
             this.clock = clock;
-            lastAllocatedTime = clock.millis();
+            this.state = new AtomicReference<>(new State(initialCapacity, clock.millis()));
         }
 
         public double request(double minimumRequested, double preferredRequested, double rate, double maxAvailableCapacity) {
-            if ( preferredRequested > capacity) { // attempt to allocate more
-                // rate is per second so we get rate/1000 per millisecond
-                long currentTime = clock.millis();
-                capacity += Math.min(maxAvailableCapacity, rate/1000d * (Math.max(0, currentTime - lastAllocatedTime)));
-                lastAllocatedTime = currentTime;
+            while (true) {
+                State current = state.get();
+                double capacity = current.capacity;
+                long lastAllocatedTime = current.lastAllocatedTime;
+                if ( preferredRequested > capacity) { // attempt to allocate more
+                    // rate is per second so we get rate/1000 per millisecond
+                    long currentTime = clock.millis();
+                    capacity += Math.min(maxAvailableCapacity, rate/1000d * (Math.max(0, currentTime - lastAllocatedTime)));
+                    lastAllocatedTime = Math.max(lastAllocatedTime, currentTime);
+                }
+                double grantedCapacity = Math.min(capacity/10, preferredRequested); // /10 to avoid stealing all capacity when low
+                if (grantedCapacity < minimumRequested)
+                    grantedCapacity = Math.min(minimumRequested, capacity);
+                if (state.compareAndSet(current, new State(capacity - grantedCapacity, lastAllocatedTime)))
+                    return grantedCapacity;
+            }
+        }
+
+        private static class State {
+
+            final double capacity;
+            final long lastAllocatedTime;
+
+            State(double capacity, long lastAllocatedTime) {
+                this.capacity = capacity;
+                this.lastAllocatedTime = lastAllocatedTime;
             }
-            double grantedCapacity = Math.min(capacity/10, preferredRequested); // /10 to avoid stealing all capacity when low
-            if (grantedCapacity < minimumRequested)
-                grantedCapacity = Math.min(minimumRequested, capacity);
-            capacity = capacity - grantedCapacity;
-            return grantedCapacity;
+
         }
 
     }
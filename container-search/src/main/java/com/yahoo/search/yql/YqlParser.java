@@ -16,6 +16,8 @@ import java.util.StringTokenizer;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.yahoo.collections.LazyMap;
 import com.yahoo.collections.LazySet;
 import com.yahoo.component.Version;
@@ -177,6 +179,19 @@ public class YqlParser implements Parser {
     static final String WEIGHTED_SET = "weightedSet";
     static final String WEIGHT = "weight";
 
+    /** The max number of parsed YQL programs to keep in the program cache */
+    private static final int programCacheSize = 1000;
+
+    /** The max length of YQL programs to keep in the program cache, as longer ones are unlikely to be reused */
+    private static final int maxCachedProgramLength = 2048;
+
+    /**
+     * Parsed YQL programs by their text. As parameters are resolved when converting a program to items,
+     * YQL programs using parameters instead of literals can be parsed once and reused by all queries.
+     */
+    private static final Cache<String, OperatorNode<StatementOperator>> programCache =
+            CacheBuilder.newBuilder().maximumSize(programCacheSize).build();
+
     private final IndexFacts indexFacts;
     private final List<ConnectedItem> connectedItems = new ArrayList<>();
     private final List<VespaGroupingStep> groupingSteps = new ArrayList<>();
@@ -696,6 +711,31 @@ public class YqlParser implements Parser {
         }
     }
 
+    /** Returns the value of a parameter (variable reference) from the properties of the user query */
+    private String getParameter(OperatorNode<ExpressionOperator> parameter) {
+        Preconditions.checkState(userQuery != null, "properties must be available when trying to fetch parameters");
+        String name = parameter.getArgument(0, String.class);
+        String value = userQuery.properties().getString(name);
+        if (value == null)
+            throw new IllegalArgumentException("No value is given for parameter '" + name + "'");
+        return value;
+    }
+
+    private static Number parseNumber(String value, OperatorNode<ExpressionOperator> parameter) {
+        try {
+            return Long.valueOf(value);
+        }
+        catch (NumberFormatException e) {
+            try {
+                return Double.valueOf(value);
+            }
+            catch (NumberFormatException e2) {
+                throw new IllegalArgumentException("Expected a number as the value of parameter '" +
+                                                   parameter.getArgument(0, String.class) + "', but got '" + value + "'");
+            }
+        }
+    }
+
     private void propagateUserInputAnnotations(OperatorNode<ExpressionOperator> ast, Item item) {
         ToolBox.visit(new AnnotationPropagator(ast), item);
     }
@@ -721,12 +761,7 @@ public class YqlParser implements Parser {
 
     @NonNull
     private OperatorNode<?> parseYqlProgram() {
-        OperatorNode<?> ast;
-        try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-        }
+        OperatorNode<?> ast = parseProgram(currentlyParsing.getQuery());
         assertHasOperator(ast, StatementOperator.PROGRAM);
         Preconditions.checkArgument(ast.getArguments().length == 1,
                                     "Expected only a single argument to the root node, got %s.",
@@ -944,7 +979,7 @@ public class YqlParser implements Parser {
 
     @NonNull
     private TermItem buildEquals(OperatorNode<ExpressionOperator> ast) {
-        String value = fetchConditionWord(ast);
+        String value = fetchConditionWord(ast, true);
 
         TermItem item;
         if (value.equals("true") || value.equals("false"))
@@ -962,43 +997,62 @@ public class YqlParser implements Parser {
     private String fetchConditionIndex(OperatorNode<ExpressionOperator> ast) {
         OperatorNode<ExpressionOperator> lhs = ast.getArgument(0);
         OperatorNode<ExpressionOperator> rhs = ast.getArgument(1);
-        if (lhs.getOperator() == ExpressionOperator.LITERAL || lhs.getOperator() == ExpressionOperator.NEGATE) {
+        if (isValue(lhs)) {
             return getIndex(rhs);
         }
-        if (rhs.getOperator() == ExpressionOperator.LITERAL || rhs.getOperator() == ExpressionOperator.NEGATE) {
+        if (isValue(rhs)) {
             return getIndex(lhs);
         }
         throw new IllegalArgumentException("Expected LITERAL and READ_FIELD/PROPREF, got " + lhs.getOperator() +
                                            " and " + rhs.getOperator() + ".");
     }
 
-    private static String getNumberAsString(OperatorNode<ExpressionOperator> ast) {
+    private String getNumberAsString(OperatorNode<ExpressionOperator> ast, boolean allowBooleans) {
         String negative = "";
         OperatorNode<ExpressionOperator> currentAst = ast;
         if (currentAst.getOperator() == ExpressionOperator.NEGATE) {
             negative = "-";
             currentAst = currentAst.getArgument(0);
         }
+        if (currentAst.getOperator() == ExpressionOperator.VARREF) {
+            String value = getParameter(currentAst);
+            if ( ! (allowBooleans && negative.isEmpty() && (value.equals("true") || value.equals("false"))))
+                parseNumber(value, currentAst);
+            return negative + value;
+        }
         assertHasOperator(currentAst, ExpressionOperator.LITERAL);
         return negative + currentAst.getArgument(0).toString();
     }
 
     @NonNull
-    private static String fetchConditionWord(OperatorNode<ExpressionOperator> ast) {
+    private String fetchConditionWord(OperatorNode<ExpressionOperator> ast) {
+        return fetchConditionWord(ast, false);
+    }
+
+    /** Returns the value compared to in the given condition, which may be a boolean only if allowBooleans is true */
+    @NonNull
+    private String fetchConditionWord(OperatorNode<ExpressionOperator> ast, boolean allowBooleans) {
         OperatorNode<ExpressionOperator> lhs = ast.getArgument(0);
         OperatorNode<ExpressionOperator> rhs = ast.getArgument(1);
-        if (lhs.getOperator() == ExpressionOperator.LITERAL || lhs.getOperator() == ExpressionOperator.NEGATE) {
+        if (isValue(lhs)) {
             assertFieldName(rhs);
-            return getNumberAsString(lhs);
+            return getNumberAsString(lhs, allowBooleans);
         }
-        if (rhs.getOperator() == ExpressionOperator.LITERAL || rhs.getOperator() == ExpressionOperator.NEGATE) {
+        if (isValue(rhs)) {
             assertFieldName(lhs);
-            return getNumberAsString(rhs);
+            return getNumberAsString(rhs, allowBooleans);
         }
         throw new IllegalArgumentException("Expected LITERAL/NEGATE and READ_FIELD/PROPREF, got "
                         + lhs.getOperator() + " and " + rhs.getOperator() + ".");
     }
 
+    /** Returns whether the given node is a (possibly negated) literal or parameter */
+    private static boolean isValue(OperatorNode<ExpressionOperator> ast) {
+        return ast.getOperator() == ExpressionOperator.LITERAL
+               || ast.getOperator() == ExpressionOperator.NEGATE
+               || ast.getOperator() == ExpressionOperator.VARREF;
+    }
+
     private static boolean isIndexOnLeftHandSide(OperatorNode<ExpressionOperator> ast) {
         OperatorNode node =  ast.getArgument(0, OperatorNode.class);
         return node.getOperator() == ExpressionOperator.READ_FIELD || node.getOperator() == ExpressionOperator.PROPREF;
@@ -1159,8 +1213,13 @@ public class YqlParser implements Parser {
             currentBound = currentBound.getArgument(0);
             negate = true;
         }
-        assertHasOperator(currentBound, ExpressionOperator.LITERAL);
-        boundValue = currentBound.getArgument(0, Number.class);
+        if (currentBound.getOperator() == ExpressionOperator.VARREF) {
+            boundValue = parseNumber(getParameter(currentBound), currentBound);
+        }
+        else {
+            assertHasOperator(currentBound, ExpressionOperator.LITERAL);
+            boundValue = currentBound.getArgument(0, Number.class);
+        }
         if (negate) {
             boundValue = negate(boundValue);
         }
@@ -1749,4 +1808,20 @@ public class YqlParser implements Parser {
         }
     }
 
+    /** Returns the parsed form of the given YQL program, which must not be modified */
+    private static OperatorNode<StatementOperator> parseProgram(String yql) {
+        boolean cacheable = yql.length() <= maxCachedProgramLength;
+        OperatorNode<StatementOperator> program = cacheable ? programCache.getIfPresent(yql) : null;
+        if (program != null) return program;
+
+        try {
+            program = new ProgramParser().parse("query", yql);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+        if (cacheable)
+            programCache.put(yql, program);
+        return program;
+    }
+
 }
@@ -279,6 +279,35 @@ public class QueryTestCase {
         assertEqualArrays(correctBuffer,encoded);
     }
 
+    @Test
+    public void testSharedEncoding() {
+        Query query = new Query("/?query=chain&timeout=0");
+        query.setWindow(2, 8);
+        QueryPacket packet = QueryPacket.create("container.0", query);
+        packet.encodeForSharing();
+        query.setWindow(3, 9); // Not seen, as the packet is already encoded
+
+        byte[] correctBody = new byte[] {0,0,0,6, // Features
+                                         2,
+                                         8,
+                                         0,0,0,1, // querytimeout
+                                         0,0,0x40,0x03,  // qflags
+                                         7,
+                                         'd', 'e', 'f', 'a', 'u', 'l', 't',
+                                         0,0,0,1,0,0,0,8,4,
+                                         0,5,
+                                         99,104,97,105,110};
+        for (int channelId : new int[] { 0x07070707, 0x09090909 }) {
+            ByteBuffer buffer = packet.grantEncodingBuffer(channelId);
+            assertEquals(46, buffer.getInt());
+            assertEquals(218, buffer.getInt());
+            assertEquals(channelId, buffer.getInt());
+            byte[] body = new byte[buffer.remaining()];
+            buffer.get(body);
+            assertEqualArrays(correctBody, body);
+        }
+    }
+
     public static byte[] packetToBytes(Packet packet) {
         try {
             ByteBuffer buffer = ByteBuffer.allocate(500);
@@ -0,0 +1,57 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.test;
+
+import com.yahoo.prelude.semantics.RuleBase;
+import com.yahoo.prelude.semantics.parser.ParseException;
+import com.yahoo.search.Query;
+import com.yahoo.search.test.QueryTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that indexing rules on the terms they start matching at does not change the outcome of evaluating them
+ *
+ * @author agent
+ */
+public class RuleIndexTestCase {
+
+    private static final String rules =
+            "foo -> bar;\n" +
+            "bar -> baz;\n" +
+            "[brand] -> brand:[brand];\n" +
+            "[brand] :- sony, canon;\n" +
+            "( nikon, leica ) quux -> camera;\n" +
+            "[...] xyzzy -> plugh;\n";
+
+    @Test
+    public void testIndexedAndUnindexedEvaluationIsEqual() throws IOException, ParseException {
+        RuleBase ruleBase = RuleBase.createFromString("test", rules, null);
+
+        assertEquals("AND baz brand:sony", assertSameSemantics("foo sony", ruleBase)); // bar -> baz matches after foo -> bar
+        assertSameSemantics("foos canon", ruleBase); // stemmed match
+        assertSameSemantics("leica quux", ruleBase); // choice as first term
+        assertSameSemantics("a xyzzy", ruleBase); // not indexed
+        assertSameSemantics("canon bar", ruleBase);
+        assertSameSemantics("nikon qux", ruleBase); // no match
+    }
+
+    /** Asserts that the input is rewritten to the same with and without the rule index, and returns the rewrite */
+    private String assertSameSemantics(String input, RuleBase ruleBase) {
+        ruleBase.setIndexRules(false);
+        String unindexed = analyze(input, ruleBase);
+        ruleBase.setIndexRules(true);
+        String indexed = analyze(input, ruleBase);
+        assertEquals(unindexed, indexed);
+        return indexed;
+    }
+
+    private String analyze(String input, RuleBase ruleBase) {
+        Query query = new Query("?query=" + QueryTestCase.httpEncode(input) + "&language=und");
+        ruleBase.analyze(query, 0);
+        return query.getModel().getQueryTree().getRoot().toString();
+    }
+
+}
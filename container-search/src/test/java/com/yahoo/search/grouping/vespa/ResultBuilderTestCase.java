@@ -163,6 +163,32 @@ public class ResultBuilderTestCase {
                      "             each(group(b) each()) as(foo))", grouping, expectedOutput);
     }
 
+    @Test
+    public void requireThatGroupsOutsideThePageAreNotExpanded() {
+        Group inPage = newGroup(2, 1, newGroup(3, 1).setRank(1), newGroup(3, 2).setRank(2));
+        Group outsidePage = newGroup(2, 2, newGroup(3, 1).setRank(1), newGroup(3, 2).setRank(2));
+        Grouping grouping = newGrouping(inPage, outsidePage);
+
+        RequestBuilder reqBuilder = new RequestBuilder(REQUEST_ID);
+        reqBuilder.setRootOperation(GroupingOperation.fromString("all(group(a) max(1) each(group(b) each(output(count()))))"));
+        reqBuilder.build();
+        ResultBuilder resBuilder = new ResultBuilder();
+        resBuilder.setHitConverter(new MyHitConverter());
+        resBuilder.setTransform(reqBuilder.getTransform());
+        resBuilder.setRequestId(REQUEST_ID);
+        resBuilder.addGroupingResult(grouping);
+        resBuilder.build();
+
+        GroupList groupsA = (GroupList)resBuilder.getRoot().get(0);
+        assertEquals(1, groupsA.size());
+        GroupList groupsB = (GroupList)((HitGroup)groupsA.get(0)).get(0);
+        assertEquals(2, groupsB.size());
+
+        // The children of the group on the page are sorted by rank when converted, those of the other group are not
+        assertEquals(2, inPage.getChildren().get(0).getRank(), 0);
+        assertEquals(1, outsidePage.getChildren().get(0).getRank(), 0);
+    }
+
     @Test
     public void requireThatGroupListsAreLabeled() {
         assertLayout("all(group(a) each(output(count())))",
@@ -67,6 +67,55 @@ public class QueryProfileVariantsTestCase {
         assertGet("a.2.*.*","a",new String[] {"x2","y?","z?"}, profile, cprofile);
     }
 
+    @Test
+    public void testManyVariants() {
+        QueryProfile profile = new QueryProfile("a");
+        profile.setDimensions(new String[] {"x","y","z"});
+        profile.set("a", "default", null);
+        for (int i = 0; i < 4; i++) {
+            profile.set("a", "x" + i, new String[] {"x" + i}, null);
+            for (int j = 0; j < 4; j += 2)
+                profile.set("a", "xy" + i + j, new String[] {"x" + i, "y" + j}, null);
+        }
+        CompiledQueryProfile cprofile = profile.compile(null);
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                String expected = i == 4 ? "default" : (j % 2 == 0 && j < 4 ? "xy" + i + j : "x" + i);
+                assertGet(expected, "a", new String[] {"x" + i, "y" + j, "z0"}, profile, cprofile);
+                assertGet(expected, "a", new String[] {"x" + i, "y" + j, null}, profile, cprofile);
+            }
+        }
+        assertGet("default", "a", new String[] {null, "y0", null}, profile, cprofile);
+    }
+
+    @Test
+    public void testLookupsAreMemoizedForTheContextValues() {
+        QueryProfile profile = new QueryProfile("a");
+        profile.setDimensions(new String[] {"x","y"});
+        profile.set("a", "default", null);
+        profile.set("a", "x1", new String[] {"x1"}, null);
+        profile.set("a", "x1y1", new String[] {"x1", "y1"}, null);
+        QueryProfileProperties properties = new QueryProfileProperties(profile.compile(null));
+
+        Map<String, String> context = new HashMap<>();
+        context.put("x", "x1");
+        context.put("y", "y1");
+        assertEquals("x1y1", properties.get("a", context));
+        assertEquals("x1y1", properties.get("a", context));
+        assertEquals(null, properties.get("b", context));
+
+        context.put("y", "y2");
+        assertEquals("x1", properties.get("a", context));
+        context.put("other", "value");
+        assertEquals("x1", properties.get("a", context));
+        context.put("x", "x2");
+        assertEquals("default", properties.get("a", context));
+
+        properties.set("a", "set", context);
+        assertEquals("set", properties.get("a", context));
+    }
+
     @Test
     public void testVariantsOfInlineCompound() {
         QueryProfile profile=new QueryProfile("test");
@@ -3,12 +3,19 @@ package com.yahoo.search.query.test;
 
 import com.yahoo.prelude.query.WeightedSetItem;
 import com.yahoo.search.Query;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.test.QueryTestCase;
+
+import java.lang.management.ManagementFactory;
 
 /**
  * @author bratseth
  */
 public class QueryCloneMicroBenchmark {
 
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
     public void benchmark() {
         int runs = 10000;
 
@@ -22,6 +29,47 @@ public class QueryCloneMicroBenchmark {
         System.out.println("Time per clone: " + (totalTime * 1000 * 1000 / runs) + " nanoseconds" );
     }
 
+    /**
+     * Measures the time and bytes allocated when federating a query with a query profile and rank properties
+     * to 10 sources, by cloning it once per source and setting a property in each clone.
+     * Requires a JVM supporting com.sun.management.ThreadMXBean.
+     */
+    public void benchmarkFederation() {
+        int runs = 10000;
+
+        Query query = createFederatedQuery();
+        federate(query, 100000);
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.currentTimeMillis();
+        federate(query, runs);
+        long totalTime = System.currentTimeMillis() - startTime;
+        long totalBytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println("Federation to 10 sources: " + (totalTime * 1000 * 1000 / runs) + " nanoseconds and " +
+                           (totalBytes / runs) + " bytes per query");
+    }
+
+    private void federate(Query query, int runs) {
+        for (int i = 0; i < runs; i++) {
+            for (int source = 0; source < 10; source++) {
+                Query clone = query.clone();
+                clone.properties().set("source", "source" + source);
+            }
+        }
+    }
+
+    private Query createFederatedQuery() {
+        QueryProfile profile = new QueryProfile("federated");
+        for (int i = 0; i < 20; i++)
+            profile.set("myProperty" + i, "value" + i, null);
+        StringBuilder request = new StringBuilder("?query=test");
+        for (int i = 0; i < 20; i++) {
+            request.append("&ranking.features.query(feature").append(i).append(")=").append(i);
+            request.append("&ranking.properties.property").append(i).append("=").append(i);
+        }
+        return new Query(QueryTestCase.httpEncode(request.toString()), profile.compile(null));
+    }
+
     private Query createQuery() {
         Query query = new Query();
         query.getModel().getQueryTree().setRoot(createWeightedSet());
@@ -37,6 +85,7 @@ public class QueryCloneMicroBenchmark {
 
     public static void main(String[] args) {
         new QueryCloneMicroBenchmark().benchmark();
+        new QueryCloneMicroBenchmark().benchmarkFederation();
     }
 
 }
@@ -934,6 +934,68 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStructuredDataIsRenderedDirectly() throws IOException, InterruptedException, ExecutionException {
+        String expected = "{\n"
+                + "    \"root\": {\n"
+                + "        \"children\": [\n"
+                + "            {\n"
+                + "                \"fields\": {\n"
+                + "                    \"struct\": {\n"
+                + "                        \"string\": \"bl\u00e5b\u00e6r \\\"quoted\\\"\\n\",\n"
+                + "                        \"long\": 7809531904,\n"
+                + "                        \"double\": 0.5,\n"
+                + "                        \"bool\": true,\n"
+                + "                        \"data\": \"0x01FF\",\n"
+                + "                        \"array\": [ 1, { \"nested\": \"value\" } ]\n"
+                + "                    },\n"
+                + "                    \"map\": {\n"
+                + "                        \"key1\": 1,\n"
+                + "                        \"key2\": [ \"a\", \"b\" ]\n"
+                + "                    }\n"
+                + "                },\n"
+                + "                \"id\": \"structured\",\n"
+                + "                \"relevance\": 1.0\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"fields\": {\n"
+                + "            \"totalCount\": 0\n"
+                + "        },\n"
+                + "        \"id\": \"toplevel\",\n"
+                + "        \"relevance\": 1.0\n"
+                + "    }\n"
+                + "}\n";
+        Slime structSlime = new Slime();
+        Cursor struct = structSlime.setObject();
+        struct.setString("string", "bl\u00e5b\u00e6r \"quoted\"\n");
+        struct.setLong("long", 7809531904L);
+        struct.setDouble("double", 0.5);
+        struct.setBool("bool", true);
+        struct.setData("data", new byte[] { 1, (byte)0xff });
+        Cursor array = struct.setArray("array");
+        array.addLong(1);
+        array.addObject().setString("nested", "value");
+
+        Slime mapSlime = new Slime();
+        Cursor map = mapSlime.setArray();
+        Cursor entry1 = map.addObject();
+        entry1.setString("key", "key1");
+        entry1.setLong("value", 1);
+        Cursor entry2 = map.addObject();
+        entry2.setString("key", "key2");
+        Cursor values = entry2.setArray("value");
+        values.addString("a");
+        values.addString("b");
+
+        Result r = newEmptyResult();
+        Hit h = new Hit("structured");
+        h.setField("struct", new StructuredData(new SlimeAdapter(structSlime.get())));
+        h.setField("map", new StructuredData(new SlimeAdapter(mapSlime.get())));
+        r.hits().add(h);
+        String summary = render(r);
+        assertEqualJson(expected, summary);
+    }
+
     @Test
     public void testFieldValueInHit() throws IOException, InterruptedException, ExecutionException {
         String expected = "{\n"
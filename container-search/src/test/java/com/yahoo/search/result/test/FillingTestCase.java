@@ -6,9 +6,11 @@ import com.yahoo.search.result.HitGroup;
 import org.junit.Test;
 
 import java.util.Collections;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -53,6 +55,25 @@ public class FillingTestCase {
         assertTrue(group.isFilled("otherSummary"));
     }
 
+    @Test
+    public void testFilledSetsAreSharedUntilModified() {
+        Hit hit1 = createNonFilled("hit:1");
+        Hit hit2 = createNonFilled("hit:2");
+        hit1.setFilled("summary");
+        hit2.setFilled("summary");
+        assertSame(hit1.getFilled(), hit2.getFilled());
+
+        Hit clone = hit1.clone();
+        clone.setFilled("otherSummary");
+        assertEquals(Set.of("summary", "otherSummary"), clone.getFilled());
+        assertEquals(Set.of("summary"), hit1.getFilled());
+
+        Hit cloneOfClone = clone.clone();
+        cloneOfClone.setFilled("thirdSummary");
+        assertEquals(Set.of("summary", "otherSummary"), clone.getFilled());
+        assertEquals(Set.of("summary", "otherSummary", "thirdSummary"), cloneOfClone.getFilled());
+    }
+
     @Test
     public void testPartiallyFilledWith2Hits() {
         Hit hit1 = new Hit("id1");
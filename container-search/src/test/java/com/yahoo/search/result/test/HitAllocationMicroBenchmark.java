@@ -0,0 +1,92 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.result.test;
+
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures the bytes allocated per hit when creating and filling results of typical sizes.
+ * Requires a JVM supporting com.sun.management.ThreadMXBean.
+ *
+ * @author agent
+ */
+public class HitAllocationMicroBenchmark {
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    private final int hitCount;
+    private final DocsumDefinition docsum = new DocsumDefinition("default",
+                                                                 Arrays.asList(DocsumField.create("title", "string"),
+                                                                               DocsumField.create("count", "int64")));
+    private final Inspector summary = createSummary();
+
+    public HitAllocationMicroBenchmark(int hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public void benchmark(int results) {
+        createResults(1000); // warm-up
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.currentTimeMillis();
+        createResults(results);
+        long totalTime = System.currentTimeMillis() - startTime;
+        long totalBytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+        System.out.println("Results of " + hitCount + " hits: " + ((float)totalTime / results) + " ms and " +
+                           (totalBytes / ((long)results * hitCount)) + " bytes per hit");
+    }
+
+    private int createResults(int results) {
+        int total = 0;
+        for (int i = 0; i < results; i++) {
+            HitGroup result = new HitGroup();
+            for (int j = 0; j < hitCount; j++)
+                result.add(createHit(j));
+            for (int j = 0; j < hitCount; j++) {
+                FastHit hit = (FastHit)result.get(j);
+                hit.addSummary(docsum, summary);
+                hit.setFilled("default");
+            }
+            total += result.size();
+        }
+        return total;
+    }
+
+    /** Returns a summary shared by all the hits, so that decoding it is not included in the allocation per hit */
+    private static Inspector createSummary() {
+        Slime slime = new Slime();
+        Cursor summary = slime.setObject();
+        summary.setString("title", "A title");
+        summary.setLong("count", 7);
+        return new SlimeAdapter(slime.get());
+    }
+
+    private FastHit createHit(int i) {
+        FastHit hit = new FastHit();
+        hit.setRelevance(1.0 / (i + 1));
+        hit.setGlobalId(new GlobalId(new byte[GlobalId.LENGTH]));
+        hit.setPartId(i % 16);
+        hit.setDistributionKey(i % 8);
+        hit.setFillable();
+        hit.setField("documentid", "id:test:test::" + i);
+        return hit;
+    }
+
+    public static void main(String[] args) {
+        new HitAllocationMicroBenchmark(10).benchmark(10000);
+        new HitAllocationMicroBenchmark(100).benchmark(1000);
+        new HitAllocationMicroBenchmark(1000).benchmark(100);
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.search.searchchain.test;
 
 import com.yahoo.component.ComponentId;
 import com.yahoo.component.chain.Chain;
+import com.yahoo.search.AsyncSearcher;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -15,11 +16,14 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -146,6 +150,82 @@ public class AsyncExecutionTestCase {
 
     }
 
+    @Test
+    public void testAsyncSearcherIsInvokedWithoutAThread() {
+        CompletableFuture<Result> backendResult = new CompletableFuture<>();
+        FutureProducingSearcher searcher = new FutureProducingSearcher(backendResult);
+        Query query = new Query("?query=test");
+        FutureResult futureResult = new AsyncExecution(new Execution(searcher, Execution.Context.createContextStub())).search(query);
+
+        assertEquals(Thread.currentThread(), searcher.invokingThread);
+        assertFalse(futureResult.isDone());
+        assertTrue(futureResult.getIfAvailable(1, TimeUnit.MILLISECONDS).isEmpty());
+
+        Result result = new Result(query);
+        result.hits().add(new Hit("test"));
+        new Thread(() -> backendResult.complete(result)).start();
+
+        List<Result> results = AsyncExecution.waitForAll(List.of(futureResult), 60000);
+        assertEquals(1, results.get(0).hits().size());
+        assertEquals("test", results.get(0).hits().get(0).getId().toString());
+    }
+
+    @Test
+    public void testAsyncSearcherFailing() {
+        CompletableFuture<Result> backendResult = new CompletableFuture<>();
+        backendResult.completeExceptionally(new IllegalStateException("Backend failed"));
+        Query query = new Query("?query=test");
+        FutureResult futureResult = new AsyncExecution(new Execution(new FutureProducingSearcher(backendResult),
+                                                                     Execution.Context.createContextStub())).search(query);
+        assertTrue(futureResult.isDone());
+        assertNotNull(futureResult.get().hits().getErrorHit());
+    }
+
+    @Test
+    public void testAsyncSearcherInvokedSynchronously() {
+        Query query = new Query("?query=test");
+        Result result = new Execution(new FutureProducingSearcher(CompletableFuture.completedFuture(new Result(query))),
+                                      Execution.Context.createContextStub()).search(query);
+        assertNull(result.hits().getErrorHit());
+
+        query = new Query("?query=test&timeout=1ms");
+        result = new Execution(new FutureProducingSearcher(new CompletableFuture<>()),
+                               Execution.Context.createContextStub()).search(query);
+        assertNotNull(result.hits().getErrorHit());
+    }
+
+    @Test
+    public void testAsyncSearchIsTimedWhenTheFutureCompletes() {
+        CompletableFuture<Result> backendResult = new CompletableFuture<>();
+        Query query = new Query("?query=test");
+        Execution execution = new Execution(new FutureProducingSearcher(backendResult), Execution.Context.createContextStub());
+        CompletableFuture<Result> future = execution.searchAsync(query);
+        assertFalse(future.isDone());
+
+        Result result = new Result(query);
+        backendResult.complete(result);
+        assertSame(result, future.join());
+        assertTrue("The time of the search is tracked in the result",
+                   result.getElapsedTime().first() < Long.MAX_VALUE);
+    }
+
+    private static class FutureProducingSearcher extends AsyncSearcher {
+
+        private final CompletableFuture<Result> result;
+        private Thread invokingThread = null;
+
+        FutureProducingSearcher(CompletableFuture<Result> result) {
+            this.result = result;
+        }
+
+        @Override
+        public CompletableFuture<Result> searchAsync(Query query, Execution execution) {
+            invokingThread = Thread.currentThread();
+            return result;
+        }
+
+    }
+
     @Test
     public void testAsyncExecutionTimeout() {
         Chain<Searcher> chain = new Chain<>(new Searcher() {
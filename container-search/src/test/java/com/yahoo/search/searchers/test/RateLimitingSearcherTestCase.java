@@ -18,7 +18,12 @@ import org.junit.Test;
 import com.yahoo.test.ManualClock;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -78,6 +83,41 @@ public class RateLimitingSearcherTestCase {
         assertEquals(requestsToTry-2 + requestsToTry-4,         map.get(metric.point("id", "id2")).getCount());
     }
 
+    @Test
+    public void testConcurrentRequestsDoNotExceedCapacity() throws Exception {
+        RateLimitingConfig.Builder rateLimitingConfig = new RateLimitingConfig.Builder();
+        rateLimitingConfig.maxAvailableCapacity(4);
+        rateLimitingConfig.capacityIncrement(2);
+        rateLimitingConfig.recheckForCapacityProbability(1.0);
+
+        ClusterInfoConfig.Builder clusterInfoConfig = new ClusterInfoConfig.Builder();
+        clusterInfoConfig.clusterId("testCluster");
+        clusterInfoConfig.nodeCount(1);
+
+        Chain<Searcher> chain = new Chain<Searcher>("test", new RateLimitingSearcher(new RateLimitingConfig(rateLimitingConfig),
+                                                                                     new ClusterInfoConfig(clusterInfoConfig),
+                                                                                     new MetricReceiver.MockReceiver(),
+                                                                                     new ManualClock()),
+                                                    new CostSettingSearcher());
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Integer>> allowed = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++)
+                allowed.add(executor.submit(() -> tryRequests(chain, "id1", 100)));
+            int totalAllowed = 0;
+            for (Future<Integer> threadAllowed : allowed)
+                totalAllowed += threadAllowed.get();
+            // The clock does not move, so only the initial capacity is available,
+            // but each thread may overspend by the cost of one query
+            assertTrue(totalAllowed > 0);
+            assertTrue("Allowed " + totalAllowed, totalAllowed <= 100 + threadCount);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
     private int requestsToTry = 50;
 
     /**
@@ -86,9 +126,13 @@ public class RateLimitingSearcherTestCase {
      * and is determined by floating point arithmetic details when capacity is close to zero.
      */
     private int tryRequests(Chain<Searcher> chain, String id) {
+        return tryRequests(chain, id, 8);
+    }
+
+    private int tryRequests(Chain<Searcher> chain, String id, int quota) {
         int allowedCount = 0;
         for (int i = 0; i < requestsToTry; i++) {
-            if (executeWasAllowed(chain, id))
+            if (executeWasAllowed(chain, id, quota))
                 allowedCount++;
         }
         return allowedCount;
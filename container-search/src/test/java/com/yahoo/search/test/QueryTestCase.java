@@ -132,6 +132,29 @@ public class QueryTestCase {
         assertNotSame(q.getModel().getQueryTree(), p.getModel().getQueryTree());
     }
 
+    @Test
+    public void testClonesDoNotShareModifications() {
+        Query q = new Query(httpEncode("/sdfsd.html?query=test&ranking.features.query(a)=1&ranking.properties.p=1&myParameter=1"));
+        Query p = q.clone();
+
+        p.getRanking().getFeatures().put("query(a)", "2");
+        p.getRanking().getProperties().put("p", "2");
+        p.properties().set("myParameter", "2");
+        q.getRanking().getFeatures().put("query(b)", "1");
+
+        assertEquals("1", q.getRanking().getFeatures().get("query(a)"));
+        assertEquals("2", p.getRanking().getFeatures().get("query(a)"));
+        assertEquals("1", q.getRanking().getFeatures().get("query(b)"));
+        assertNull(p.getRanking().getFeatures().get("query(b)"));
+        assertEquals(List.of("1"), q.getRanking().getProperties().get("p"));
+        assertEquals(List.of("1", "2"), p.getRanking().getProperties().get("p"));
+        assertEquals("1", q.properties().getString("myParameter"));
+        assertEquals("2", p.properties().getString("myParameter"));
+
+        p.getRanking().getProperties().asMap().get("p").clear();
+        assertEquals(List.of("1"), q.getRanking().getProperties().get("p"));
+    }
+
     private boolean isA(String s) {
         return (s.equals("a"));
     }
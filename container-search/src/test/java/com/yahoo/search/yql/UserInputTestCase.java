@@ -183,6 +183,53 @@ public class UserInputTestCase {
         assertEquals("select * from sources * where (foo contains \"bamse\" AND foo contains phrase(\"bamse\", \"syntactic\", \"bamse\"));", query.yqlRepresentation());
     }
 
+    @Test
+    public final void testParametersInPlaceOfNumbers() {
+        String yql = "select * from sources * where title > @year and range(price, @low, @high);";
+        URIBuilder builder = searchUri();
+        builder.setParameter("year", "2000");
+        builder.setParameter("low", "1");
+        builder.setParameter("high", "500");
+        builder.setParameter("yql", yql);
+        Query query = searchAndAssertNoErrors(builder);
+        assertEquals("select * from sources * where (title > 2000 AND range(price, 1, 500));", query.yqlRepresentation());
+
+        // The same program with other parameters
+        builder = searchUri();
+        builder.setParameter("year", "1999");
+        builder.setParameter("low", "2");
+        builder.setParameter("high", "600");
+        builder.setParameter("yql", yql);
+        query = searchAndAssertNoErrors(builder);
+        assertEquals("select * from sources * where (title > 1999 AND range(price, 2, 600));", query.yqlRepresentation());
+    }
+
+    @Test
+    public final void testInvalidNumericParameters() {
+        URIBuilder builder = searchUri();
+        builder.setParameter("year", "2000;]");
+        builder.setParameter("yql", "select * from sources * where title > @year;");
+        assertQueryFails(builder);
+
+        builder = searchUri();
+        builder.setParameter("yql", "select * from sources * where title > @year;");
+        assertQueryFails(builder);
+
+        builder = searchUri();
+        builder.setParameter("year", "true");
+        builder.setParameter("yql", "select * from sources * where title > @year;");
+        assertQueryFails(builder);
+    }
+
+    @Test
+    public final void testBooleanParameterInEquality() {
+        URIBuilder builder = searchUri();
+        builder.setParameter("flag", "true");
+        builder.setParameter("yql", "select * from sources * where enabled = @flag;");
+        Query query = searchAndAssertNoErrors(builder);
+        assertEquals("enabled:true", query.getModel().getQueryTree().getRoot().toString());
+    }
+
     private Query searchAndAssertNoErrors(URIBuilder builder) {
         Query query = new Query(builder.toString());
         Result r = execution.search(query);
@@ -0,0 +1,41 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import java.util.List;
+
+/**
+ * <p>A document processor which processes several processings in one call, for processors which
+ * have a cost per call which can be shared by many documents, such as invoking a model or a remote service.</p>
+ *
+ * <p>When a chain contains batch document processors, the document processing handler lets each worker thread
+ * take the tasks for the same chain which are already queued, up to the smallest {@link #getMaxBatchSize()} of
+ * the batch processors in the chain, and process them together. Processings pass the other processors of the chain
+ * one at a time as usual, and are collected into a batch for each batch processor. Each processing still gets
+ * its own progress, and each message its own reply. Note that if this throws an exception, the messages of all the
+ * processings passed in that call fail.</p>
+ *
+ * @author agent
+ */
+public abstract class BatchDocumentProcessor extends DocumentProcessor {
+
+    /**
+     * Processes a batch of processings. The implementing document processor is free to modify, replace or delete
+     * elements in the list inside each processing, but must not change the list of processings.
+     *
+     * @param processings the processings to process
+     * @return the outcome of each processing, in the same order as the given processings
+     */
+    public abstract List<Progress> process(List<Processing> processings);
+
+    /** Processes a single processing as a batch of one */
+    @Override
+    public final Progress process(Processing processing) {
+        return process(List.of(processing)).get(0);
+    }
+
+    /** Returns the maximum number of processings to pass to this in one call. This default implementation returns 32. */
+    public int getMaxBatchSize() {
+        return 32;
+    }
+
+}
@@ -166,6 +166,37 @@ public class Call implements Cloneable {
         }
     }
 
+    /**
+     * Call the BatchDocumentProcessor of this call with a batch of processings.
+     *
+     * @param processings the Processing objects to use
+     * @return the progress of each processing, in the same order as the given processings
+     * @throws IllegalStateException if the processor of this is not a BatchDocumentProcessor,
+     *         or it does not return one progress per processing
+     */
+    public List<DocumentProcessor.Progress> call(List<Processing> processings) {
+        if ( ! (processor instanceof BatchDocumentProcessor))
+            throw new IllegalStateException(this + " can not process batches");
+        try {
+            int numDocs = 0;
+            for (Processing processing : processings) {
+                numDocs += processing.getDocumentOperations().size();
+                schemaMapProcessing(processing);
+            }
+            long startTime = SystemTimer.INSTANCE.milliTime();
+            List<DocumentProcessor.Progress> retval = ((BatchDocumentProcessor) processor).process(processings);
+            incrementProcTime(SystemTimer.INSTANCE.milliTime() - startTime);
+            incrementDocs(numDocs);
+            if (retval == null || retval.size() != processings.size())
+                throw new IllegalStateException(this + " returned " + (retval == null ? "no" : retval.size()) +
+                                                " progresses for " + processings.size() + " processings");
+            return retval;
+        } finally {
+            for (Processing processing : processings)
+                unwrapSchemaMapping(processing);
+        }
+    }
+
     public String toString() {
         return "call to class " + processor.getClass().getName() + " (id: " + getDocumentProcessorId() + ")";
     }
@@ -9,7 +9,13 @@ import com.yahoo.log.LogLevel;
 import com.yahoo.statistics.Counter;
 import com.yahoo.text.Utf8;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
 /**
@@ -99,16 +105,138 @@ public class DocprocExecutor {
      * @see com.yahoo.docproc.Processing
      */
     public DocumentProcessor.Progress process(Processing processing) {
+        prepare(processing);
+        return advance(processing, false);
+    }
+
+    /**
+     * Processes the given processings through the CallStack of this executor. The processings are passed
+     * together to each {@link BatchDocumentProcessor}, in batches of at most its max batch size, and one at a time
+     * to the other processors.
+     *
+     * @param processings the processings to process. The CallStack of each Processing will be set to a clone of the CallStack of this executor, iff. it is currently null.
+     * @return the Progress of each processing, in the same order as the given processings; if one is LATER, that Processing is not done and must be reprocessed later.
+     * @throws RuntimeException if a document processor throws an exception during processing. The state of the other processings is then undefined.
+     * @see com.yahoo.docproc.BatchDocumentProcessor
+     */
+    public List<DocumentProcessor.Progress> process(List<Processing> processings) {
+        return process(processings, (processing, exception) -> { throw exception; });
+    }
+
+    /**
+     * Processes the given processings through the CallStack of this executor, as {@link #process(List)},
+     * but passes exceptions thrown by document processors to the given consumer instead of throwing them.
+     * An exception fails only the processing it was thrown for, or all the processings of the call
+     * if it was thrown by a {@link BatchDocumentProcessor}. The progress of failed processings is FAILED.
+     *
+     * @param processings the processings to process
+     * @param failures receives each processing which failed by an exception, and the exception
+     * @return the Progress of each processing, in the same order as the given processings
+     */
+    public List<DocumentProcessor.Progress> process(List<Processing> processings,
+                                                    BiConsumer<Processing, RuntimeException> failures) {
+        List<DocumentProcessor.Progress> progresses = new ArrayList<>(Collections.nCopies(processings.size(), null));
+        List<Integer> active = new ArrayList<>(processings.size());
+        for (int i = 0; i < processings.size(); i++) {
+            prepare(processings.get(i));
+            active.add(i);
+        }
+        while ( ! active.isEmpty()) {
+            // Move each processing up to its next batch processor, and collect the ones which got there
+            Map<DocumentProcessor, List<Integer>> batches = new LinkedHashMap<>();
+            for (int i : active) {
+                Processing processing = processings.get(i);
+                DocumentProcessor.Progress progress;
+                try {
+                    progress = advance(processing, true);
+                } catch (RuntimeException e) {
+                    progresses.set(i, DocumentProcessor.Progress.FAILED);
+                    failures.accept(processing, e);
+                    continue;
+                }
+                if (progress != null)
+                    progresses.set(i, progress);
+                else
+                    batches.computeIfAbsent(processing.callStack().peek().getDocumentProcessor(), __ -> new ArrayList<>()).add(i);
+            }
+
+            active = new ArrayList<>();
+            for (Map.Entry<DocumentProcessor, List<Integer>> batch : batches.entrySet()) {
+                int maxBatchSize = Math.max(1, ((BatchDocumentProcessor) batch.getKey()).getMaxBatchSize());
+                for (int start = 0; start < batch.getValue().size(); start += maxBatchSize) {
+                    List<Integer> indexes = batch.getValue().subList(start, Math.min(start + maxBatchSize, batch.getValue().size()));
+                    active.addAll(callBatch(indexes, processings, progresses, failures));
+                }
+            }
+        }
+        return progresses;
+    }
+
+    /** Calls the next processor of the given processings, and returns the indexes of the ones which are DONE with it */
+    private List<Integer> callBatch(List<Integer> indexes, List<Processing> processings, List<DocumentProcessor.Progress> progresses,
+                                    BiConsumer<Processing, RuntimeException> failures) {
+        List<Processing> batch = new ArrayList<>(indexes.size());
+        List<Call> calls = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            Processing processing = processings.get(i);
+            batch.add(processing);
+            calls.add(processing.callStack().pop());
+        }
+
+        List<DocumentProcessor.Progress> batchProgresses;
+        try {
+            batchProgresses = calls.get(0).call(batch);
+        } catch (RuntimeException e) {
+            for (int j = 0; j < indexes.size(); j++) {
+                progresses.set(indexes.get(j), DocumentProcessor.Progress.FAILED);
+                failures.accept(batch.get(j), e);
+            }
+            return Collections.emptyList();
+        }
+
+        List<Integer> done = new ArrayList<>(indexes.size());
+        for (int j = 0; j < indexes.size(); j++) {
+            DocumentProcessor.Progress progress = batchProgresses.get(j);
+            if (log.isLoggable(LogLevel.SPAM)) {
+                logProgress(batch.get(j), progress, calls.get(j));
+            }
+
+            if (DocumentProcessor.Progress.DONE.equals(progress)) {
+                done.add(indexes.get(j));
+                continue;
+            }
+            if (DocumentProcessor.Progress.LATER.equals(progress)) {
+                batch.get(j).callStack().addNext(calls.get(j));
+            }
+            progresses.set(indexes.get(j), progress);
+        }
+        return done;
+    }
+
+    private void prepare(Processing processing) {
         processing.setServiceName(getName());
         if (processing.callStack() == null) {
             processing.setCallStack(new CallStack(getCallStack()));
         }
 
-        DocumentProcessor.Progress progress = DocumentProcessor.Progress.DONE;
         //metrics stuff:
         //TODO: Note that this is *wrong* in case of Progress.LATER, documents are then counted several times until the Processing is DONE or FAILED.
         incrementNumDocsProcessed(processing);
+    }
+
+    /**
+     * Calls the processors of the call stack of the given processing until there are no more,
+     * or one does not return DONE.
+     *
+     * @param stopAtBatch whether to stop, and return null, when the next processor is a batch document processor
+     */
+    private DocumentProcessor.Progress advance(Processing processing, boolean stopAtBatch) {
+        DocumentProcessor.Progress progress = DocumentProcessor.Progress.DONE;
         do {
+            if (stopAtBatch && isBatch(processing.callStack().peek())) {
+                return null;
+            }
+
             Call call = processing.callStack().pop();
             if (call == null) {
                 // No more processors - done
@@ -131,6 +259,25 @@ public class DocprocExecutor {
         return progress;
     }
 
+    private static boolean isBatch(Call call) {
+        return call != null && call.getDocumentProcessor() instanceof BatchDocumentProcessor;
+    }
+
+    /**
+     * Returns the number of processings which should be processed together by this, which is the smallest
+     * max batch size of the batch document processors in the call stack of this, or 1 if it has none.
+     */
+    public int getMaxBatchSize() {
+        int maxBatchSize = Integer.MAX_VALUE;
+        for (Iterator<Call> i = callStack.iterator(); i.hasNext(); ) {
+            DocumentProcessor processor = i.next().getDocumentProcessor();
+            if (processor instanceof BatchDocumentProcessor) {
+                maxBatchSize = Math.min(maxBatchSize, ((BatchDocumentProcessor) processor).getMaxBatchSize());
+            }
+        }
+        return (maxBatchSize == Integer.MAX_VALUE) ? 1 : Math.max(1, maxBatchSize);
+    }
+
     private void logProgress(Processing processing, DocumentProcessor.Progress progress, Call call) {
         StringBuilder message = new StringBuilder();
         boolean first = true;
@@ -11,15 +11,21 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
+ * Admits document processing tasks as long as the total size of the messages queued and being
+ * processed is within a byte budget, to avoid running out of memory during bursts of large documents.
+ *
  * @author Einar M R Rosenvinge
  */
 class DocprocThreadManager {
 
     private static Logger log = Logger.getLogger(DocprocThreadManager.class.getName());
 
+    static final String PENDING_BYTES_METRIC = "docproc.pending_bytes";
+    static final String QUEUE_TIME_METRIC = "docproc.queue_time";
+
     private final long maxConcurrentByteSize;
-    private final AtomicLong bytesStarted = new AtomicLong(0);
-    private final AtomicLong bytesFinished = new AtomicLong(0);
+    private final Metric metric;
+    private final AtomicLong pendingBytes = new AtomicLong(0);
 
     DocprocThreadManager(double maxConcurrentFactor, double documentExpansionFactor, int containerCoreMemoryMb) {
         this(maxConcurrentFactor, documentExpansionFactor, containerCoreMemoryMb, Statistics.nullImplementation,
@@ -29,29 +35,57 @@ class DocprocThreadManager {
     DocprocThreadManager(double maxConcurrentFactor, double documentExpansionFactor, int containerCoreMemoryMb,
                          Statistics statistics, Metric metric) {
         this((long) (((double) DocumentUtil.calculateMaxPendingSize(maxConcurrentFactor, documentExpansionFactor,
-                                                      containerCoreMemoryMb)) * maxConcurrentFactor));
+                                                      containerCoreMemoryMb)) * maxConcurrentFactor),
+             metric);
     }
 
     DocprocThreadManager(long maxConcurrentByteSize) {
+        this(maxConcurrentByteSize, new NullMetric());
+    }
+
+    DocprocThreadManager(long maxConcurrentByteSize, Metric metric) {
         final int MINCONCURRENTBYTES=256*1024*1024;    //256M
         if (maxConcurrentByteSize < MINCONCURRENTBYTES) {
             maxConcurrentByteSize = MINCONCURRENTBYTES;
         }
 
         this.maxConcurrentByteSize = maxConcurrentByteSize;
+        this.metric = metric;
         log.log(LogLevel.CONFIG, "Docproc service allowed to concurrently process "
                                + (((double) maxConcurrentByteSize) / 1024.0d / 1024.0d) + " megabytes of input data.");
     }
 
-    boolean isAboveLimit() {
-        return (bytesFinished.get() - bytesStarted.get() > maxConcurrentByteSize);
+    /**
+     * Adds the size of the given task to the pending bytes if this does not exceed the limit,
+     * or if nothing is pending, such that single tasks larger than the limit are admitted.
+     *
+     * @return whether the task was admitted, in which case {@link #release} must be called
+     *         when it is done or could not be queued after all
+     */
+    boolean admit(DocumentProcessingTask task) {
+        long size = task.getApproxSize();
+        while (true) {
+            long pending = pendingBytes.get();
+            if (pending > 0 && pending + size > maxConcurrentByteSize) return false;
+            if (pendingBytes.compareAndSet(pending, pending + size)) break;
+        }
+        task.setAdmittedAt(System.nanoTime());
+        return true;
+    }
+
+    void release(DocumentProcessingTask task) {
+        metric.set(PENDING_BYTES_METRIC, pendingBytes.addAndGet(- task.getApproxSize()), null);
     }
+
+    long pendingBytes() { return pendingBytes.get(); }
+
     void beforeExecute(DocumentProcessingTask task) {
-        bytesStarted.getAndAdd(task.getApproxSize());
+        metric.set(QUEUE_TIME_METRIC, (System.nanoTime() - task.getAdmittedAt()) / 1_000_000, null);
+        metric.set(PENDING_BYTES_METRIC, pendingBytes.get(), null);
     }
 
     void afterExecute(DocumentProcessingTask task) {
-        bytesFinished.getAndAdd(task.getApproxSize());
+        release(task);
     }
     void shutdown() {
     }
@@ -4,8 +4,10 @@ package com.yahoo.docproc.jdisc;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.log.LogLevel;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -29,6 +31,50 @@ public class DocprocThreadPoolExecutor extends ThreadPoolExecutor {
         log.log(LogLevel.DEBUG, "Created docproc thread pool with " + super.getCorePoolSize() + " worker threads.");
     }
 
+    /**
+     * Queues the given task for execution.
+     *
+     * @throws RejectedExecutionException if the size of the pending tasks is above the limit, or this is shut down
+     */
+    @Override
+    public void execute(Runnable runnable) {
+        DocumentProcessingTask task = (DocumentProcessingTask) runnable;
+        if ( ! threadManager.admit(task))
+            throw new RejectedExecutionException("Pending document processing tasks are above the size limit");
+        try {
+            super.execute(task);
+        } catch (RejectedExecutionException e) {
+            threadManager.release(task);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the tasks for the same service as the given task from the head of the queue, and returns them after
+     * the given task. The tasks returned are at most maxSize, including the given task. Only the tasks before the
+     * first task for another service are taken, so this takes time proportional to the size of the batch,
+     * not of the queue. The tasks taken must be passed to {@link #batchDone} when they are processed.
+     */
+    List<DocumentProcessingTask> takeBatch(DocumentProcessingTask first, int maxSize) {
+        List<DocumentProcessingTask> batch = new ArrayList<>();
+        batch.add(first);
+        while (batch.size() < maxSize) {
+            DocumentProcessingTask task = (DocumentProcessingTask) getQueue().peek();
+            if (task == null || task.getService() != first.getService()) break;
+            if ( ! getQueue().remove(task)) continue; // Taken by another thread
+
+            threadManager.beforeExecute(task);
+            batch.add(task);
+        }
+        return batch;
+    }
+
+    /** Releases the tasks returned by {@link #takeBatch}, except the first, which is released when its execution ends */
+    void batchDone(List<DocumentProcessingTask> batch) {
+        for (DocumentProcessingTask task : batch.subList(1, batch.size()))
+            threadManager.afterExecute(task);
+    }
+
     @Override
     protected void beforeExecute(Thread thread, Runnable runnable) {
         threadManager.beforeExecute((DocumentProcessingTask) runnable);
@@ -52,8 +98,4 @@ public class DocprocThreadPoolExecutor extends ThreadPoolExecutor {
         return list;
     }
 
-    boolean isAboveLimit() {
-        return threadManager.isAboveLimit();
-    }
-
 }
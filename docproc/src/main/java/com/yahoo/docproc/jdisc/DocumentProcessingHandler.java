@@ -30,6 +30,7 @@ import com.yahoo.messagebus.jdisc.MbusRequest;
 import com.yahoo.processing.execution.chain.ChainRegistry;
 import com.yahoo.statistics.Statistics;
 
+import java.util.List;
 import java.util.TimerTask;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
@@ -194,19 +195,26 @@ public class DocumentProcessingHandler extends AbstractRequestHandler {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     void submit(DocumentProcessingTask task) {
-        if (threadPool.isAboveLimit()) {
+        try {
+            threadPool.execute(task);
+        } catch (RejectedExecutionException ree) {
             task.queueFull();
-        } else {
-            try {
-                threadPool.execute(task);
-            } catch (RejectedExecutionException ree) {
-                task.queueFull();
-            }
         }
     }
 
+    /**
+     * Returns the given task followed by the queued tasks for the same service, up to the max batch size
+     * of the service. These must be passed to {@link #batchDone} when they are processed.
+     */
+    List<DocumentProcessingTask> takeBatch(DocumentProcessingTask task) {
+        return threadPool.takeBatch(task, task.getService().getExecutor().getMaxBatchSize());
+    }
+
+    void batchDone(List<DocumentProcessingTask> batch) {
+        threadPool.batchDone(batch);
+    }
+
     void submit(DocumentProcessingTask task, long delay) {
         LaterTimerTask timerTask = new LaterTimerTask(task, delay);
         laterExecutor.schedule(timerTask, delay, TimeUnit.MILLISECONDS);
@@ -15,8 +15,10 @@ import com.yahoo.yolean.Exceptions;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -39,6 +41,7 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     private final static AtomicLong seq = new AtomicLong();
     private final long seqNum;
     private final DocprocService service;
+    private long admittedAtNanos;
 
     public DocumentProcessingTask(RequestContext requestContext, DocumentProcessingHandler docprocHandler,
                                   DocprocService service) {
@@ -52,22 +55,21 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
     @Override
     public void run() {
         try {
-            try {
-                processings.addAll(requestContext.getProcessings());
-            } catch (Exception e) {
-                //deserialization failed:
-                log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
-                requestContext.processingFailed(e);
+            if ( ! addProcessings()) return;
+
+            DocprocExecutor executor = service.getExecutor();
+            if (executor.getMaxBatchSize() > 1) {
+                List<DocumentProcessingTask> batch = docprocHandler.takeBatch(this);
+                try {
+                    process(batch, executor);
+                } finally {
+                    docprocHandler.batchDone(batch);
+                }
                 return;
             }
 
-            DocprocExecutor executor = service.getExecutor();
             DocumentProcessor.Progress progress = process(executor);
-
-            if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
-                DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) progress;
-                docprocHandler.submit(this, laterProgress.getDelay());
-            }
+            submitIfLater(progress);
         } catch (Error error) {
             try {
                 log.log(LogLevel.FATAL, Exceptions.toMessageString(error), error);
@@ -79,6 +81,26 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         }
     }
 
+    /** Adds the processings of the request to this, and returns whether this succeeded */
+    private boolean addProcessings() {
+        try {
+            processings.addAll(requestContext.getProcessings());
+            return true;
+        } catch (Exception e) {
+            //deserialization failed:
+            log.log(LogLevel.WARNING, "Deserialization of message failed.", e);
+            requestContext.processingFailed(e);
+            return false;
+        }
+    }
+
+    private void submitIfLater(DocumentProcessor.Progress progress) {
+        if (DocumentProcessor.Progress.LATER.equals(progress) && !processings.isEmpty()) {
+            DocumentProcessor.LaterProgress laterProgress = (DocumentProcessor.LaterProgress) progress;
+            docprocHandler.submit(this, laterProgress.getDelay());
+        }
+    }
+
     /**
      * Used by DocprocThreadManager. If a ProcessingTask has been taken by a thread, it can wait() no longer than
      * waitCounter (currently 10) times before being executed. This is to prevent large tasks from being delayed
@@ -102,28 +124,8 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         while (iterator.hasNext()) {
             Processing processing = iterator.next();
             iterator.remove();
-            if (requestContext.hasExpired()) {
-                DocumentProcessor.Progress progress = DocumentProcessor.Progress.FAILED;
-                final String location;
-                if (processing != null) {
-                    final CallStack callStack = processing.callStack();
-                    if (callStack != null) {
-                        final Call lastPopped = callStack.getLastPopped();
-                        if (lastPopped != null) {
-                            location = lastPopped.toString();
-                        } else {
-                            location = "empty call stack or no processors popped";
-                        }
-                    } else {
-                        location = "no call stack";
-                    }
-                } else {
-                    location = "no processing instance";
-                }
-                String errorMsg = processing + " failed, " + location;
-                log.log(Level.FINE, "Time is up for '" + errorMsg + "'.");
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE, "Time is up.");
-                return progress;
+            if (failIfExpired(processing)) {
+                return DocumentProcessor.Progress.FAILED;
             }
 
             DocumentProcessor.Progress progress = DocumentProcessor.Progress.FAILED;
@@ -135,23 +137,136 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
                 return progress;
             }
 
-            if (DocumentProcessor.Progress.LATER.equals(progress)) {
-                later.add(new Tuple2<>(progress, processing));
-            } else if (DocumentProcessor.Progress.DONE.equals(progress)) {
-                processingsDone.add(processing);
-            } else if (DocumentProcessor.Progress.FAILED.equals(progress)) {
-                logProcessingFailure(processing, null);
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
-                        progress.getReason().orElse("Document processing failed."));
-                return progress;
-            } else if (DocumentProcessor.Progress.PERMANENT_FAILURE.equals(progress)) {
-                logProcessingFailure(processing, null);
-                requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
-                        progress.getReason().orElse("Document processing failed."));
+            if ( ! handleProgress(processing, progress, later)) {
                 return progress;
             }
         }
+        return complete(later);
+    }
+
+    /**
+     * Processes the processings of the given tasks together, and replies to, or resubmits, each task
+     * as if it were processed alone. An exception from a document processor fails only the tasks of the
+     * processings it was thrown for. The processings of the first task must already be added.
+     */
+    private static void process(List<DocumentProcessingTask> tasks, DocprocExecutor executor) {
+        List<DocumentProcessingTask> processable = new ArrayList<>(tasks.size());
+        List<Processing> batch = new ArrayList<>();
+        for (DocumentProcessingTask task : tasks) {
+            if (task != tasks.get(0) && ! task.addProcessings()) continue;
+            if (task.failIfAnyExpired()) continue;
+
+            processable.add(task);
+            batch.addAll(task.processings);
+        }
+
+        Map<Processing, RuntimeException> failures = new IdentityHashMap<>();
+        List<DocumentProcessor.Progress> progresses;
+        try {
+            progresses = executor.process(batch, failures::put);
+        } catch (Exception e) {
+            for (DocumentProcessingTask task : processable) {
+                for (Processing processing : task.processings) {
+                    logProcessingFailure(processing, e);
+                }
+                task.requestContext.processingFailed(e);
+            }
+            return;
+        }
 
+        int start = 0;
+        for (DocumentProcessingTask task : processable) {
+            int end = start + task.processings.size();
+            task.submitIfLater(task.handleProgresses(progresses.subList(start, end), failures));
+            start = end;
+        }
+    }
+
+    /** Fails the message if it has expired, and returns whether it did */
+    private boolean failIfAnyExpired() {
+        for (Processing processing : processings) {
+            if (failIfExpired(processing)) {
+                processings.clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Fails the message if it has expired, and returns whether it did */
+    private boolean failIfExpired(Processing processing) {
+        if ( ! requestContext.hasExpired()) return false;
+
+        final String location;
+        if (processing != null) {
+            final CallStack callStack = processing.callStack();
+            if (callStack != null) {
+                final Call lastPopped = callStack.getLastPopped();
+                if (lastPopped != null) {
+                    location = lastPopped.toString();
+                } else {
+                    location = "empty call stack or no processors popped";
+                }
+            } else {
+                location = "no call stack";
+            }
+        } else {
+            location = "no processing instance";
+        }
+        String errorMsg = processing + " failed, " + location;
+        log.log(Level.FINE, "Time is up for '" + errorMsg + "'.");
+        requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE, "Time is up.");
+        return true;
+    }
+
+    /**
+     * Handles the outcome of processing the processings of this, in order, and fails the message
+     * if one of them failed.
+     *
+     * @param progresses the progress of each processing of this
+     * @param failures the exceptions thrown for processings which failed by an exception
+     */
+    private DocumentProcessor.Progress handleProgresses(List<DocumentProcessor.Progress> progresses,
+                                                        Map<Processing, RuntimeException> failures) {
+        List<Processing> processed = new ArrayList<>(processings);
+        processings.clear();
+        List<Tuple2<DocumentProcessor.Progress, Processing>> later = new ArrayList<>();
+        for (int i = 0; i < processed.size(); i++) {
+            RuntimeException failure = failures.get(processed.get(i));
+            if (failure != null) {
+                logProcessingFailure(processed.get(i), failure);
+                requestContext.processingFailed(failure);
+                return progresses.get(i);
+            }
+            if ( ! handleProgress(processed.get(i), progresses.get(i), later)) {
+                return progresses.get(i);
+            }
+        }
+        return complete(later);
+    }
+
+    /** Records the outcome of a processing, and returns false if it failed, in which case the message is failed */
+    private boolean handleProgress(Processing processing, DocumentProcessor.Progress progress,
+                                   List<Tuple2<DocumentProcessor.Progress, Processing>> later) {
+        if (DocumentProcessor.Progress.LATER.equals(progress)) {
+            later.add(new Tuple2<>(progress, processing));
+        } else if (DocumentProcessor.Progress.DONE.equals(progress)) {
+            processingsDone.add(processing);
+        } else if (DocumentProcessor.Progress.FAILED.equals(progress)) {
+            logProcessingFailure(processing, null);
+            requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
+                    progress.getReason().orElse("Document processing failed."));
+            return false;
+        } else if (DocumentProcessor.Progress.PERMANENT_FAILURE.equals(progress)) {
+            logProcessingFailure(processing, null);
+            requestContext.processingFailed(RequestContext.ErrorCode.ERROR_PROCESSING_FAILURE,
+                    progress.getReason().orElse("Document processing failed."));
+            return false;
+        }
+        return true;
+    }
+
+    private DocumentProcessor.Progress complete(List<Tuple2<DocumentProcessor.Progress, Processing>> later) {
         // Processings that have FAILED will have made this method terminate by now.
         // We now have successful Processings in 'processingsDone' and
         // the ones that have returned LATER in 'later'.
@@ -177,7 +292,6 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         }
     }
 
-
     void queueFull() {
         requestContext.processingFailed(RequestContext.ErrorCode.ERROR_BUSY,
                                         "Queue temporarily full. Returning message " + requestContext +
@@ -208,6 +322,13 @@ public class DocumentProcessingTask implements Comparable<DocumentProcessingTask
         return requestContext.getApproxSize();
     }
 
+    /** Sets the System.nanoTime() at which this was admitted for execution */
+    void setAdmittedAt(long nanos) { this.admittedAtNanos = nanos; }
+
+    long getAdmittedAt() { return admittedAtNanos; }
+
+    DocprocService getService() { return service; }
+
     final long getSeqNum() {
         return seqNum;
     }
@@ -0,0 +1,162 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc;
+
+import com.yahoo.docproc.DocumentProcessor.Progress;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class BatchDocumentProcessorTestCase {
+
+    private final DocumentType type = new DocumentType("test");
+
+    @Test
+    public void processingsArePassedTogetherToBatchProcessors() {
+        CountingDocumentProcessor first = new CountingDocumentProcessor();
+        TestBatchDocumentProcessor batchProcessor = new TestBatchDocumentProcessor(32);
+        CountingDocumentProcessor last = new CountingDocumentProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(first)
+                                                                               .addLast(batchProcessor)
+                                                                               .addLast(last));
+
+        List<Progress> progresses = executor.process(processings("a", "b", "c"));
+        assertEquals(List.of(Progress.DONE, Progress.DONE, Progress.DONE), progresses);
+        assertEquals(3, first.calls);
+        assertEquals(List.of(3), batchProcessor.batchSizes);
+        assertEquals(3, last.calls);
+    }
+
+    @Test
+    public void batchesAreLimitedByTheMaxBatchSize() {
+        TestBatchDocumentProcessor batchProcessor = new TestBatchDocumentProcessor(2);
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(batchProcessor)
+                                                                               .addLast(new TestBatchDocumentProcessor(3)));
+        assertEquals(2, executor.getMaxBatchSize());
+        assertEquals(1, new DocprocExecutor("single", new CallStack().addLast(new CountingDocumentProcessor())).getMaxBatchSize());
+
+        executor.process(processings("a", "b", "c", "d", "e"));
+        assertEquals(List.of(2, 2, 1), batchProcessor.batchSizes);
+    }
+
+    @Test
+    public void eachProcessingHasItsOwnProgress() {
+        TestBatchDocumentProcessor batchProcessor = new TestBatchDocumentProcessor(32);
+        CountingDocumentProcessor last = new CountingDocumentProcessor();
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(batchProcessor).addLast(last));
+
+        List<Processing> processings = processings("a", "later", "failed");
+        List<Progress> progresses = executor.process(processings);
+        assertEquals(List.of(Progress.DONE, Progress.LATER, Progress.FAILED), progresses);
+        assertEquals(1, last.calls);
+        assertSame(batchProcessor, processings.get(1).callStack().peek().getDocumentProcessor());
+
+        batchProcessor.later = false;
+        assertEquals(Progress.DONE, executor.process(processings.get(1)));
+        assertEquals(List.of(3, 1), batchProcessor.batchSizes);
+        assertEquals(2, last.calls);
+    }
+
+    @Test
+    public void exceptionsFailOnlyTheProcessingsTheyAreThrownFor() {
+        CountingDocumentProcessor last = new CountingDocumentProcessor();
+        TestBatchDocumentProcessor batchProcessor = new TestBatchDocumentProcessor(2);
+        DocprocExecutor executor = new DocprocExecutor("batch", new CallStack().addLast(new ThrowingDocumentProcessor())
+                                                                               .addLast(batchProcessor)
+                                                                               .addLast(last));
+
+        List<Processing> processings = processings("a", "throw", "batchthrow", "b", "c");
+        Map<Processing, RuntimeException> failures = new IdentityHashMap<>();
+        List<Progress> progresses = executor.process(processings, failures::put);
+        assertEquals(List.of(Progress.FAILED, Progress.FAILED, Progress.FAILED, Progress.DONE, Progress.DONE), progresses);
+        assertEquals("The batch of a and batchthrow fails", 3, failures.size());
+        assertTrue(failures.get(processings.get(0)) instanceof IllegalStateException);
+        assertTrue(failures.get(processings.get(1)) instanceof IllegalArgumentException);
+        assertTrue(failures.get(processings.get(2)) instanceof IllegalStateException);
+        assertEquals(List.of(2, 2), batchProcessor.batchSizes);
+        assertEquals(2, last.calls);
+
+        try {
+            executor.process(processings("throw"));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) { }
+    }
+
+    private List<Processing> processings(String ... ids) {
+        List<Processing> processings = new ArrayList<>();
+        for (String id : ids)
+            processings.add(Processing.of(new DocumentPut(type, new DocumentId("id:ns:test::" + id))));
+        return processings;
+    }
+
+    private static class CountingDocumentProcessor extends DocumentProcessor {
+
+        int calls = 0;
+
+        @Override
+        public Progress process(Processing processing) {
+            calls++;
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class ThrowingDocumentProcessor extends DocumentProcessor {
+
+        @Override
+        public Progress process(Processing processing) {
+            if (processing.getDocumentOperations().get(0).getId().toString().endsWith(":throw"))
+                throw new IllegalArgumentException("Thrown for " + processing);
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class TestBatchDocumentProcessor extends BatchDocumentProcessor {
+
+        final List<Integer> batchSizes = new ArrayList<>();
+        final int maxBatchSize;
+        boolean later = true;
+
+        TestBatchDocumentProcessor(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        @Override
+        public List<Progress> process(List<Processing> processings) {
+            batchSizes.add(processings.size());
+            List<Progress> progresses = new ArrayList<>();
+            for (Processing processing : processings) {
+                String id = processing.getDocumentOperations().get(0).getId().toString();
+                if (id.endsWith("batchthrow"))
+                    throw new IllegalStateException("Thrown for the batch of " + processing);
+                if (id.endsWith("later") && later)
+                    progresses.add(Progress.LATER);
+                else if (id.endsWith("failed"))
+                    progresses.add(Progress.FAILED);
+                else
+                    progresses.add(Progress.DONE);
+            }
+            return progresses;
+        }
+
+        @Override
+        public int getMaxBatchSize() { return maxBatchSize; }
+
+    }
+
+}
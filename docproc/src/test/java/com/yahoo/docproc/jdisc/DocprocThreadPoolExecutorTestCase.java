@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.docproc.jdisc;
 
+import com.yahoo.docproc.DocprocService;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -8,11 +9,14 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:einarmr@yahoo-inc.com">Einar M R Rosenvinge</a>
@@ -48,6 +52,100 @@ public class DocprocThreadPoolExecutorTestCase {
         assertEquals(numThreads, threadIds.size());
     }
 
+    @Test
+    public void tasksAreRejectedWhenPendingBytesAreAboveTheLimit() throws InterruptedException {
+        int megabyte = 1024 * 1024;
+        DocprocThreadManager manager = new DocprocThreadManager(256 * megabyte);
+        DocprocThreadPoolExecutor pool = new DocprocThreadPoolExecutor(1, new LinkedBlockingQueue<>(), manager);
+        CountDownLatch done = new CountDownLatch(1);
+
+        pool.execute(new SizedDocumentProcessingTask(200 * megabyte, done));
+        pool.execute(new SizedDocumentProcessingTask(50 * megabyte, done));
+        assertEquals(250 * megabyte, manager.pendingBytes());
+        try {
+            pool.execute(new SizedDocumentProcessingTask(10 * megabyte, done));
+            fail("Expected the task to be rejected");
+        }
+        catch (RejectedExecutionException expected) { }
+        assertEquals(250 * megabyte, manager.pendingBytes());
+
+        done.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(120L, TimeUnit.SECONDS));
+        assertEquals(0, manager.pendingBytes());
+
+        assertTrue("A task above the limit is admitted when nothing is pending",
+                   manager.admit(new SizedDocumentProcessingTask(300 * megabyte, done)));
+    }
+
+    @Test
+    public void batchesAreTakenFromTheHeadOfTheQueue() throws InterruptedException {
+        DocprocService a = new DocprocService("a");
+        DocprocService b = new DocprocService("b");
+        DocprocThreadManager manager = new DocprocThreadManager(1000L);
+        DocprocThreadPoolExecutor pool = new DocprocThreadPoolExecutor(1, new LinkedBlockingQueue<>(), manager);
+        CountDownLatch done = new CountDownLatch(1);
+        pool.execute(new SizedDocumentProcessingTask(1, done, a)); // Occupies the only thread
+
+        DocumentProcessingTask a1 = new SizedDocumentProcessingTask(1, done, a);
+        DocumentProcessingTask a2 = new SizedDocumentProcessingTask(1, done, a);
+        DocumentProcessingTask b1 = new SizedDocumentProcessingTask(1, done, b);
+        DocumentProcessingTask a3 = new SizedDocumentProcessingTask(1, done, a);
+        for (DocumentProcessingTask task : List.of(a1, a2, b1, a3))
+            pool.execute(task);
+        assertEquals(5, manager.pendingBytes());
+
+        DocumentProcessingTask first = new SizedDocumentProcessingTask(1, done, a);
+        List<DocumentProcessingTask> batch = pool.takeBatch(first, 10);
+        assertEquals(List.of(first, a1, a2), batch);
+        assertEquals(List.of(b1, a3), new ArrayList<>(pool.getQueue()));
+        pool.batchDone(batch);
+        assertEquals("Taken tasks are released, except the first", 3, manager.pendingBytes());
+
+        assertEquals("Tasks of other services are not taken", List.of(first), pool.takeBatch(first, 10));
+        assertEquals(List.of(b1, a3), new ArrayList<>(pool.getQueue()));
+
+        DocumentProcessingTask firstB = new SizedDocumentProcessingTask(1, done, b);
+        assertEquals("Batches are limited to max size", List.of(firstB), pool.takeBatch(firstB, 1));
+        assertEquals(List.of(firstB, b1), pool.takeBatch(firstB, 2));
+        assertEquals(List.of(a3), new ArrayList<>(pool.getQueue()));
+
+        done.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(120L, TimeUnit.SECONDS));
+    }
+
+    private static class SizedDocumentProcessingTask extends DocumentProcessingTask {
+
+        private final int size;
+        private final CountDownLatch done;
+
+        SizedDocumentProcessingTask(int size, CountDownLatch done) {
+            this(size, done, null);
+        }
+
+        SizedDocumentProcessingTask(int size, CountDownLatch done, DocprocService service) {
+            super(null, null, service);
+            this.size = size;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public int getApproxSize() {
+            return size;
+        }
+
+    }
+
     private class MockedDocumentProcessingTask extends DocumentProcessingTask {
         private boolean hasBeenRun = false;
 
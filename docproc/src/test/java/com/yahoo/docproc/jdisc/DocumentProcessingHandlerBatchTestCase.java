@@ -0,0 +1,114 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.docproc.jdisc;
+
+import com.yahoo.collections.Pair;
+import com.yahoo.docproc.BatchDocumentProcessor;
+import com.yahoo.docproc.CallStack;
+import com.yahoo.docproc.DocumentProcessor;
+import com.yahoo.docproc.Processing;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests processing messages through a chain containing a batch document processor
+ *
+ * @author agent
+ */
+public class DocumentProcessingHandlerBatchTestCase extends DocumentProcessingHandlerTestBase {
+
+    private final DocumentType type;
+
+    public DocumentProcessingHandlerBatchTestCase() {
+        type = new DocumentType("batched");
+        type.addField(new Field("title", DataType.STRING));
+    }
+
+    @Test
+    public void failuresOnlyFailTheMessagesTheyOccurFor() throws InterruptedException {
+        for (String id : List.of("a", "throw", "failed", "b"))
+            assertTrue(sendMessage("batch", new PutDocumentMessage(new DocumentPut(new Document(type, "id:ns:batched::" + id)))));
+
+        List<String> forwarded = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Message message = remoteServer.awaitMessage(60, TimeUnit.SECONDS);
+            assertNotNull(message);
+            forwarded.add(((PutDocumentMessage) message).getDocumentPut().getId().toString());
+            remoteServer.ackMessage(message);
+        }
+        Collections.sort(forwarded);
+        assertEquals(List.of("id:ns:batched::a", "id:ns:batched::b"), forwarded);
+
+        List<String> errors = new ArrayList<>();
+        int successes = 0;
+        for (int i = 0; i < 4; i++) {
+            Reply reply = driver.client().awaitReply(60, TimeUnit.SECONDS);
+            assertNotNull(reply);
+            if (reply.hasErrors())
+                errors.add(reply.getError(0).getMessage());
+            else
+                successes++;
+        }
+        assertEquals(2, successes);
+        assertEquals(2, errors.size());
+        assertTrue(errors.toString(), errors.stream().anyMatch(error -> error.contains("Thrown by processor")));
+        assertTrue(errors.toString(), errors.stream().anyMatch(error -> error.contains("Failed by batch processor")));
+    }
+
+    @Override
+    protected List<Pair<String, CallStack>> getCallStacks() {
+        CallStack stack = new CallStack();
+        stack.addLast(new ThrowingDocumentProcessor());
+        stack.addLast(new FailingBatchDocumentProcessor());
+        return List.of(new Pair<>("batch", stack));
+    }
+
+    @Override
+    protected DocumentType getType() {
+        return type;
+    }
+
+    private static String idOf(Processing processing) {
+        return processing.getDocumentOperations().get(0).getId().toString();
+    }
+
+    private static class ThrowingDocumentProcessor extends DocumentProcessor {
+
+        @Override
+        public Progress process(Processing processing) {
+            if (idOf(processing).endsWith("::throw"))
+                throw new IllegalArgumentException("Thrown by processor");
+            return Progress.DONE;
+        }
+
+    }
+
+    private static class FailingBatchDocumentProcessor extends BatchDocumentProcessor {
+
+        @Override
+        public List<Progress> process(List<Processing> processings) {
+            List<Progress> progresses = new ArrayList<>();
+            for (Processing processing : processings)
+                progresses.add(idOf(processing).endsWith("::failed") ? Progress.FAILED.withReason("Failed by batch processor")
+                                                                     : Progress.DONE);
+            return progresses;
+        }
+
+    }
+
+}
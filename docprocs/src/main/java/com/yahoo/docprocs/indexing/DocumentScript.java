@@ -33,11 +33,22 @@ public class DocumentScript {
     private final String documentType;
     private final Set<String> inputFields;
     private final Expression expression;
+    private final Expression documentExpression;
 
     public DocumentScript(String documentType, Collection<String> inputFields, Expression expression) {
+        this(documentType, inputFields, expression, expression);
+    }
+
+    /**
+     * Creates a document script which executes documents using the given document expression,
+     * typically the expression compiled for the document type, and updates using the expression itself.
+     */
+    public DocumentScript(String documentType, Collection<String> inputFields, Expression expression,
+                          Expression documentExpression) {
         this.documentType = documentType;
         this.inputFields = new HashSet<>(inputFields);
         this.expression = expression;
+        this.documentExpression = documentExpression;
     }
 
     public Expression getExpression() { return expression; }
@@ -47,7 +58,7 @@ public class DocumentScript {
             requireThatFieldIsDeclaredInDocument(entry.getKey());
             removeAnyLinguisticsSpanTree(entry.getValue());
         }
-        return expression.execute(adapterFactory, document);
+        return documentExpression.execute(adapterFactory, document);
     }
 
     public DocumentUpdate execute(AdapterFactory adapterFactory, DocumentUpdate update) {
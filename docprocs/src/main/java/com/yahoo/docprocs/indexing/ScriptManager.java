@@ -7,6 +7,8 @@ import com.yahoo.language.Linguistics;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.configdefinition.IlscriptsConfig;
 import com.yahoo.vespa.indexinglanguage.ScriptParserContext;
+import com.yahoo.vespa.indexinglanguage.expressions.CompiledExpression;
+import com.yahoo.vespa.indexinglanguage.expressions.Expression;
 import com.yahoo.vespa.indexinglanguage.expressions.InputExpression;
 import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
 import com.yahoo.vespa.indexinglanguage.expressions.StatementExpression;
@@ -111,12 +113,24 @@ public class ScriptManager {
 
             ScriptExpression script = new ScriptExpression(expressions);
             script.select(fieldPathOptimizer, fieldPathOptimizer);
-            fieldScripts.put(FULL, new DocumentScript(ilscript.doctype(), ilscript.docfield(),script));
+            fieldScripts.put(FULL, new DocumentScript(ilscript.doctype(), ilscript.docfield(), script,
+                                                      compile(ilscript.doctype(), script)));
             documentFieldScripts.put(ilscript.doctype(), Collections.unmodifiableMap(fieldScripts));
         }
         return Collections.unmodifiableMap(documentFieldScripts);
     }
 
+    /** Returns the given script compiled for documents, or the script itself if it can not be compiled */
+    private static Expression compile(String docType, ScriptExpression script) {
+        try {
+            return CompiledExpression.compile(script);
+        } catch (RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not compile indexing script for document type '%s', interpreting it: %s",
+                    docType, e.getMessage());
+            return script;
+        }
+    }
+
     private static StatementExpression parse(String docType, ScriptParserContext parserConfig, String content) {
         parserConfig.setInputStream(new IndexingInput(content));
         try {
@@ -0,0 +1,183 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.datatypes.StringFieldValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A span tree held in arrays rather than as an object graph, for trees where all spans are directly below
+ * the root, and all annotations have no value or a string value, as those produced by linguistics processing.
+ * This is much cheaper to create and serialize than a {@link SpanTree}.
+ * <p>
+ * A compact span tree set on a {@link StringFieldValue} is converted to a span tree when the span trees
+ * of the string are accessed, and is written directly when the string is serialized.
+ * It must not be modified after it is set on a string.
+ *
+ * @author agent
+ */
+public final class CompactSpanTree {
+
+    private final String name;
+
+    private int spanCount = 0;
+    private int[] spanFrom = new int[16];
+    private int[] spanLength = new int[16];
+
+    private int annotationCount = 0;
+    private int[] annotationSpan = new int[16];
+    private int[] annotationType = new int[16];
+    /** The index of the value of each annotation in strings, or -1 if it has no value */
+    private int[] annotationValue = new int[16];
+
+    private final List<AnnotationType> types = new ArrayList<>(1);
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    public CompactSpanTree(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * Adds a span below the root of this.
+     *
+     * @return the index of the span, used to annotate it
+     * @throws IllegalArgumentException if from or length is negative
+     */
+    public int span(int from, int length) {
+        if (from < 0) throw new IllegalArgumentException("From cannot be < 0. (Was " + from + ").");
+        if (length < 0) throw new IllegalArgumentException("Length cannot be < 0. (Was " + length + ").");
+        if (spanCount == spanFrom.length) {
+            spanFrom = Arrays.copyOf(spanFrom, spanCount * 2);
+            spanLength = Arrays.copyOf(spanLength, spanCount * 2);
+        }
+        spanFrom[spanCount] = from;
+        spanLength[spanCount] = length;
+        return spanCount++;
+    }
+
+    /** Adds an annotation without a value to the span with the given index */
+    public CompactSpanTree annotate(int span, AnnotationType type) {
+        return add(span, type, -1);
+    }
+
+    /**
+     * Adds an annotation with a string value to the span with the given index
+     *
+     * @throws IllegalArgumentException if the given annotation type does not have string values
+     */
+    public CompactSpanTree annotate(int span, AnnotationType type, String value) {
+        if ( ! DataType.STRING.equals(type.getDataType()))
+            throw new IllegalArgumentException("Annotation type " + type + " can not have a string value");
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+        }
+        return add(span, type, index);
+    }
+
+    private CompactSpanTree add(int span, AnnotationType type, int value) {
+        if (span < 0 || span >= spanCount)
+            throw new IndexOutOfBoundsException("No span with index " + span + " in " + this);
+        int typeIndex = types.indexOf(type);
+        if (typeIndex < 0) {
+            typeIndex = types.size();
+            types.add(type);
+        }
+        if (annotationCount == annotationSpan.length) {
+            annotationSpan = Arrays.copyOf(annotationSpan, annotationCount * 2);
+            annotationType = Arrays.copyOf(annotationType, annotationCount * 2);
+            annotationValue = Arrays.copyOf(annotationValue, annotationCount * 2);
+        }
+        annotationSpan[annotationCount] = span;
+        annotationType[annotationCount] = typeIndex;
+        annotationValue[annotationCount] = value;
+        annotationCount++;
+        return this;
+    }
+
+    public int numSpans() { return spanCount; }
+
+    public int getFrom(int span) { return spanFrom[span]; }
+
+    public int getLength(int span) { return spanLength[span]; }
+
+    public int numAnnotations() { return annotationCount; }
+
+    /** Returns the index of the span of the given annotation */
+    public int getSpan(int annotation) { return annotationSpan[annotation]; }
+
+    public AnnotationType getType(int annotation) { return types.get(annotationType[annotation]); }
+
+    /** Returns the index of the value of the given annotation in the strings of this, or -1 if it has no value */
+    public int getValueIndex(int annotation) { return annotationValue[annotation]; }
+
+    /** Returns the value of the given annotation, or null if it has no value */
+    public String getValue(int annotation) {
+        int value = annotationValue[annotation];
+        return value < 0 ? null : strings.get(value);
+    }
+
+    /** Returns the number of distinct annotation values in this */
+    public int numStrings() { return strings.size(); }
+
+    public String getString(int index) { return strings.get(index); }
+
+    /**
+     * Returns the indexes of the annotations of this in the order of {@link Annotation#compareTo},
+     * which is the order annotations are serialized in.
+     */
+    public int[] sortedAnnotations() {
+        Integer[] sorted = new Integer[annotationCount];
+        for (int i = 0; i < annotationCount; i++)
+            sorted[i] = i;
+        Arrays.sort(sorted, this::compareAnnotations);
+        int[] annotations = new int[annotationCount];
+        for (int i = 0; i < annotationCount; i++)
+            annotations[i] = sorted[i];
+        return annotations;
+    }
+
+    private int compareAnnotations(int a, int b) {
+        int spanA = annotationSpan[a], spanB = annotationSpan[b];
+        int comp = Integer.compare(spanFrom[spanA], spanFrom[spanB]);
+        if (comp != 0) return comp;
+        comp = Integer.compare(spanFrom[spanA] + spanLength[spanA], spanFrom[spanB] + spanLength[spanB]);
+        if (comp != 0) return comp;
+        comp = getType(a).compareTo(getType(b));
+        if (comp != 0) return comp;
+        if (annotationValue[a] < 0 || annotationValue[b] < 0)
+            return Integer.compare(annotationValue[a] < 0 ? 0 : 1, annotationValue[b] < 0 ? 0 : 1);
+        return getValue(a).compareTo(getValue(b));
+    }
+
+    /** Returns this as a new span tree */
+    public SpanTree toSpanTree() {
+        SpanTree tree = new SpanTree(name);
+        SpanList root = tree.spanList();
+        Span[] spans = new Span[spanCount];
+        for (int i = 0; i < spanCount; i++)
+            spans[i] = root.span(spanFrom[i], spanLength[i]);
+        for (int i = 0; i < annotationCount; i++) {
+            String value = getValue(i);
+            tree.annotate(spans[annotationSpan[i]], value == null ? new Annotation(getType(i))
+                                                                  : new Annotation(getType(i), new StringFieldValue(value)));
+        }
+        return tree;
+    }
+
+    @Override
+    public String toString() {
+        return "compact span tree '" + name + "' of " + spanCount + " spans and " + annotationCount + " annotations";
+    }
+
+}
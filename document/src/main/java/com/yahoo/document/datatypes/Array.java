@@ -29,6 +29,12 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     private List<T> values;
 
+    /**
+     * The elements of this held as primitives, or null if they are held as field values in values.
+     * Volatile as reading elements may set values, to make this safe for concurrent readers.
+     */
+    private volatile PackedNumbers packed = null;
+
     public Array(DataType type) {
         this(type, 1);
     }
@@ -56,12 +62,17 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     @Override
     public Iterator<T> fieldValueIterator() {
-        return values.iterator();
+        return values().iterator();
     }
 
     @Override
     public Array<T> clone() {
+        PackedNumbers packed = this.packed;
         Array<T> array = (Array<T>) super.clone();
+        if (packed != null) { // Immutable, so it can be shared
+            array.setPacked(packed);
+            return array;
+        }
         array.values = new ArrayList<>(values.size());
         for (T fval : values) {
             array.values.add((T) fval.clone());
@@ -71,6 +82,10 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     @Override
     public void clear() {
+        if (packed != null) {
+            values = new ArrayList<>();
+            packed = null;
+        }
         values.clear();
     }
 
@@ -83,10 +98,16 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         if (o instanceof Array) {
             if (o == this) return;
             Array a = (Array) o;
-            values.clear();
-            addAll(a.values);
+            PackedNumbers packed = a.packed;
+            if (packed != null && a.getDataType().getNestedType().equals(getDataType().getNestedType())) { // Immutable, so it can be shared
+                setPacked(packed);
+                return;
+            }
+            values().clear();
+            addAll(a.values());
         } else if (o instanceof List) {
             values = new ListWrapper<T>((List) o);
+            packed = null;
         } else {
             throw new IllegalArgumentException("Class " + o.getClass() + " not applicable to an " + this.getClass() + " instance.");
         }
@@ -98,18 +119,115 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
             return ((ListWrapper) values).myvalues;
         }
         List tmpWrappedList = new ArrayList();
-        for (T value : values) {
+        for (T value : values()) {
             tmpWrappedList.add(value.getWrappedValue());
         }
         return tmpWrappedList;
     }
 
-    public List<T> getValues() {
+    /** Returns the elements of this as field values, creating them if they are held as primitives */
+    @SuppressWarnings("unchecked")
+    private List<T> values() {
+        PackedNumbers packed = this.packed;
+        if (packed != null) {
+            List<T> values = (List<T>) packed.toFieldValues();
+            this.values = values;
+            this.packed = null;
+            return values;
+        }
         return values;
     }
 
+    /**
+     * Sets the elements of this array of int, replacing any existing elements.
+     * The elements are held in the given array until they are accessed as field values,
+     * so it must not be modified afterwards. This avoids creating a field value per element
+     * when an array is just read and written, as when deserializing and serializing documents.
+     *
+     * @throws IllegalArgumentException if this is not an array of int
+     */
+    public void setValues(int[] values) {
+        verifyNestedType(DataType.INT);
+        setPacked(new PackedNumbers.Ints(values));
+    }
+
+    /**
+     * Sets the elements of this array of long, replacing any existing elements.
+     *
+     * @see #setValues(int[])
+     * @throws IllegalArgumentException if this is not an array of long
+     */
+    public void setValues(long[] values) {
+        verifyNestedType(DataType.LONG);
+        setPacked(new PackedNumbers.Longs(values));
+    }
+
+    /**
+     * Sets the elements of this array of float, replacing any existing elements.
+     *
+     * @see #setValues(int[])
+     * @throws IllegalArgumentException if this is not an array of float
+     */
+    public void setValues(float[] values) {
+        verifyNestedType(DataType.FLOAT);
+        setPacked(new PackedNumbers.Floats(values));
+    }
+
+    /**
+     * Sets the elements of this array of double, replacing any existing elements.
+     *
+     * @see #setValues(int[])
+     * @throws IllegalArgumentException if this is not an array of double
+     */
+    public void setValues(double[] values) {
+        verifyNestedType(DataType.DOUBLE);
+        setPacked(new PackedNumbers.Doubles(values));
+    }
+
+    private void verifyNestedType(DataType type) {
+        if ( ! getDataType().getNestedType().equals(type))
+            throw new IllegalArgumentException("Can not set " + type.getName() + " values in " + getDataType().getName());
+    }
+
+    private void setPacked(PackedNumbers packed) {
+        this.packed = packed;
+        this.values = null;
+    }
+
+    /** Returns the element at the given index of this array of int, without creating a field value for it */
+    public int getInt(int index) {
+        PackedNumbers packed = this.packed;
+        if (packed instanceof PackedNumbers.Ints) return ((PackedNumbers.Ints)packed).values[index];
+        return ((IntegerFieldValue)values().get(index)).getInteger();
+    }
+
+    /** Returns the element at the given index of this array of long, without creating a field value for it */
+    public long getLong(int index) {
+        PackedNumbers packed = this.packed;
+        if (packed instanceof PackedNumbers.Longs) return ((PackedNumbers.Longs)packed).values[index];
+        return ((LongFieldValue)values().get(index)).getLong();
+    }
+
+    /** Returns the element at the given index of this array of float, without creating a field value for it */
+    public float getFloat(int index) {
+        PackedNumbers packed = this.packed;
+        if (packed instanceof PackedNumbers.Floats) return ((PackedNumbers.Floats)packed).values[index];
+        return ((FloatFieldValue)values().get(index)).getFloat();
+    }
+
+    /** Returns the element at the given index of this array of double, without creating a field value for it */
+    public double getDouble(int index) {
+        PackedNumbers packed = this.packed;
+        if (packed instanceof PackedNumbers.Doubles) return ((PackedNumbers.Doubles)packed).values[index];
+        return ((DoubleFieldValue)values().get(index)).getDouble();
+    }
+
+    public List<T> getValues() {
+        return values();
+    }
+
     public FieldValue getFieldValue(int index) {
-        return values.get(index);
+        return values().get(index);
     }
 
     @Override
@@ -119,13 +237,13 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     @Override
     public String toString() {
-        return values.toString();
+        return values().toString();
     }
 
     @Override
     public int hashCode() {
         int hashCode = super.hashCode();
-        for (FieldValue val : values) {
+        for (FieldValue val : values()) {
             hashCode ^= val.hashCode();
         }
         return hashCode;
@@ -138,8 +256,8 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         if (!super.equals(o)) return false;
         Array a = (Array) o;
         // Compare independent of container used.
-        Iterator it1 = values.iterator();
-        Iterator it2 = a.values.iterator();
+        Iterator it1 = values().iterator();
+        Iterator it2 = a.values().iterator();
         while (it1.hasNext() && it2.hasNext()) {
             if (!it1.next().equals(it2.next())) return false;
         }
@@ -150,40 +268,44 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     public void add(int index, T o) {
         verifyElementCompatibility(o);
-        values.add(index, o);
+        values().add(index, o);
     }
 
     public boolean remove(Object o) {
-        return values.remove(o);
+        return values().remove(o);
     }
 
     public boolean add(T o) {
         verifyElementCompatibility(o);
-        return values.add(o);
+        return values().add(o);
     }
 
     @Override
     public boolean contains(Object o) {
-        return values.contains(o);
+        return values().contains(o);
     }
 
     @Override
     public boolean isEmpty() {
+        PackedNumbers packed = this.packed;
+        if (packed != null) return packed.size() == 0;
         return super.isEmpty(values);
     }
 
     @Override
     public Iterator<T> iterator() {
-        return values.iterator();
+        return values().iterator();
     }
 
     @Override
     public boolean removeValue(FieldValue o) {
-        return super.removeValue(o, values);
+        return super.removeValue(o, values());
     }
 
     @Override
     public int size() {
+        PackedNumbers packed = this.packed;
+        if (packed != null) return packed.size();
         return values.size();
     }
 
@@ -191,74 +313,74 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         for (T t : c) {
             verifyElementCompatibility(t);
         }
-        return values.addAll(c);
+        return values().addAll(c);
     }
 
     public boolean containsAll(Collection<?> c) {
-        return values.containsAll(c);
+        return values().containsAll(c);
     }
 
     public Object[] toArray() {
-        return values.toArray();
+        return values().toArray();
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T[] toArray(T[] a) {
-        return values.toArray(a);
+        return values().toArray(a);
     }
 
     public boolean addAll(int index, Collection<? extends T> c) {
         for (T t : c) {
             verifyElementCompatibility(t);
         }
-        return values.addAll(index, c);
+        return values().addAll(index, c);
     }
 
     @SuppressWarnings("deprecation")
     public boolean retainAll(Collection<?> c) {
-        return values.retainAll(c);
+        return values().retainAll(c);
     }
 
     @SuppressWarnings("deprecation")
     public boolean removeAll(Collection<?> c) {
-        return values.removeAll(c);
+        return values().removeAll(c);
     }
 
     public T get(int index) {
-        return values.get(index);
+        return values().get(index);
     }
 
     @SuppressWarnings("deprecation")
     public int indexOf(Object o) {
-        return values.indexOf(o);
+        return values().indexOf(o);
     }
 
     @SuppressWarnings("deprecation")
     public int lastIndexOf(Object o) {
-        return values.lastIndexOf(o);
+        return values().lastIndexOf(o);
     }
 
     public ListIterator<T> listIterator() {
-        return values.listIterator();
+        return values().listIterator();
     }
 
     public ListIterator<T> listIterator(final int index) {
-        return values.listIterator(index);
+        return values().listIterator(index);
     }
 
     public T remove(int index) {
-        return values.remove(index);
+        return values().remove(index);
     }
 
     @SuppressWarnings("deprecation")
     public T set(int index, T o) {
         verifyElementCompatibility(o);
-        T fval = values.set(index, o);
+        T fval = values().set(index, o);
         return fval;
     }
 
     public List<T> subList(int fromIndex, int toIndex) {
-        return values.subList(fromIndex, toIndex);
+        return values().subList(fromIndex, toIndex);
     }
 
     FieldPathIteratorHandler.ModificationStatus iterateSubset(int startPos, int endPos, FieldPath fieldPath, String variable, int nextPos, FieldPathIteratorHandler handler) {
@@ -266,12 +388,12 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
         LinkedList<Integer> indicesToRemove = new LinkedList<Integer>();
 
-        for (int i = startPos; i <= endPos && i < values.size(); i++) {
+        for (int i = startPos; i <= endPos && i < values().size(); i++) {
             if (variable != null) {
                 handler.getVariables().put(variable, new FieldPathIteratorHandler.IndexValue(i));
             }
 
-            FieldValue fv = values.get(i);
+            FieldValue fv = values().get(i);
             FieldPathIteratorHandler.ModificationStatus status = fv.iterateNested(fieldPath, nextPos, handler);
 
             if (status == FieldPathIteratorHandler.ModificationStatus.REMOVED) {
@@ -287,7 +409,7 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         }
 
         for (Integer idx : indicesToRemove) {
-            values.remove(idx.intValue());
+            values().remove(idx.intValue());
         }
         return retVal;
     }
@@ -308,18 +430,18 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
                             throw new IllegalArgumentException("Mismatch between variables - trying to iterate through map and array with the same variable.");
                         }
 
-                        if (idx < values.size()) {
+                        if (idx < values().size()) {
                             return iterateSubset(idx, idx, fieldPath, null, pos + 1, handler);
                         } else {
                             return FieldPathIteratorHandler.ModificationStatus.NOT_MODIFIED;
                         }
                     } else {
-                        return iterateSubset(0, values.size() - 1, fieldPath, fieldPath.get(pos).getVariableName(), pos + 1, handler);
+                        return iterateSubset(0, values().size() - 1, fieldPath, fieldPath.get(pos).getVariableName(), pos + 1, handler);
                     }
                 }
                 default:
             }
-            return iterateSubset(0, values.size() - 1, fieldPath, null, pos, handler);
+            return iterateSubset(0, values().size() - 1, fieldPath, null, pos, handler);
         } else {
             FieldPathIteratorHandler.ModificationStatus status = handler.modify(this);
 
@@ -328,7 +450,7 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
             }
 
             if (handler.onComplex(this)) {
-                if (iterateSubset(0, values.size() - 1, fieldPath, null, pos, handler) != FieldPathIteratorHandler.ModificationStatus.NOT_MODIFIED) {
+                if (iterateSubset(0, values().size() - 1, fieldPath, null, pos, handler) != FieldPathIteratorHandler.ModificationStatus.NOT_MODIFIED) {
                     status = FieldPathIteratorHandler.ModificationStatus.MODIFIED;
                 }
             }
@@ -547,6 +669,6 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
         //types are equal, this must be of this type
         Array otherValue = (Array) fieldValue;
-        return CollectionComparator.compare(values, otherValue.values);
+        return CollectionComparator.compare(values(), otherValue.values());
     }
 }
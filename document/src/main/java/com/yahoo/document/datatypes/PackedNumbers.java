@@ -0,0 +1,96 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.datatypes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The elements of a numeric {@link Array} held in a primitive array, to avoid creating
+ * a field value per element when an array is just read and written. Instances are immutable.
+ *
+ * @author agent
+ */
+abstract class PackedNumbers {
+
+    abstract int size();
+
+    /** Returns a new list containing a field value for each element */
+    abstract List<FieldValue> toFieldValues();
+
+    static final class Ints extends PackedNumbers {
+
+        final int[] values;
+
+        Ints(int[] values) { this.values = values; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        List<FieldValue> toFieldValues() {
+            List<FieldValue> list = new ArrayList<>(values.length);
+            for (int value : values)
+                list.add(new IntegerFieldValue(value));
+            return list;
+        }
+
+    }
+
+    static final class Longs extends PackedNumbers {
+
+        final long[] values;
+
+        Longs(long[] values) { this.values = values; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        List<FieldValue> toFieldValues() {
+            List<FieldValue> list = new ArrayList<>(values.length);
+            for (long value : values)
+                list.add(new LongFieldValue(value));
+            return list;
+        }
+
+    }
+
+    static final class Floats extends PackedNumbers {
+
+        final float[] values;
+
+        Floats(float[] values) { this.values = values; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        List<FieldValue> toFieldValues() {
+            List<FieldValue> list = new ArrayList<>(values.length);
+            for (float value : values)
+                list.add(new FloatFieldValue(value));
+            return list;
+        }
+
+    }
+
+    static final class Doubles extends PackedNumbers {
+
+        final double[] values;
+
+        Doubles(double[] values) { this.values = values; }
+
+        @Override
+        int size() { return values.length; }
+
+        @Override
+        List<FieldValue> toFieldValues() {
+            List<FieldValue> list = new ArrayList<>(values.length);
+            for (double value : values)
+                list.add(new DoubleFieldValue(value));
+            return list;
+        }
+
+    }
+
+}
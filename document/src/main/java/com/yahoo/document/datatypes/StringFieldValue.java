@@ -6,6 +6,7 @@ import com.yahoo.collections.CollectionComparator;
 import com.yahoo.document.DataType;
 import com.yahoo.document.Field;
 import com.yahoo.document.PrimitiveDataType;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.SpanTree;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
@@ -39,6 +40,12 @@ public class StringFieldValue extends FieldValue {
     public static final int classId = registerClass(Ids.document + 15, StringFieldValue.class);
     private String value;
     private Map<String, SpanTree> spanTrees = null;
+    /**
+     * Span trees which are held in compact form until the span trees of this are accessed, or null if none.
+     * As accessing span trees converts them, getting span trees from an instance is a modification of it,
+     * which must not happen concurrently with other access, like any other modification.
+     */
+    private Map<String, CompactSpanTree> compactSpanTrees = null;
 
     /** Creates a new StringFieldValue holding an empty String. */
     public StringFieldValue() {
@@ -89,6 +96,10 @@ public class StringFieldValue extends FieldValue {
     @Override
     public StringFieldValue clone() {
         StringFieldValue strfval = (StringFieldValue) super.clone();
+        if (compactSpanTrees != null) {
+            // Compact span trees are not modified after being set, so they can be shared
+            strfval.compactSpanTrees = new HashMap<>(compactSpanTrees);
+        }
         if (spanTrees != null) {
             strfval.spanTrees = new HashMap<String, SpanTree>(spanTrees.size());
             for (Map.Entry<String, SpanTree> entry : spanTrees.entrySet()) {
@@ -106,6 +117,7 @@ public class StringFieldValue extends FieldValue {
             spanTrees.clear();
             spanTrees = null;
         }
+        compactSpanTrees = null;
     }
 
     /**
@@ -122,12 +134,14 @@ public class StringFieldValue extends FieldValue {
             spanTrees.clear();
             spanTrees = null;
         }
+        compactSpanTrees = null;
 
         if (!checkAssign(o)) {
             return;
         }
         if (o instanceof StringFieldValue) {
             spanTrees=((StringFieldValue)o).spanTrees;
+            compactSpanTrees=((StringFieldValue)o).compactSpanTrees;
         }
         if (o instanceof String) {
             setValue((String) o);
@@ -140,28 +154,60 @@ public class StringFieldValue extends FieldValue {
 
     /**
      * Returns an unmodifiable Collection of the span trees with annotations over this String, if any.
+     * This converts any span trees held in compact form, so it must not be called concurrently with
+     * other access to this.
      *
      * @return an unmodifiable Collection of the span trees with annotations over this String, or an empty Collection
      */
     public Collection<SpanTree> getSpanTrees() {
+        expandSpanTrees();
         if (spanTrees == null) {
             return ImmutableList.of();
         }
         return ImmutableList.copyOf(spanTrees.values());
     }
 
-    /** Returns the map of spantrees. Might be null. */
+    /**
+     * Returns the map of spantrees. Might be null. This converts any span trees held in compact form,
+     * so it must not be called concurrently with other access to this.
+     */
     public final Map<String, SpanTree> getSpanTreeMap() {
+        expandSpanTrees();
+        return spanTrees;
+    }
+
+    /**
+     * Returns the map of the span trees of this which are not held in compact form, without converting those
+     * which are. Might be null. This is for serializers, which write compact span trees directly.
+     */
+    public final Map<String, SpanTree> getExpandedSpanTreeMap() {
         return spanTrees;
     }
 
+    /**
+     * Returns the map of the span trees of this which are held in compact form. Might be null.
+     * This is for serializers, which write compact span trees directly.
+     */
+    public final Map<String, CompactSpanTree> getCompactSpanTreeMap() {
+        return compactSpanTrees;
+    }
+
+    /** Returns whether this has a span tree with the given name, without converting compact span trees */
+    public boolean hasSpanTree(String name) {
+        return (spanTrees != null && spanTrees.containsKey(name)) ||
+               (compactSpanTrees != null && compactSpanTrees.containsKey(name));
+    }
+
     /**
      * Returns the span tree associated with the given name, or null if this does not exist.
+     * This converts any span trees held in compact form, so it must not be called concurrently with
+     * other access to this.
      *
      * @param name the name of the span tree to return
      * @return the span tree associated with the given name, or null if this does not exist.
      */
     public SpanTree getSpanTree(String name) {
+        expandSpanTrees();
         if (spanTrees == null) {
             return null;
         }
@@ -176,6 +222,7 @@ public class StringFieldValue extends FieldValue {
      * @throws IllegalArgumentException if a span tree with the given name already exists.
      */
     public SpanTree setSpanTree(SpanTree spanTree) {
+        expandSpanTrees();
         if (spanTrees == null) {
             spanTrees = new HashMap<>(1);
         }
@@ -187,6 +234,55 @@ public class StringFieldValue extends FieldValue {
         return spanTree;
     }
 
+    /**
+     * Sets a span tree with annotations over this String, held in compact form until the span trees of this are
+     * accessed. The given tree must not be modified after this is called.
+     *
+     * @param spanTree the span tree with annotations over this String
+     * @return the input spanTree for chaining
+     * @throws IllegalArgumentException if a span tree with the given name already exists.
+     */
+    public CompactSpanTree setSpanTree(CompactSpanTree spanTree) {
+        if (hasSpanTree(spanTree.getName())) {
+            throw new IllegalArgumentException("Span tree " + spanTree.getName() + " already exists.");
+        }
+        if (compactSpanTrees == null) {
+            compactSpanTrees = new HashMap<>(1);
+        }
+        compactSpanTrees.put(spanTree.getName(), spanTree);
+        return spanTree;
+    }
+
+    /** Converts the compact span trees of this, if any, to span trees */
+    private void expandSpanTrees() {
+        if (compactSpanTrees == null) return;
+
+        if (spanTrees == null) {
+            spanTrees = new HashMap<>(compactSpanTrees.size());
+        }
+        for (CompactSpanTree compactSpanTree : compactSpanTrees.values()) {
+            SpanTree spanTree = compactSpanTree.toSpanTree();
+            spanTrees.put(spanTree.getName(), spanTree);
+            spanTree.setStringFieldValue(this);
+        }
+        compactSpanTrees = null;
+    }
+
+    /**
+     * Returns all the span trees of this by name, converting those held in compact form to new instances
+     * without keeping them in this. Returns null if there are none. This does not modify this.
+     */
+    private Map<String, SpanTree> allSpanTrees() {
+        if (compactSpanTrees == null) return spanTrees;
+
+        Map<String, SpanTree> all = new HashMap<>(compactSpanTrees.size() + (spanTrees == null ? 0 : spanTrees.size()));
+        if (spanTrees != null)
+            all.putAll(spanTrees);
+        for (CompactSpanTree compactSpanTree : compactSpanTrees.values())
+            all.put(compactSpanTree.getName(), compactSpanTree.toSpanTree());
+        return all;
+    }
+
     /**
      * Removes the span tree associated with the given name.
      *
@@ -194,6 +290,13 @@ public class StringFieldValue extends FieldValue {
      * @return the span tree previously associated with the given name, or null if it did not exist
      */
     public SpanTree removeSpanTree(String name) {
+        if (compactSpanTrees != null) {
+            CompactSpanTree compactSpanTree = compactSpanTrees.remove(name);
+            if (compactSpanTrees.isEmpty())
+                compactSpanTrees = null;
+            if (compactSpanTree != null)
+                return compactSpanTree.toSpanTree(); // Not associated with this
+        }
         if (spanTrees == null) {
             return null;
         }
@@ -242,7 +345,9 @@ public class StringFieldValue extends FieldValue {
         if (!(o instanceof StringFieldValue)) return false;
         if (!super.equals(o)) return false;
         StringFieldValue that = (StringFieldValue) o;
-        if ((spanTrees != null) ? !spanTrees.equals(that.spanTrees) : that.spanTrees != null) return false;
+        Map<String, SpanTree> spanTrees = allSpanTrees();
+        Map<String, SpanTree> thatSpanTrees = that.allSpanTrees();
+        if ((spanTrees != null) ? !spanTrees.equals(thatSpanTrees) : thatSpanTrees != null) return false;
         if ((value != null) ? !value.equals(that.value) : that.value != null) return false;
         return true;
     }
@@ -278,17 +383,19 @@ public class StringFieldValue extends FieldValue {
             return comp;
         }
 
+        Map<String, SpanTree> spanTrees = allSpanTrees();
+        Map<String, SpanTree> otherSpanTrees = otherValue.allSpanTrees();
         if (spanTrees == null) {
-            comp = (otherValue.spanTrees == null) ? 0 : -1;
+            comp = (otherSpanTrees == null) ? 0 : -1;
         } else {
-            if (otherValue.spanTrees == null) {
+            if (otherSpanTrees == null) {
                 comp = 1;
             } else {
-                comp = CollectionComparator.compare(spanTrees.keySet(), otherValue.spanTrees.keySet());
+                comp = CollectionComparator.compare(spanTrees.keySet(), otherSpanTrees.keySet());
                 if (comp != 0) {
                     return comp;
                 }
-                comp = CollectionComparator.compare(spanTrees.values(), otherValue.spanTrees.values());
+                comp = CollectionComparator.compare(spanTrees.values(), otherSpanTrees.values());
             }
         }
         return comp;
@@ -2,10 +2,12 @@
 package com.yahoo.document.json.readers;
 
 import com.yahoo.document.DataType;
+import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.CollectionFieldValue;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.json.TokenBuffer;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static com.yahoo.document.json.readers.JsonParserHelpers.expectArrayStart;
@@ -24,9 +26,60 @@ public class ArrayReader {
         int initNesting = buffer.nesting();
         expectArrayStart(buffer.currentToken());
         buffer.next();
+        if (parent instanceof Array && parent.isEmpty() && fillNumbers(buffer, initNesting, (Array) parent, valueType))
+            return;
         while (buffer.nesting() >= initNesting) {
             parent.add(readSingleValue(buffer, valueType));
             buffer.next();
         }
     }
+
+    /**
+     * Reads the elements of an array of a numeric type directly into a primitive array,
+     * and returns whether the array was numeric, such that it was read here
+     */
+    private static boolean fillNumbers(TokenBuffer buffer, int initNesting, Array<?> array, DataType valueType) {
+        if (valueType.equals(DataType.INT)) {
+            int[] values = new int[8];
+            int size = 0;
+            for (; buffer.nesting() >= initNesting; buffer.next()) {
+                if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                values[size++] = Integer.parseInt(numberText(buffer, valueType));
+            }
+            array.setValues(Arrays.copyOf(values, size));
+        } else if (valueType.equals(DataType.LONG)) {
+            long[] values = new long[8];
+            int size = 0;
+            for (; buffer.nesting() >= initNesting; buffer.next()) {
+                if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                values[size++] = Long.parseLong(numberText(buffer, valueType));
+            }
+            array.setValues(Arrays.copyOf(values, size));
+        } else if (valueType.equals(DataType.FLOAT)) {
+            float[] values = new float[8];
+            int size = 0;
+            for (; buffer.nesting() >= initNesting; buffer.next()) {
+                if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                values[size++] = Float.parseFloat(numberText(buffer, valueType));
+            }
+            array.setValues(Arrays.copyOf(values, size));
+        } else if (valueType.equals(DataType.DOUBLE)) {
+            double[] values = new double[8];
+            int size = 0;
+            for (; buffer.nesting() >= initNesting; buffer.next()) {
+                if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                values[size++] = Double.parseDouble(numberText(buffer, valueType));
+            }
+            array.setValues(Arrays.copyOf(values, size));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static String numberText(TokenBuffer buffer, DataType valueType) {
+        if ( ! buffer.currentToken().isScalarValue())
+            throw new IllegalArgumentException("Expected " + valueType.getName() + " value, got " + buffer.currentToken());
+        return buffer.currentText();
+    }
 }
@@ -18,6 +18,9 @@ public class AttributeNode implements ExpressionNode {
     private ExpressionNode value;
     private final List<Item> items = new ArrayList<Item>();
 
+    // The last field path resolved by this, which is reused for documents of the same type
+    private volatile ResolvedFieldPath lastFieldPath = null;
+
     public AttributeNode(ExpressionNode value, List items) {
         this.value = value;
         for (Object obj : items) {
@@ -121,10 +124,10 @@ public class AttributeNode implements ExpressionNode {
         throw new IllegalStateException("Function '" + function + "' is not supported.");
     }
 
-    private static Object evaluateFieldPath(String fieldPth, Object value) {
+    private Object evaluateFieldPath(String fieldPth, Object value) {
         if (value instanceof DocumentPut) {
             final Document doc = ((DocumentPut) value).getDocument();
-            FieldPath fieldPath = doc.getDataType().buildFieldPath(fieldPth);
+            FieldPath fieldPath = resolveFieldPath(fieldPth, doc.getDataType());
             IteratorHandler handler = new IteratorHandler();
             doc.iterateNested(fieldPath, 0, handler);
             if (handler.values.isEmpty()) {
@@ -141,6 +144,16 @@ public class AttributeNode implements ExpressionNode {
         return Result.FALSE;
     }
 
+    /** Returns the given field path in the given document type, reusing the last one resolved if it is the same */
+    private FieldPath resolveFieldPath(String fieldPath, DocumentType documentType) {
+        ResolvedFieldPath resolved = lastFieldPath;
+        if (resolved == null || resolved.documentType != documentType || ! resolved.path.equals(fieldPath)) {
+            resolved = new ResolvedFieldPath(fieldPath, documentType, documentType.buildFieldPath(fieldPath));
+            lastFieldPath = resolved;
+        }
+        return resolved.fieldPath;
+    }
+
     private static Object evaluateFunction(String function, Object value) {
         if (value instanceof VariableValueList) {
             VariableValueList retVal = new VariableValueList();
@@ -175,6 +188,20 @@ public class AttributeNode implements ExpressionNode {
         return null;
     }
 
+    private static class ResolvedFieldPath {
+
+        final String path;
+        final DocumentType documentType;
+        final FieldPath fieldPath;
+
+        ResolvedFieldPath(String path, DocumentType documentType, FieldPath fieldPath) {
+            this.path = path;
+            this.documentType = documentType;
+            this.fieldPath = fieldPath;
+        }
+
+    }
+
     public static class Item {
         public static final int ATTRIBUTE = 0;
         public static final int FUNCTION = 1;
@@ -23,6 +23,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The last pattern compiled by this, which is reused as long as the right hand side is the same.
+    private volatile CompiledPattern lastPattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -386,11 +389,17 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(compile(right, ! operator.equals("=~")).matcher(left).find());
+    }
+
+    /** Returns the pattern of the given regex or glob, reusing the last one if it is the same */
+    private Pattern compile(String source, boolean glob) {
+        CompiledPattern pattern = lastPattern;
+        if (pattern == null || pattern.glob != glob || ! pattern.source.equals(source)) {
+            pattern = new CompiledPattern(source, glob, Pattern.compile(glob ? globToRegex(source) : source));
+            lastPattern = pattern;
         }
+        return pattern.pattern;
     }
 
     /**
@@ -444,6 +453,21 @@ public class ComparisonNode implements ExpressionNode {
         visitor.visit(this);
     }
 
+    /** A compiled regex or glob, which is immutable and therefore safe to share between threads */
+    private static class CompiledPattern {
+
+        final String source;
+        final boolean glob;
+        final Pattern pattern;
+
+        CompiledPattern(String source, boolean glob, Pattern pattern) {
+            this.source = source;
+            this.glob = glob;
+            this.pattern = pattern;
+        }
+
+    }
+
     // Inherit doc from Object.
     @Override
     public String toString() {
@@ -14,6 +14,9 @@ public class DocumentNode implements ExpressionNode {
 
     private String type;
 
+    // The document type of the last document put or update evaluated, and whether it is of this type
+    private volatile TypeMatch lastTypeMatch = null;
+
     public DocumentNode(String type) {
         this.type = type;
     }
@@ -24,6 +27,7 @@ public class DocumentNode implements ExpressionNode {
 
     public DocumentNode setType(String type) {
         this.type = type;
+        this.lastTypeMatch = null;
         return this;
     }
 
@@ -52,7 +56,16 @@ public class DocumentNode implements ExpressionNode {
         } else {
             throw new IllegalStateException("Document class '" + op.getClass().getName() + "' is not supported.");
         }
-        return doct.isA(this.type) ? op : Boolean.FALSE;
+        return isA(doct) ? op : Boolean.FALSE;
+    }
+
+    private boolean isA(DocumentType documentType) {
+        TypeMatch typeMatch = lastTypeMatch;
+        if (typeMatch == null || typeMatch.documentType != documentType) {
+            typeMatch = new TypeMatch(documentType, documentType.isA(type));
+            lastTypeMatch = typeMatch;
+        }
+        return typeMatch.matches;
     }
 
     public void accept(Visitor visitor) {
@@ -68,4 +81,16 @@ public class DocumentNode implements ExpressionNode {
     public OrderingSpecification getOrdering(int order) {
         return null;
     }
+
+    private static class TypeMatch {
+
+        final DocumentType documentType;
+        final boolean matches;
+
+        TypeMatch(DocumentType documentType, boolean matches) {
+            this.documentType = documentType;
+            this.matches = matches;
+        }
+
+    }
 }
@@ -153,12 +153,12 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     public <T extends FieldValue> void read(FieldBase field, Array<T> array) {
         int numElements = getNumCollectionElems();
-        ArrayList<T> list = new ArrayList<T>(numElements);
         ArrayDataType type = array.getDataType();
+        if (array.isEmpty() && readNumbers(array, type.getNestedType(), numElements)) return;
+
+        ArrayList<T> list = new ArrayList<T>(numElements);
         for (int i = 0; i < numElements; i++) {
-            if (version < 7) {
-                getInt(null); // We don't need size for anything
-            }
+            skipElementSize();
             FieldValue fv = type.getNestedType().createFieldValue();
             fv.deserialize(null, this);
             list.add((T) fv);
@@ -167,6 +167,51 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         array.addAll(list);
     }
 
+    /**
+     * Reads the elements of an array of a numeric type directly into a primitive array,
+     * and returns whether the array was numeric, such that it was read here
+     */
+    private boolean readNumbers(Array<?> array, DataType nestedType, int numElements) {
+        if (nestedType.equals(DataType.INT)) {
+            int[] values = new int[numElements];
+            for (int i = 0; i < numElements; i++) {
+                skipElementSize();
+                values[i] = getInt(null);
+            }
+            array.setValues(values);
+        } else if (nestedType.equals(DataType.LONG)) {
+            long[] values = new long[numElements];
+            for (int i = 0; i < numElements; i++) {
+                skipElementSize();
+                values[i] = getLong(null);
+            }
+            array.setValues(values);
+        } else if (nestedType.equals(DataType.FLOAT)) {
+            float[] values = new float[numElements];
+            for (int i = 0; i < numElements; i++) {
+                skipElementSize();
+                values[i] = getFloat(null);
+            }
+            array.setValues(values);
+        } else if (nestedType.equals(DataType.DOUBLE)) {
+            double[] values = new double[numElements];
+            for (int i = 0; i < numElements; i++) {
+                skipElementSize();
+                values[i] = getDouble(null);
+            }
+            array.setValues(values);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void skipElementSize() {
+        if (version < 7) {
+            getInt(null); // We don't need size for anything
+        }
+    }
+
     public <K extends FieldValue, V extends FieldValue> void read(FieldBase field, MapFieldValue<K, V> map) {
         int numElements = getNumCollectionElems();
         Map<K,V> hash = new HashMap<>();
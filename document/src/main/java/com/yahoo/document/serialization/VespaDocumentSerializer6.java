@@ -15,6 +15,8 @@ import com.yahoo.document.WeightedSetDataType;
 import com.yahoo.document.annotation.AlternateSpanList;
 import com.yahoo.document.annotation.Annotation;
 import com.yahoo.document.annotation.AnnotationReference;
+import com.yahoo.document.annotation.AnnotationType;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.Span;
 import com.yahoo.document.annotation.SpanList;
 import com.yahoo.document.annotation.SpanNode;
@@ -139,6 +141,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
      */
     public <T extends FieldValue> void write(FieldBase field, Array<T> array) {
         buf.putInt1_2_4Bytes(array.size());
+        if (writeNumbers(array)) return;
 
         List<T> lst = array.getValues();
         for (FieldValue value : lst) {
@@ -147,6 +150,31 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
 
     }
 
+    /**
+     * Writes the elements of an array of a numeric type without accessing them as field values,
+     * and returns whether the array was numeric, such that it was written here
+     */
+    private boolean writeNumbers(Array<?> array) {
+        DataType nestedType = array.getDataType().getNestedType();
+        int size = array.size();
+        if (nestedType.equals(DataType.INT)) {
+            for (int i = 0; i < size; i++)
+                buf.putInt(array.getInt(i));
+        } else if (nestedType.equals(DataType.LONG)) {
+            for (int i = 0; i < size; i++)
+                buf.putLong(array.getLong(i));
+        } else if (nestedType.equals(DataType.FLOAT)) {
+            for (int i = 0; i < size; i++)
+                buf.putFloat(array.getFloat(i));
+        } else if (nestedType.equals(DataType.DOUBLE)) {
+            for (int i = 0; i < size; i++)
+                buf.putDouble(array.getDouble(i));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
     public <K extends FieldValue, V extends FieldValue> void write(FieldBase field, MapFieldValue<K, V> map) {
         buf.putInt1_2_4Bytes(map.size());
         for (Map.Entry<K, V> e : map.entrySet()) {
@@ -252,9 +280,14 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
     public void write(FieldBase field, StringFieldValue value) {
         byte[] stringBytes = createUTF8CharArray(value.getString());
 
+        //compact span trees are written directly, without converting them to span trees:
+        Map<String, SpanTree> trees = value.getExpandedSpanTreeMap();
+        Map<String, CompactSpanTree> compactTrees = value.getCompactSpanTreeMap();
+        int treeCount = (trees == null ? 0 : trees.size()) + (compactTrees == null ? 0 : compactTrees.size());
+
         byte coding = 0;
         //Use bit 6 of "coding" to say whether span tree is available or not
-        if (!value.getSpanTrees().isEmpty()) {
+        if (treeCount > 0) {
             coding |= 64;
         }
         buf.put(coding);
@@ -263,24 +296,35 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         buf.put(stringBytes);
         buf.put(((byte) 0));
 
-        Map<String, SpanTree> trees = value.getSpanTreeMap();
-        if ((trees != null) && !trees.isEmpty()) {
+        if (treeCount > 0) {
             try {
                 //we don't support serialization of nested span trees, so this is safe:
                 bytePositions = calculateBytePositions(value.getString());
                 //total length. record position and go back here if necessary:
                 int posBeforeSize = buf.position();
                 buf.putInt(0);
-                buf.putInt1_2_4Bytes(trees.size());
-
-                for (SpanTree tree : trees.values()) {
-                    try {
-                        write(tree);
-                    } catch (SerializationException e) {
-                        throw e;
-                    } catch (RuntimeException e) {
-                        throw new SerializationException("Exception thrown while serializing span tree '" +
-                                                         tree.getName() + "'; string='" + value.getString() + "'", e);
+                buf.putInt1_2_4Bytes(treeCount);
+
+                if (trees != null) {
+                    for (SpanTree tree : trees.values()) {
+                        try {
+                            write(tree);
+                        } catch (SerializationException e) {
+                            throw e;
+                        } catch (RuntimeException e) {
+                            throw new SerializationException("Exception thrown while serializing span tree '" +
+                                                             tree.getName() + "'; string='" + value.getString() + "'", e);
+                        }
+                    }
+                }
+                if (compactTrees != null) {
+                    for (CompactSpanTree tree : compactTrees.values()) {
+                        try {
+                            write(tree);
+                        } catch (RuntimeException e) {
+                            throw new SerializationException("Exception thrown while serializing span tree '" +
+                                                             tree.getName() + "'; string='" + value.getString() + "'", e);
+                        }
                     }
                 }
                 int endPos = buf.position();
@@ -521,6 +565,58 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         }
     }
 
+    /**
+     * Writes a compact span tree in the same format as the equivalent span tree: A span list root
+     * with a span per span of the tree, numbered from 1, followed by the annotations in sorted order.
+     */
+    public void write(CompactSpanTree tree) {
+        if (bytePositions == null) {
+            throw new SerializationException("Cannot serialize " + tree + ", no access to parent StringFieldValue.");
+        }
+
+        new StringFieldValue(tree.getName()).serialize(this);
+
+        buf.put(SpanList.ID);
+        buf.putInt1_2_4Bytes(tree.numSpans());
+        for (int i = 0; i < tree.numSpans(); i++) {
+            int byteFrom = bytePositions[tree.getFrom(i)];
+            int byteLength = bytePositions[tree.getFrom(i) + tree.getLength(i)] - byteFrom;
+            buf.put(Span.ID);
+            buf.putInt1_2_4Bytes(byteFrom);
+            buf.putInt1_2_4Bytes(byteLength);
+        }
+
+        byte[][] strings = new byte[tree.numStrings()][];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = createUTF8CharArray(tree.getString(i));
+        }
+        buf.putInt1_2_4Bytes(tree.numAnnotations());
+        for (int annotation : tree.sortedAnnotations()) {
+            AnnotationType type = tree.getType(annotation);
+            int value = tree.getValueIndex(annotation);
+            buf.putInt(type.getId());
+            buf.put((byte) (value < 0 ? 1 : 3)); // features: span node, and value if any
+
+            int posBeforeSize = buf.position();
+            buf.putInt1_2_4BytesAs4(0);
+
+            buf.putInt1_2_4Bytes(tree.getSpan(annotation) + 1); // the root is span node 0
+            if (value >= 0) {
+                // a string field value without span trees
+                buf.putInt(type.getDataType().getId());
+                buf.put((byte) 0);
+                buf.putInt1_4Bytes(strings[value].length + 1);
+                buf.put(strings[value]);
+                buf.put((byte) 0);
+            }
+
+            int end = buf.position();
+            buf.position(posBeforeSize);
+            buf.putInt1_2_4BytesAs4(end - posBeforeSize - 4);
+            buf.position(end);
+        }
+    }
+
     public void write(SpanNode spanNode) {
         if (spanNodeCounter >= 0) {
             spanNode.setScratchId(spanNodeCounter++);
@@ -0,0 +1,162 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class CompactSpanTreeTestCase {
+
+    private static final String text = "Foxes jump\u00e9d over Foxes";
+    private final Field field = new Field("text", DataType.STRING);
+
+    @Test
+    public void compactSpanTreeIsEquivalentToSpanTree() {
+        assertEquals(createSpanTree(), createCompactSpanTree().toSpanTree());
+    }
+
+    @Test
+    public void compactSpanTreeIsConvertedWhenSpanTreesAreAccessed() {
+        StringFieldValue value = new StringFieldValue(text);
+        CompactSpanTree compact = createCompactSpanTree();
+        value.setSpanTree(compact);
+        assertTrue(value.hasSpanTree(SpanTrees.LINGUISTICS));
+        assertSame(compact, value.getCompactSpanTreeMap().get(SpanTrees.LINGUISTICS));
+        assertNull(value.getExpandedSpanTreeMap());
+
+        StringFieldValue clone = value.clone();
+        try {
+            value.setSpanTree(new CompactSpanTree(SpanTrees.LINGUISTICS));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) { }
+
+        SpanTree tree = value.getSpanTree(SpanTrees.LINGUISTICS);
+        assertEquals(createSpanTree(), tree);
+        assertSame(value, tree.getStringFieldValue());
+        assertNull(value.getCompactSpanTreeMap());
+        assertTrue(value.hasSpanTree(SpanTrees.LINGUISTICS));
+
+        assertNotNull(clone.getCompactSpanTreeMap());
+        assertEquals(value, clone);
+        assertEquals(0, value.compareTo(clone));
+        assertNotNull("Comparing does not convert", clone.getCompactSpanTreeMap());
+        assertEquals(1, clone.getSpanTrees().size());
+        assertNull(clone.getCompactSpanTreeMap());
+    }
+
+    @Test
+    public void compactSpanTreeIsRemovedWithoutConvertingOthers() {
+        StringFieldValue value = new StringFieldValue(text);
+        value.setSpanTree(createCompactSpanTree());
+        value.setSpanTree(new CompactSpanTree("other"));
+
+        SpanTree removed = value.removeSpanTree(SpanTrees.LINGUISTICS);
+        assertEquals(createSpanTree(), removed);
+        assertNull(removed.getStringFieldValue());
+        assertFalse(value.hasSpanTree(SpanTrees.LINGUISTICS));
+        assertTrue(value.hasSpanTree("other"));
+        assertNull(value.getExpandedSpanTreeMap());
+
+        assertNotNull(value.removeSpanTree("other"));
+        assertNull(value.getCompactSpanTreeMap());
+        assertNull(value.removeSpanTree("other"));
+        assertTrue(value.getSpanTrees().isEmpty());
+    }
+
+    @Test
+    public void compactSpanTreeIsSerializedAsTheEquivalentSpanTree() {
+        StringFieldValue value = new StringFieldValue(text);
+        value.setSpanTree(createCompactSpanTree());
+        StringFieldValue expected = new StringFieldValue(text);
+        expected.setSpanTree(createSpanTree());
+
+        byte[] serialized = serialize(value);
+        assertArrayEquals(serialize(expected), serialized);
+        assertNotNull("Serializing does not convert", value.getCompactSpanTreeMap());
+
+        DocumentDeserializer deserializer = DocumentDeserializerFactory.create6(new DocumentTypeManager(),
+                                                                                GrowableByteBuffer.wrap(serialized));
+        StringFieldValue deserialized = new StringFieldValue();
+        deserializer.read(field, deserialized);
+        assertEquals(expected, deserialized);
+    }
+
+    @Test
+    public void onlyAnnotationTypesWithStringValuesCanHaveValues() {
+        CompactSpanTree tree = new CompactSpanTree("test");
+        int span = tree.span(0, 1);
+        tree.annotate(span, AnnotationTypes.TOKEN_TYPE);
+        try {
+            tree.annotate(span, AnnotationTypes.TOKEN_TYPE, "1");
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) {
+            assertFalse(expected.getMessage().isEmpty());
+        }
+        assertEquals(1, tree.numAnnotations());
+    }
+
+    private byte[] serialize(StringFieldValue value) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(1024);
+        DocumentSerializer serializer = DocumentSerializerFactory.create6(buffer);
+        serializer.write(field, value);
+        buffer.flip();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    /** Creates a compact tree annotated like the linguistics annotator, with annotations added out of order */
+    private static CompactSpanTree createCompactSpanTree() {
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS);
+        int foxes = tree.span(0, 5);
+        tree.annotate(foxes, AnnotationTypes.TERM, "foxes");
+        tree.annotate(foxes, AnnotationTypes.TERM, "fox");
+        int jumped = tree.span(6, 6);
+        tree.annotate(jumped, AnnotationTypes.TERM, "jump");
+        tree.annotate(jumped, AnnotationTypes.TERM);
+        int over = tree.span(13, 4);
+        tree.annotate(over, AnnotationTypes.TERM);
+        int lastFoxes = tree.span(18, 5);
+        tree.annotate(lastFoxes, AnnotationTypes.TERM, "fox");
+        tree.annotate(lastFoxes, AnnotationTypes.TERM, "foxes");
+        return tree;
+    }
+
+    private static SpanTree createSpanTree() {
+        SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
+        Span foxes = tree.spanList().span(0, 5);
+        tree.annotate(foxes, new Annotation(AnnotationTypes.TERM, new StringFieldValue("foxes")));
+        tree.annotate(foxes, new Annotation(AnnotationTypes.TERM, new StringFieldValue("fox")));
+        Span jumped = tree.spanList().span(6, 6);
+        tree.annotate(jumped, new Annotation(AnnotationTypes.TERM, new StringFieldValue("jump")));
+        tree.annotate(jumped, new Annotation(AnnotationTypes.TERM));
+        Span over = tree.spanList().span(13, 4);
+        tree.annotate(over, new Annotation(AnnotationTypes.TERM));
+        Span lastFoxes = tree.spanList().span(18, 5);
+        tree.annotate(lastFoxes, new Annotation(AnnotationTypes.TERM, new StringFieldValue("fox")));
+        tree.annotate(lastFoxes, new Annotation(AnnotationTypes.TERM, new StringFieldValue("foxes")));
+        return tree;
+    }
+
+}
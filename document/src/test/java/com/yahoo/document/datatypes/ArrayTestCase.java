@@ -3,6 +3,10 @@ package com.yahoo.document.datatypes;
 
 import com.yahoo.document.ArrayDataType;
 import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -296,6 +300,94 @@ public class ArrayTestCase {
         assertEquals(0, b.compareTo(a));
     }
 
+    @Test
+    public void testNumbersHeldAsPrimitives() {
+        Array<IntegerFieldValue> packed = new Array<>(new ArrayDataType(DataType.INT));
+        packed.setValues(new int[] { 3, 1, 2 });
+        Array<IntegerFieldValue> unpacked = new Array<>(new ArrayDataType(DataType.INT));
+        unpacked.add(new IntegerFieldValue(3));
+        unpacked.add(new IntegerFieldValue(1));
+        unpacked.add(new IntegerFieldValue(2));
+
+        assertEquals(3, packed.size());
+        assertEquals(1, packed.getInt(1));
+        assertEquals(1, unpacked.getInt(1));
+        Array<IntegerFieldValue> clone = packed.clone();
+        assertEquals(unpacked, packed);
+        assertEquals(new IntegerFieldValue(2), packed.get(2));
+        packed.add(new IntegerFieldValue(4));
+        assertEquals(4, packed.size());
+        assertEquals(4, packed.getInt(3));
+        assertEquals(unpacked, clone);
+
+        packed.clear();
+        assertTrue(packed.isEmpty());
+        try {
+            packed.setValues(new double[] { 1.0 });
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Can not set double values in Array<int>", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testNumbersHeldAsPrimitivesAreSerializedAsFieldValues() {
+        Array<DoubleFieldValue> packed = new Array<>(new ArrayDataType(DataType.DOUBLE));
+        packed.setValues(new double[] { 1.5, -2.0 });
+        Array<DoubleFieldValue> unpacked = new Array<>(new ArrayDataType(DataType.DOUBLE));
+        unpacked.add(new DoubleFieldValue(1.5));
+        unpacked.add(new DoubleFieldValue(-2.0));
+
+        byte[] serialized = serialize(packed);
+        assertTrue(Arrays.equals(serialize(unpacked), serialized));
+
+        Array<DoubleFieldValue> deserialized = new Array<>(new ArrayDataType(DataType.DOUBLE));
+        DocumentDeserializerFactory.create6(new DocumentTypeManager(), GrowableByteBuffer.wrap(serialized))
+                                   .read(null, deserialized);
+        assertEquals(-2.0, deserialized.getDouble(1), 0);
+        assertEquals(unpacked, deserialized);
+
+        Array<DoubleFieldValue> nonEmpty = new Array<>(new ArrayDataType(DataType.DOUBLE));
+        nonEmpty.add(new DoubleFieldValue(7.0));
+        DocumentDeserializerFactory.create6(new DocumentTypeManager(), GrowableByteBuffer.wrap(serialized))
+                                   .read(null, nonEmpty);
+        assertEquals("Deserializing into a non-empty array behaves as for arrays of other types",
+                     unpacked, nonEmpty);
+    }
+
+    @Test
+    public void testNumbersHeldAsPrimitivesAreNotAssignedToArraysOfOtherTypes() {
+        Array<IntegerFieldValue> packed = new Array<>(new ArrayDataType(DataType.INT));
+        packed.setValues(new int[] { 1, 2 });
+        try {
+            new Array<LongFieldValue>(new ArrayDataType(DataType.LONG)).assign(packed);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Incompatible data types. Got datatype int (code: 0), expected datatype long (code: 4)",
+                         e.getMessage());
+        }
+        try {
+            new Array<StringFieldValue>(new ArrayDataType(DataType.STRING)).assign(packed);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Incompatible data types. Got datatype int (code: 0), expected datatype string (code: 2)",
+                         e.getMessage());
+        }
+
+        Array<IntegerFieldValue> assigned = new Array<>(new ArrayDataType(DataType.INT));
+        assigned.assign(packed);
+        assertEquals(2, assigned.getInt(1));
+    }
+
+    private static byte[] serialize(Array<?> array) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.create6(buffer).write(null, array);
+        buffer.flip();
+        byte[] serialized = new byte[buffer.remaining()];
+        buffer.get(serialized);
+        return serialized;
+    }
+
     @Test
     public void testLess() {
         Array<StringFieldValue> a = new Array<>(new ArrayDataType(DataType.STRING));
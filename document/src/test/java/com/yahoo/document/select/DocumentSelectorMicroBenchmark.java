@@ -0,0 +1,76 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.select.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates document selections over a stream of synthetic documents, as done by routing and visiting.
+ *
+ * @author agent
+ */
+public class DocumentSelectorMicroBenchmark {
+
+    private final List<DocumentPut> documents = new ArrayList<>();
+
+    public DocumentSelectorMicroBenchmark(int documentCount) {
+        DocumentType music = new DocumentType("music");
+        music.addField("artist", DataType.STRING);
+        music.addField("year", DataType.INT);
+        DocumentType book = new DocumentType("book");
+        book.addField("author", DataType.STRING);
+        for (int i = 0; i < documentCount; i++) {
+            if (i % 4 == 0) {
+                Document document = new Document(book, new DocumentId("id:test:book::" + i));
+                document.setFieldValue("author", new StringFieldValue("author" + i));
+                documents.add(new DocumentPut(document));
+            }
+            else {
+                Document document = new Document(music, new DocumentId("id:test:music::" + i));
+                document.setFieldValue("artist", new StringFieldValue("artist" + (i % 100)));
+                document.setFieldValue("year", new IntegerFieldValue(1950 + i % 70));
+                documents.add(new DocumentPut(document));
+            }
+        }
+    }
+
+    public void benchmark(String selection, int rounds) throws ParseException {
+        DocumentSelector selector = new DocumentSelector(selection);
+        evaluate(selector, rounds / 10 + 1); // warm-up
+        long startTime = System.nanoTime();
+        int accepted = evaluate(selector, rounds);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(String.format("%-60s %8.1f ns per document (%d accepted)",
+                                         selection, (double)totalTime / ((long)rounds * documents.size()), accepted));
+    }
+
+    private int evaluate(DocumentSelector selector, int rounds) {
+        int accepted = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (DocumentPut document : documents) {
+                if (selector.accepts(document) == Result.TRUE)
+                    accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public static void main(String[] args) throws ParseException {
+        DocumentSelectorMicroBenchmark benchmark = new DocumentSelectorMicroBenchmark(100000);
+        benchmark.benchmark("music", 100);
+        benchmark.benchmark("music.year > 2000", 100);
+        benchmark.benchmark("music.artist = \"artist1*\"", 100);
+        benchmark.benchmark("music.artist =~ \"^artist[0-4]$\"", 100);
+        benchmark.benchmark("music.artist = \"artist1*\" and music.year < 1990", 100);
+    }
+
+}
@@ -804,6 +804,32 @@ public class DocumentSelectorTestCase {
         }
     }
 
+    @Test
+    public void testSelectorsCanBeReusedForManyDocuments() throws ParseException {
+        DocumentPut abc = createDocument("doc:scheme:1", 1, 1f, "abc", "content");
+        DocumentPut bcd = createDocument("doc:scheme:2", 2, 2f, "bcd", "content");
+        DocumentPut other = new DocumentPut(new Document(manager.getDocumentType("andornot"), new DocumentId("doc:scheme:3")));
+
+        DocumentSelector regex = new DocumentSelector("test.hstring =~ \"^a\"");
+        DocumentSelector glob = new DocumentSelector("test.hstring = \"*c\"");
+        DocumentSelector type = new DocumentSelector("test");
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Result.TRUE, regex.accepts(abc));
+            assertEquals(Result.FALSE, regex.accepts(bcd));
+            assertEquals(Result.FALSE, regex.accepts(other));
+            assertEquals(Result.TRUE, glob.accepts(abc));
+            assertEquals(Result.FALSE, glob.accepts(bcd));
+            assertEquals(Result.TRUE, type.accepts(abc));
+            assertEquals(Result.FALSE, type.accepts(other));
+        }
+
+        // A pattern which is different for each document
+        DocumentSelector idGlob = new DocumentSelector("\"1\" = id.specific");
+        assertEquals(Result.TRUE, idGlob.accepts(abc));
+        assertEquals(Result.FALSE, idGlob.accepts(bcd));
+        assertEquals(Result.TRUE, idGlob.accepts(abc));
+    }
+
     private static DocumentPut createDocument(String id, Integer hInt, float hFloat, String hString, String content) {
         Document doc = new Document(manager.getDocumentType("test"), new DocumentId(id));
         if (hInt != null)
@@ -15,6 +15,9 @@ import com.yahoo.vespa.objects.BufferSerializer;
 /**
  * Token to use to keep track of progress for visiting. Can be used to resume
  * visiting if visiting has been aborted for any reason.
+ * <p>
+ * Tokens have a fixed width and a compact binary form. This is the first step of a two-phase rollout of the
+ * compact form: both forms are read, but only the fixed width form is written until all readers accept both.
  *
  * @author Thomas Gundersen
  * @author vekterli
@@ -40,6 +43,12 @@ public class ProgressToken {
     public static final BucketId NULL_BUCKET = new BucketId();
     public static final BucketId FINISHED_BUCKET = new BucketId(Integer.MAX_VALUE);
 
+    /**
+     * The first byte of the compact binary form. The fixed width form starts with the
+     * distribution bit count as a big endian int, i.e with a zero byte.
+     */
+    private static final byte COMPACT_FORMAT_VERSION = 1;
+
     /**
      * When a bucket has its state kept by the progress token, we need to
      * discern between active buckets (i.e. those that have been returned by
@@ -88,18 +97,7 @@ public class ProgressToken {
         }
 
         public int compareTo(BucketKeyWrapper other) {
-            if ((key & 0x8000000000000000L) != (other.key & 0x8000000000000000L)) {
-                // MSBs differ
-                return ((key >>> 63) > (other.key >>> 63)) ? 1 : -1;
-            }
-            // Mask off MSBs since we've already checked them, and with MSB != 1
-            // we know the ordering will be consistent
-            if ((key & 0x7FFFFFFFFFFFFFFFL) < (other.key & 0x7FFFFFFFFFFFFFFFL)) {
-                return -1;
-            } else if ((key & 0x7FFFFFFFFFFFFFFFL) > (other.key & 0x7FFFFFFFFFFFFFFFL)) {
-                return 1;
-            }
-            return 0;
+            return Long.compareUnsigned(key, other.key);
         }
 
         public long getKey() {
@@ -143,6 +141,12 @@ public class ProgressToken {
     private TreeMap<BucketId, BucketId> failedBuckets = new TreeMap<BucketId, BucketId>();
     private String firstErrorMsg;
 
+    /**
+     * The sum of the sub-bucket progress fractions of all buckets in <code>buckets</code>,
+     * maintained as buckets are added, updated and removed to make percentFinished constant time
+     */
+    private double subProgressSum = 0;
+
     /**
      * The bucket cursor (i.e. current position in the bucket space) is used
      * by the range source
@@ -211,21 +215,18 @@ public class ProgressToken {
         }
     }
 
+    /**
+     * Creates a progress token from its binary form, as produced by {@link #serialize()}.
+     * The compact form produced by {@link #serializeCompact()} is also accepted.
+     */
     public ProgressToken(byte[] serialized) {
-        BufferSerializer in = new BufferSerializer(GrowableByteBuffer.wrap(serialized));
-        distributionBits = in.getInt(null);
-        bucketCursor = in.getLong(null);
-        finishedBucketCount = in.getLong(null);
-        totalBucketCount = in.getLong(null);
-
-        int progressCount = in.getInt(null);
-        for (int i = 0; i < progressCount; ++i) {
-            long key = in.getLong(null);
-            long value = in.getLong(null);
-            addBucket(new BucketId(key), new BucketId(value), BucketState.BUCKET_PENDING);
-        }
+        if (serialized.length > 0 && serialized[0] == COMPACT_FORMAT_VERSION)
+            deserializeCompact(GrowableByteBuffer.wrap(serialized));
+        else
+            deserializeFixedWidth(serialized);
     }
 
+    /** Returns the binary form of this token, using fixed width numbers */
     public byte[] serialize() {
         BufferSerializer out = new BufferSerializer(new GrowableByteBuffer());
         out.putInt(null, distributionBits);
@@ -247,6 +248,92 @@ public class ProgressToken {
         return ret;
     }
 
+    /**
+     * Returns the compact binary form of this token. Numbers are written with a variable length encoding,
+     * and bucket ids as their used bits count followed by the remaining bits, as most of the bits of
+     * superbuckets and their progress are zero.
+     * <p>
+     * This is not written by {@link #serialize()} until all readers of tokens accept it.
+     */
+    byte[] serializeCompact() {
+        GrowableByteBuffer out = new GrowableByteBuffer(32 + buckets.size() * 12);
+        out.put(COMPACT_FORMAT_VERSION);
+        putUnsigned(out, distributionBits);
+        putUnsigned(out, bucketCursor);
+        putUnsigned(out, finishedBucketCount);
+        putUnsigned(out, totalBucketCount);
+        putUnsigned(out, buckets.size());
+        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
+            putBucketId(out, keyToBucketId(entry.getKey().getKey()));
+            putBucketId(out, entry.getValue().getProgress().getRawId());
+        }
+
+        byte[] ret = new byte[out.position()];
+        out.flip();
+        out.get(ret);
+        return ret;
+    }
+
+    private void deserializeCompact(GrowableByteBuffer in) {
+        in.get(); // version
+        distributionBits = (int)getUnsigned(in);
+        bucketCursor = getUnsigned(in);
+        finishedBucketCount = getUnsigned(in);
+        totalBucketCount = getUnsigned(in);
+
+        long progressCount = getUnsigned(in);
+        for (long i = 0; i < progressCount; ++i) {
+            long superbucket = getBucketId(in);
+            long progress = getBucketId(in);
+            addBucket(new BucketId(superbucket), new BucketId(progress), BucketState.BUCKET_PENDING);
+        }
+    }
+
+    /** Writes the used bits count of a raw bucket id followed by the rest of it */
+    private static void putBucketId(GrowableByteBuffer out, long rawId) {
+        out.put((byte)(rawId >>> (64 - BucketId.COUNT_BITS)));
+        putUnsigned(out, rawId & (-1L >>> BucketId.COUNT_BITS));
+    }
+
+    private static long getBucketId(GrowableByteBuffer in) {
+        long usedBits = in.get() & 0xFF;
+        return (usedBits << (64 - BucketId.COUNT_BITS)) | getUnsigned(in);
+    }
+
+    /** Writes an unsigned number using 7 bits per byte, setting the high bit of all but the last byte */
+    private static void putUnsigned(GrowableByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte)value);
+    }
+
+    private static long getUnsigned(GrowableByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed progress token: Too long number");
+    }
+
+    private void deserializeFixedWidth(byte[] serialized) {
+        BufferSerializer in = new BufferSerializer(GrowableByteBuffer.wrap(serialized));
+        distributionBits = in.getInt(null);
+        bucketCursor = in.getLong(null);
+        finishedBucketCount = in.getLong(null);
+        totalBucketCount = in.getLong(null);
+
+        int progressCount = in.getInt(null);
+        for (int i = 0; i < progressCount; ++i) {
+            long key = in.getLong(null);
+            long value = in.getLong(null);
+            addBucket(new BucketId(key), new BucketId(value), BucketState.BUCKET_PENDING);
+        }
+    }
+
     /** Returns a string (base64) encoding of the serial form of this token */
     public String serializeToString() {
         return Base64.getUrlEncoder().encodeToString(serialize());
@@ -334,7 +421,9 @@ public class ProgressToken {
             // Mark bucket as pending instead of active, allowing it to be
             // reused by the iterator
             entry.setState(BucketState.BUCKET_PENDING);
+            subProgressSum -= subProgress(superKey, entry.getProgress());
             entry.setProgress(progress);
+            subProgressSum += subProgress(superKey, progress);
         }
         else {
             // Superbucket is finished, alongside its sub-bucket tree
@@ -346,7 +435,7 @@ public class ProgressToken {
                 assert(activeBucketCount > 0);
                 --activeBucketCount;
             }
-            buckets.remove(superKey);
+            removeBucket(superKey);
         }
     }
 
@@ -373,12 +462,14 @@ public class ProgressToken {
         }
 
         BucketEntry entry = new BucketEntry(progress, state);
-        BucketEntry existing = buckets.put(bucketToKeyWrapper(superbucket), entry);
+        BucketKeyWrapper superKey = bucketToKeyWrapper(superbucket);
+        BucketEntry existing = buckets.put(superKey, entry);
         if (existing != null) {
             throw new IllegalStateException(
                     "Attempting to add a superbucket that has already been added: "
                     + superbucket + ":" + progress);
         }
+        subProgressSum += subProgress(superKey, progress);
         if (state == BucketState.BUCKET_PENDING) {
             ++pendingBucketCount;
         } else {
@@ -386,6 +477,25 @@ public class ProgressToken {
         }
     }
 
+    private void removeBucket(BucketKeyWrapper superKey) {
+        BucketEntry entry = buckets.remove(superKey);
+        if (buckets.isEmpty())
+            subProgressSum = 0; // Don't accumulate rounding errors
+        else if (entry != null)
+            subProgressSum -= subProgress(superKey, entry.getProgress());
+    }
+
+    /**
+     * Returns the fraction of the given superbucket which is finished given its progress,
+     * or 0 if the progress is not consistent with the superbucket
+     */
+    private static double subProgress(BucketKeyWrapper superKey, BucketId progress) {
+        if (progress.getId() == 0) return 0;
+        BucketId superbucket = new BucketId(keyToBucketId(superKey.getKey()));
+        if ( ! superbucket.contains(progress)) return 0;
+        return fractionOf(superbucket, progress);
+    }
+
     /**
      * Directly generate a bucket Id key for the <code>n</code>th bucket in
      * reverse sorted order.
@@ -560,9 +670,8 @@ public class ProgressToken {
      * Calculate an estimate on how far we've managed to iterate over both the
      * superbuckets and the sub-buckets.
      *
-     * Runs in <em>O(n+m)</em> time, where <em>n</em> is the number of active buckets
-     * and <em>m</em> is the number of pending buckets. Both these values should
-     * be fairly small in practice, however.
+     * Runs in constant time, as the sub-bucket progress of the active and pending
+     * buckets is summed up as they are updated.
      *
      * Method is synchronized, as legacy code treats this as an atomic read.
      *
@@ -575,20 +684,9 @@ public class ProgressToken {
         if (superTotal == 0 || superTotal == superFinished) return 100;
 
         double superDelta = 100.0 / superTotal;
-        double cumulativeSubProgress = 0;
-
-        // Calculate cumulative for all non-finished buckets. 0 means the
-        // bucket has yet to see any progress
         // There are numerical precision issues here, but this hardly requires
         // aerospace engineering result-accuracy
-        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
-            BucketId superbucket = new BucketId(keyToBucketId(entry.getKey().getKey()));
-            BucketId progress = entry.getValue().getProgress();
-            // Prevent calculation of bucket progress on inconsistent buckets
-            if (progress.getId() != 0 && superbucket.contains(progress)) {
-                cumulativeSubProgress += superDelta * progressFraction(superbucket, progress);
-            }
-        }
+        double cumulativeSubProgress = superDelta * Math.max(0, subProgressSum);
 
         return (((double)superFinished / (double)superTotal) * 100.0)
                 + cumulativeSubProgress;
@@ -660,6 +758,10 @@ public class ProgressToken {
      * bucket's split factor.
      */
     public synchronized double progressFraction(BucketId superbucket, BucketId progress) {
+        return fractionOf(superbucket, progress);
+    }
+
+    private static double fractionOf(BucketId superbucket, BucketId progress) {
         long revBits = bucketToKey(progress.getId());
         int superUsed = superbucket.getUsedBits();
         int progressUsed = progress.getUsedBits();
@@ -765,7 +867,7 @@ public class ProgressToken {
         addBucket(splitRight, entry.getProgress(), BucketState.BUCKET_PENDING);
 
         // Remove old bucket
-        buckets.remove(bucketKey);
+        removeBucket(bucketKey);
         --pendingBucketCount;
     }
 
@@ -802,7 +904,7 @@ public class ProgressToken {
                     log.log(LogLevel.DEBUG, "Bucket progress for " + rightCheck +
                             " will be lost due to merging; potential for duplicates in result-set");
                 }
-                buckets.remove(bucketToKeyWrapper(rightCheck));
+                removeBucket(bucketToKeyWrapper(rightCheck));
                 --pendingBucketCount;
             }
         } else {
@@ -814,7 +916,7 @@ public class ProgressToken {
         BucketId newMerged = new BucketId(usedBits - 1, bucket.getId());
         addBucket(newMerged, entry.getProgress(), BucketState.BUCKET_PENDING);
         // Remove original bucket, leaving only the merged bucket
-        buckets.remove(bucketKey);
+        removeBucket(bucketKey);
         --pendingBucketCount;
         assert(pendingBucketCount > 0);
     }
@@ -828,6 +930,7 @@ public class ProgressToken {
 
     protected void clearAllBuckets() {
         buckets.clear();
+        subProgressSum = 0;
         pendingBucketCount = 0;
         activeBucketCount = 0;
     }
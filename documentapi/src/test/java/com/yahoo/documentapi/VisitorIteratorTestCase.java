@@ -4,6 +4,8 @@ package com.yahoo.documentapi;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.document.BucketId;
 import com.yahoo.document.BucketIdFactory;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.vespa.objects.BufferSerializer;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -12,6 +14,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -1573,4 +1576,91 @@ public class VisitorIteratorTestCase {
         assertEquals(input, p2.toString());
     }
 
+    @Test
+    public void testCompactBinaryProgressSerialization() {
+        String input = "VDS bucket progress file (48.8525390625% completed)\n" +
+                "10\n" +
+                "503\n" +
+                "500\n" +
+                "1024\n" +
+                "28000000000000be:0\n" +
+                "28000000000002be:300000000000a2be\n" +
+                "28000000000001be:e8d3b9a6714c50bf\n";
+        ProgressToken p = new ProgressToken(input);
+        byte[] buf = p.serializeCompact();
+        assertTrue(buf.length < p.serialize().length / 2);
+        assertEquals(input, new ProgressToken(buf).toString());
+    }
+
+    @Test
+    public void testFixedWidthBinaryProgressIsWritten() {
+        String input = "VDS bucket progress file (48.8525390625% completed)\n" +
+                "10\n" +
+                "503\n" +
+                "500\n" +
+                "1024\n" +
+                "28000000000000be:0\n" +
+                "28000000000002be:300000000000a2be\n" +
+                "28000000000001be:e8d3b9a6714c50bf\n";
+        ProgressToken p = new ProgressToken(input);
+        assertArrayEquals(fixedWidthSerialization(p), p.serialize());
+        assertEquals(input, new ProgressToken(p.serialize()).toString());
+    }
+
+    /** Serializes a token in the fixed width form which can be read by earlier versions */
+    private static byte[] fixedWidthSerialization(ProgressToken p) {
+        BufferSerializer out = new BufferSerializer(new GrowableByteBuffer());
+        out.putInt(null, p.getDistributionBitCount());
+        out.putLong(null, p.getBucketCursor());
+        out.putLong(null, p.getFinishedBucketCount());
+        out.putLong(null, p.getTotalBucketCount());
+        out.putInt(null, p.getBuckets().size());
+        for (Map.Entry<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> entry : p.getBuckets().entrySet()) {
+            out.putLong(null, ProgressToken.keyToBucketId(entry.getKey().getKey()));
+            out.putLong(null, entry.getValue().getProgress().getRawId());
+        }
+        byte[] ret = new byte[out.getBuf().position()];
+        out.getBuf().rewind();
+        out.getBuf().get(ret);
+        return ret;
+    }
+
+    @Test
+    public void testPercentFinishedFollowsBucketChanges() {
+        ProgressToken p = new ProgressToken(3);
+        p.setTotalBucketCount(8);
+        p.setBucketCursor(4);
+        p.setFinishedBucketCount(1);
+        p.addBucket(new BucketId(3, 0), ProgressToken.NULL_BUCKET, ProgressToken.BucketState.BUCKET_ACTIVE);
+        p.addBucket(new BucketId(3, 4), new BucketId(5, 0x04), ProgressToken.BucketState.BUCKET_ACTIVE);
+        p.addBucket(new BucketId(3, 2), new BucketId(4, 0x0a), ProgressToken.BucketState.BUCKET_PENDING);
+        assertPercentFinished(p);
+
+        p.updateProgress(new BucketId(3, 0), new BucketId(5, 0x10));
+        assertPercentFinished(p);
+        p.updateProgress(new BucketId(3, 4), ProgressToken.FINISHED_BUCKET);
+        assertPercentFinished(p);
+        p.splitPendingBucket(new BucketId(3, 2));
+        assertPercentFinished(p);
+        p.mergePendingBucket(new BucketId(4, 2));
+        assertPercentFinished(p);
+        p.updateProgress(new BucketId(3, 0), ProgressToken.FINISHED_BUCKET);
+        p.updateProgress(new BucketId(3, 2), ProgressToken.FINISHED_BUCKET);
+        assertEquals(4 * 100.0 / 8, p.percentFinished(), 1e-9);
+        p.clearAllBuckets();
+        assertPercentFinished(p);
+    }
+
+    /** Asserts that the percent finished equals that computed from the buckets of the token */
+    private static void assertPercentFinished(ProgressToken p) {
+        double expected = 100.0 * p.getFinishedBucketCount() / p.getTotalBucketCount();
+        for (Map.Entry<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> entry : p.getBuckets().entrySet()) {
+            BucketId superbucket = entry.getKey().toBucketId();
+            BucketId progress = entry.getValue().getProgress();
+            if (progress.getId() != 0 && superbucket.contains(progress))
+                expected += 100.0 / p.getTotalBucketCount() * p.progressFraction(superbucket, progress);
+        }
+        assertEquals(expected, p.percentFinished(), 1e-9);
+    }
+
 }
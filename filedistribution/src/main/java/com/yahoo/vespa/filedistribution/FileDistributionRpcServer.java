@@ -18,11 +18,15 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * An RPC server that handles file distribution requests.
+ * An RPC server that handles file distribution requests, including serving downloaded file references to peers.
  *
  * @author hmusum
  */
@@ -34,6 +38,13 @@ public class FileDistributionRpcServer {
     private final FileDownloader downloader;
     private final ExecutorService rpcDownloadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
                                                                                      new DaemonThreadFactory("Rpc executor"));
+    // Peers are served by a separate, bounded executor, as requests from clients may block while waiting for downloads.
+    // Peers which are rejected download from another source.
+    private static final int serveThreads = 4;
+    private static final int maxQueuedServeRequests = 100;
+    private final ExecutorService rpcServeExecutor = new ThreadPoolExecutor(serveThreads, serveThreads, 0, TimeUnit.SECONDS,
+                                                                            new LinkedBlockingQueue<>(maxQueuedServeRequests),
+                                                                            new DaemonThreadFactory("Rpc serve executor"));
 
     public FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
@@ -58,6 +69,13 @@ public class FileDistributionRpcServer {
                                      .methodDesc("download status for file references")
                                      .returnDesc(0, "file references", "array of file references")
                                      .returnDesc(1, "download status", "percentage downloaded of each file reference in above array"));
+        supervisor.addMethod(new Method("filedistribution.serveFile", "si", "is",
+                                        this, "serveFile")
+                                     .methodDesc("serve a downloaded file reference to a peer")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "downloadFromOtherSourceIfNotFound", "ignored, peers only serve file references they have downloaded")
+                                     .returnDesc(0, "error code", "0 if the file reference is served, 1 if not found or too many requests")
+                                     .returnDesc(1, "error description", "description of the error code"));
         supervisor.addMethod(new Method("filedistribution.setFileReferencesToDownload", "S", "i",
                                         this, "setFileReferencesToDownload")
                                      .methodDesc("set which file references to download")
@@ -110,6 +128,43 @@ public class FileDistributionRpcServer {
         req.returnValues().add(new Int32Value(0));
     }
 
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void serveFile(Request req) {
+        req.detach();
+        try {
+            rpcServeExecutor.execute(() -> serveFileToPeer(req));
+        } catch (RejectedExecutionException e) {
+            req.returnValues()
+               .add(new Int32Value(1))
+               .add(new StringValue("Too many requests"));
+            req.returnRequest();
+        }
+    }
+
+    private void serveFileToPeer(Request req) {
+        FileReference fileReference = new FileReference(req.parameters().get(0).asString());
+        Optional<File> file = downloader.getDownloadedFile(fileReference);
+        log.log(LogLevel.DEBUG, () -> "serveFile() called for file reference '" + fileReference.value() + "' from " + req.target() +
+                                      (file.isPresent() ? "" : ", not downloaded"));
+        req.returnValues()
+           .add(new Int32Value(file.isPresent() ? 0 : 1))
+           .add(new StringValue(file.isPresent() ? "OK" : "Filereference not found"));
+        req.returnRequest();
+        if ( ! file.isPresent()) return;
+
+        FileReferenceSender sender = new FileReferenceSender(req.target());
+        try {
+            FileReferenceData fileData = FileReferenceSender.readFileReferenceData(fileReference, file.get());
+            try {
+                sender.send(fileData, 0, "OK");
+            } finally {
+                fileData.close();
+            }
+        } catch (Exception e) {
+            log.log(LogLevel.WARNING, "Failed serving file reference '" + fileReference.value() + "' to " + sender + ": " + e.getMessage());
+        }
+    }
+
     private void downloadFile(Request req) {
         FileReference fileReference = new FileReference(req.parameters().get(0).asString());
         log.log(LogLevel.DEBUG, () -> "getFile() called for file reference '" + fileReference.value() + "'");
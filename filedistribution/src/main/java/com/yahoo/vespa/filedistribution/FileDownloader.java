@@ -33,7 +33,16 @@ public class FileDownloader {
     private final FileReferenceDownloader fileReferenceDownloader;
 
     public FileDownloader(ConnectionPool connectionPool) {
+        this(connectionPool, Optional.empty());
+    }
+
+    /**
+     * Creates a file downloader which will try to download file references from one of the given peers
+     * before downloading from the config servers in connectionPool
+     */
+    public FileDownloader(ConnectionPool connectionPool, Optional<ConnectionPool> peers) {
         this(connectionPool,
+             peers,
              new File(Defaults.getDefaults().underVespaHome("var/db/vespa/filedistribution")),
              new File(Defaults.getDefaults().underVespaHome("var/db/vespa/filedistribution")),
              Duration.ofMinutes(15),
@@ -41,9 +50,15 @@ public class FileDownloader {
     }
 
     FileDownloader(ConnectionPool connectionPool, File downloadDirectory, File tmpDirectory, Duration timeout, Duration sleepBetweenRetries) {
+        this(connectionPool, Optional.empty(), downloadDirectory, tmpDirectory, timeout, sleepBetweenRetries);
+    }
+
+    FileDownloader(ConnectionPool connectionPool, Optional<ConnectionPool> peers, File downloadDirectory, File tmpDirectory,
+                   Duration timeout, Duration sleepBetweenRetries) {
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
-        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool, timeout, sleepBetweenRetries);
+        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool, peers,
+                                                                   timeout, sleepBetweenRetries);
     }
 
     public Optional<File> getFile(FileReference fileReference) {
@@ -89,6 +104,15 @@ public class FileDownloader {
         return downloadDirectory;
     }
 
+    /** Returns the file for the given file reference if it has been downloaded, without trying to download it */
+    Optional<File> getDownloadedFile(FileReference fileReference) {
+        try {
+            return getFileFromFileSystem(fileReference, downloadDirectory);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
     private Optional<File> getFileFromFileSystem(FileReference fileReference, File directory) {
         File[] files = new File(directory, fileReference.value()).listFiles();
         if (directory.exists() && directory.isDirectory() && files != null && files.length > 0) {
@@ -107,11 +131,7 @@ public class FileDownloader {
     }
 
     private boolean alreadyDownloaded(FileReference fileReference) {
-        try {
-            return (getFileFromFileSystem(fileReference, downloadDirectory).isPresent());
-        } catch (RuntimeException e) {
-            return false;
-        }
+        return getDownloadedFile(fileReference).isPresent();
     }
 
     public boolean downloadIfNeeded(FileReferenceDownload fileReferenceDownload) {
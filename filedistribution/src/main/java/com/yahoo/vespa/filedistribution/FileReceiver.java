@@ -14,11 +14,16 @@ import net.jpountz.xxhash.XXHashFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,12 +43,16 @@ public class FileReceiver {
     public final static String RECEIVE_PART_METHOD = "filedistribution.receiveFilePart";
     public final static String RECEIVE_EOF_METHOD = "filedistribution.receiveFileEof";
 
+    /** Sessions which have received nothing for this long are aborted when a new session starts */
+    private final static Duration defaultSessionTimeout = Duration.ofMinutes(5);
+
     private final Supervisor supervisor;
     private final FileReferenceDownloader downloader;
     private final File downloadDirectory;
     // Should be on same partition as downloadDirectory to make sure moving files from tmpDirectory
     // to downloadDirectory is atomic
     private final File tmpDirectory;
+    private final Duration sessionTimeout;
     private final AtomicInteger nextSessionId = new AtomicInteger(1);
     private final Map<Integer, Session> sessions = new HashMap<>();
 
@@ -60,6 +69,8 @@ public class FileReceiver {
         private final File fileReferenceDir;
         private final File tmpDir;
         private final File inprogressFile;
+        private final FileChannel inprogressChannel;
+        private volatile Instant lastReceived = Instant.now();
 
         Session(File downloadDirectory, File tmpDirectory, int sessionId, FileReference reference,
                 FileReferenceData.Type fileType, String fileName, long fileSize)
@@ -78,6 +89,7 @@ public class FileReceiver {
 
             try {
                 inprogressFile = Files.createTempFile(tmpDirectory.toPath(), fileName, ".inprogress").toFile();
+                inprogressChannel = FileChannel.open(inprogressFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
             } catch (IOException e) {
                 String msg = "Failed creating temp file for inprogress file for " + fileName + " in '" + tmpDirectory.toPath() + "': ";
                 log.log(LogLevel.ERROR, msg + e.getMessage(), e);
@@ -85,19 +97,25 @@ public class FileReceiver {
             }
         }
 
+        /** Appends the given part to the file. If this throws, the session is aborted. */
         void addPart(int partId, byte [] part) {
+            lastReceived = Instant.now();
             if (partId != currentPartId) {
+                abort();
                 throw new IllegalStateException("Received partid " + partId + " while expecting " + currentPartId);
             }
             if (fileSize < currentFileSize + part.length) {
+                abort();
                 throw new IllegalStateException("Received part would extend the file from " + currentFileSize + " to " +
                                                 (currentFileSize + part.length) + ", but " + fileSize + " is max.");
             }
             try {
-                Files.write(inprogressFile.toPath(), part, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining())
+                    inprogressChannel.write(buffer);
             } catch (IOException e) {
                 log.log(LogLevel.ERROR, "Failed writing to file(" + inprogressFile.toPath() + "): " + e.getMessage(), e);
-                inprogressFile.delete();
+                abort();
                 throw new RuntimeException("Failed writing to file(" + inprogressFile.toPath() + "): ", e);
             }
             currentFileSize += part.length;
@@ -105,12 +123,39 @@ public class FileReceiver {
             hasher.update(part, 0, part.length);
         }
 
-        File close(long hash) {
-            if (hasher.getValue() != hash) {
-                throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
+        /** Closes and deletes the file received so far */
+        void abort() {
+            closeChannel();
+            deleteInprogressFile();
+        }
+
+        boolean isTimedOut(Instant now, Duration timeout) {
+            return ! lastReceived.plus(timeout).isAfter(now);
+        }
+
+        private void deleteInprogressFile() {
+            try {
+                Files.deleteIfExists(inprogressFile.toPath());
+            } catch (IOException e) {
+                log.log(LogLevel.ERROR, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage(), e);
+            }
+        }
+
+        private void closeChannel() {
+            try {
+                inprogressChannel.close();
+            } catch (IOException e) {
+                log.log(LogLevel.WARNING, "Failed closing " + inprogressFile.getAbsolutePath() + ": " + e.getMessage());
             }
+        }
+
+        File close(long hash) {
+            closeChannel();
             File file = new File(fileReferenceDir, fileName);
             try {
+                if (hasher.getValue() != hash) {
+                    throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
+                }
                 // Unpack if necessary
                 if (fileType == FileReferenceData.Type.compressed) {
                     File decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
@@ -131,13 +176,7 @@ public class FileReceiver {
                 log.log(LogLevel.ERROR, "Failed writing file: " + e.getMessage(), e);
                 throw new RuntimeException("Failed writing file: ", e);
             } finally {
-                try {
-                    if (inprogressFile.exists()) {
-                        Files.delete(inprogressFile.toPath());
-                    }
-                } catch (IOException e) {
-                    log.log(LogLevel.ERROR, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage(), e);
-                }
+                deleteInprogressFile();
             }
             return file;
         }
@@ -148,10 +187,16 @@ public class FileReceiver {
     }
 
     FileReceiver(Supervisor supervisor, FileReferenceDownloader downloader, File downloadDirectory, File tmpDirectory) {
+        this(supervisor, downloader, downloadDirectory, tmpDirectory, defaultSessionTimeout);
+    }
+
+    FileReceiver(Supervisor supervisor, FileReferenceDownloader downloader, File downloadDirectory, File tmpDirectory,
+                 Duration sessionTimeout) {
         this.supervisor = supervisor;
         this.downloader = downloader;
         this.downloadDirectory = downloadDirectory;
         this.tmpDirectory = tmpDirectory;
+        this.sessionTimeout = sessionTimeout;
         registerMethods();
     }
 
@@ -223,6 +268,7 @@ public class FileReceiver {
                 retval = 1;
                 log.severe("Session id " + sessionId + " already exist, impossible. Request from(" + req.target() + ")");
             } else {
+                abortReplacedAndTimedOutSessions(reference);
                 try {
                     sessions.put(sessionId, new Session(downloadDirectory, tmpDirectory, sessionId, reference,
                                                         FileReferenceData.Type.valueOf(type),fileName, fileSize));
@@ -245,11 +291,18 @@ public class FileReceiver {
         byte [] part = req.parameters().get(3).asData();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
         try {
             session.addPart(partId, part);
         } catch (Exception e) {
             log.severe("Got exception " + e);
-            retval = 1;
+            removeSession(sessionId);
+            downloader.failedTransfer(reference);
+            req.returnValues().add(new Int32Value(1));
+            return;
         }
         double completeness = (double) session.currentFileSize / (double) session.fileSize;
         log.log(LogLevel.DEBUG, () -> String.format("%.1f percent of '%s' downloaded", completeness * 100, reference.value()));
@@ -265,10 +318,18 @@ public class FileReceiver {
         long xxhash = req.parameters().get(2).asInt64();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
-        File file = session.close(xxhash);
-        downloader.completedDownloading(reference, file);
-        synchronized (sessions) {
-            sessions.remove(sessionId);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
+        try {
+            File file = session.close(xxhash);
+            downloader.completedDownloading(reference, file);
+        } catch (RuntimeException e) {
+            downloader.failedTransfer(reference);
+            throw e;
+        } finally {
+            removeSession(sessionId);
         }
         req.returnValues().add(new Int32Value(retval));
     }
@@ -278,6 +339,28 @@ public class FileReceiver {
             return sessions.get(sessionId);
         }
     }
+
+    private void removeSession(Integer sessionId) {
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    /**
+     * Aborts the sessions receiving the given file reference, which are replaced by a new session,
+     * and the sessions which have timed out. Must be called while synchronized on sessions.
+     */
+    private void abortReplacedAndTimedOutSessions(FileReference reference) {
+        Instant now = Instant.now();
+        for (Iterator<Session> i = sessions.values().iterator(); i.hasNext(); ) {
+            Session session = i.next();
+            if (session.reference.equals(reference) || session.isTimedOut(now, sessionTimeout)) {
+                log.log(LogLevel.DEBUG, () -> "Aborting session " + session.sessionId + " receiving '" + session.reference.value() + "'");
+                session.abort();
+                i.remove();
+            }
+        }
+    }
     private static int verifySession(Session session, int sessionId, FileReference reference) {
         if (session == null) {
             log.severe("session-id " + sessionId + " does not exist.");
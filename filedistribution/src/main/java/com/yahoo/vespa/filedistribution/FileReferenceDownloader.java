@@ -14,17 +14,23 @@ import com.yahoo.vespa.config.ConnectionPool;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Downloads file reference using rpc requests to config server and keeps track of files being downloaded
+ * Downloads file reference using rpc requests to config server, or to peers which have already downloaded it,
+ * and keeps track of files being downloaded
  * <p>
  * Some methods are synchronized to make sure access to downloads is atomic
  *
@@ -35,32 +41,63 @@ public class FileReferenceDownloader {
 
     private final static Logger log = Logger.getLogger(FileReferenceDownloader.class.getName());
     private final static Duration rpcTimeout = Duration.ofSeconds(10);
+    /** A transfer which makes no progress for this long is given up, and the file reference is requested from another source */
+    private final static Duration defaultTransferTimeout = Duration.ofMinutes(1);
 
     private final ExecutorService downloadExecutor =
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("filereference downloader"));
     private final ConnectionPool connectionPool;
+    private final Optional<ConnectionPool> peers;
     private final Map<FileReference, FileReferenceDownload> downloads = new LinkedHashMap<>();
     private final Map<FileReference, Double> downloadStatus = new HashMap<>();  // between 0 and 1
+    private final Set<FileReference> failedTransfers = new HashSet<>();
     private final Duration downloadTimeout;
     private final Duration sleepBetweenRetries;
+    private final Duration transferTimeout;
 
     FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Duration timeout, Duration sleepBetweenRetries) {
+        this(downloadDirectory, tmpDirectory, connectionPool, Optional.empty(), timeout, sleepBetweenRetries);
+    }
+
+    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Optional<ConnectionPool> peers,
+                            Duration timeout, Duration sleepBetweenRetries) {
+        this(downloadDirectory, tmpDirectory, connectionPool, peers, timeout, sleepBetweenRetries, defaultTransferTimeout);
+    }
+
+    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Optional<ConnectionPool> peers,
+                            Duration timeout, Duration sleepBetweenRetries, Duration transferTimeout) {
         this.connectionPool = connectionPool;
+        this.peers = peers;
         this.downloadTimeout = timeout;
         this.sleepBetweenRetries = sleepBetweenRetries;
+        this.transferTimeout = transferTimeout;
         // Needed to receive RPC calls receiveFile* from server after asking for files
         new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory);
+        peers.filter(pool -> pool.getSupervisor() != connectionPool.getSupervisor())
+             .ifPresent(pool -> new FileReceiver(pool.getSupervisor(), this, downloadDirectory, tmpDirectory));
     }
 
     private void startDownload(Duration timeout, FileReferenceDownload fileReferenceDownload) {
         FileReference fileReference = fileReferenceDownload.fileReference();
         long end = System.currentTimeMillis() + timeout.toMillis();
-        boolean downloadStarted = false;
+        boolean downloaded = false;
         int retryCount = 0;
-        while ((System.currentTimeMillis() < end) && !downloadStarted) {
+        while ((System.currentTimeMillis() < end) && !downloaded) {
             try {
-                if (startDownloadRpc(fileReferenceDownload, retryCount)) {
-                    downloadStarted = true;
+                synchronized (downloads) {
+                    failedTransfers.remove(fileReference);
+                }
+                Optional<ConnectionPool> source = startDownloadRpc(fileReferenceDownload, retryCount);
+                if (source.isPresent()) {
+                    if (awaitTransfer(fileReferenceDownload, end)) {
+                        downloaded = true;
+                    } else if (System.currentTimeMillis() < end) {
+                        // Request it again at once, from another source
+                        log.log(LogLevel.INFO, "Transfer of file reference '" + fileReference.value() + "' from " +
+                                               source.get().getCurrent().getAddress() + " failed, trying another source");
+                        source.get().setNewCurrentConnection();
+                        retryCount++;
+                    }
                 } else {
                     retryCount++;
                     Thread.sleep(sleepBetweenRetries.toMillis());
@@ -69,7 +106,7 @@ public class FileReferenceDownloader {
             catch (InterruptedException e) { /* ignored */}
         }
 
-        if ( !downloadStarted) {
+        if ( !downloaded) {
             fileReferenceDownload.future().setException(new RuntimeException("Failed getting file reference '" + fileReference.value() + "'"));
             synchronized (downloads) {
                 downloads.remove(fileReference);
@@ -94,6 +131,7 @@ public class FileReferenceDownloader {
                 downloadStatus.put(fileReference, 1.0);
                 downloads.remove(fileReference);
                 download.future().set(Optional.of(file));
+                downloads.notifyAll();
             } else {
                 log.log(LogLevel.DEBUG, () -> "Received '" + fileReference + "', which was not requested. Can be ignored if happening during upgrades/restarts");
             }
@@ -104,15 +142,84 @@ public class FileReferenceDownloader {
         synchronized (downloads) {
             downloadStatus.put(fileReference, 0.0);
             downloads.remove(fileReference);
+            downloads.notifyAll();
+        }
+    }
+
+    /** Called when a transfer of the given file reference fails, such that it should be requested from another source */
+    void failedTransfer(FileReference fileReference) {
+        synchronized (downloads) {
+            if ( ! downloads.containsKey(fileReference)) return;
+            failedTransfers.add(fileReference);
+            downloads.notifyAll();
         }
     }
 
-    private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount) {
-        Connection connection = connectionPool.getCurrent();
+    /**
+     * Waits until the given download completes or is given up, or the transfer of it fails or makes no progress
+     * for the transfer timeout. Returns false if the file reference should be requested again, true otherwise.
+     */
+    private boolean awaitTransfer(FileReferenceDownload fileReferenceDownload, long end) throws InterruptedException {
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        synchronized (downloads) {
+            Double progress = downloadStatus.get(fileReference);
+            long stalledAt = System.currentTimeMillis() + transferTimeout.toMillis();
+            while (downloads.get(fileReference) == fileReferenceDownload && ! fileReferenceDownload.future().isDone()) {
+                if (failedTransfers.remove(fileReference)) return false;
+
+                Double currentProgress = downloadStatus.get(fileReference);
+                if ( ! Objects.equals(progress, currentProgress)) {
+                    progress = currentProgress;
+                    stalledAt = System.currentTimeMillis() + transferTimeout.toMillis();
+                }
+                long waitMillis = Math.min(stalledAt, end) - System.currentTimeMillis();
+                if (waitMillis <= 0) return false;
+                downloads.wait(waitMillis);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Asks a random peer to serve the file reference, if there are any peers, moving on to another peer
+     * if one fails or does not have it, and asks a config server if no peer has it. Peers which have downloaded
+     * a file reference serve it to others, so the number of sources grows with each round of downloads,
+     * instead of all nodes downloading from config servers.
+     *
+     * @return the pool of the source which will send the file reference, or empty if none will
+     */
+    private Optional<ConnectionPool> startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount) {
+        if (peers.isPresent()) {
+            ConnectionPool pool = peers.get();
+            Set<Connection> asked = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Connection peer = pool.getCurrent(); asked.add(peer); peer = nextUnasked(pool, asked)) {
+                if (startDownloadRpc(fileReferenceDownload, retryCount, pool, false))
+                    return peers;
+            }
+        }
+        if (startDownloadRpc(fileReferenceDownload, retryCount, connectionPool, fileReferenceDownload.downloadFromOtherSourceIfNotFound()))
+            return Optional.of(connectionPool);
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the current connection of the given pool, after choosing new ones until it is one which is not asked,
+     * or a connection which is asked if all of them seem to be
+     */
+    private static Connection nextUnasked(ConnectionPool pool, Set<Connection> asked) {
+        Connection connection = pool.getCurrent();
+        for (int i = 0; asked.contains(connection) && asked.size() < pool.getSize() && i < 10 * pool.getSize(); i++)
+            connection = pool.setNewCurrentConnection();
+        return connection;
+    }
+
+    private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount, ConnectionPool pool,
+                                     boolean downloadFromOtherSourceIfNotFound) {
+        Connection connection = pool.getCurrent();
         Request request = new Request("filedistribution.serveFile");
         String fileReference = fileReferenceDownload.fileReference().value();
         request.parameters().add(new StringValue(fileReference));
-        request.parameters().add(new Int32Value(fileReferenceDownload.downloadFromOtherSourceIfNotFound() ? 0 : 1));
+        request.parameters().add(new Int32Value(downloadFromOtherSourceIfNotFound ? 0 : 1));
 
         execute(request, connection);
         Level logLevel = (retryCount > 0 ? LogLevel.INFO : LogLevel.DEBUG);
@@ -123,13 +230,13 @@ public class FileReferenceDownloader {
                 return true;
             } else {
                 log.log(logLevel, "File reference '" + fileReference + "' not found for " + connection.getAddress());
-                connectionPool.setNewCurrentConnection();
+                pool.setNewCurrentConnection();
                 return false;
             }
         } else {
             log.log(logLevel, "Request failed. Req: " + request + "\nSpec: " + connection.getAddress() +
                     ", error code: " + request.errorCode() + ", set error for connection and use another for next request");
-            connectionPool.setError(connection, request.errorCode());
+            pool.setError(connection, request.errorCode());
             return false;
         }
     }
@@ -181,6 +288,7 @@ public class FileReferenceDownloader {
     void setDownloadStatus(FileReference fileReference, double completeness) {
         synchronized (downloads) {
             downloadStatus.put(fileReference, completeness);
+            downloads.notifyAll();
         }
     }
 
@@ -0,0 +1,164 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Sends a file reference to a target which has asked for it, using the receiveFile* methods
+ * of {@link FileReceiver}. Used both by config servers and by nodes serving file references to their peers.
+ *
+ * @author agent
+ */
+public class FileReferenceSender {
+
+    private final static Logger log = Logger.getLogger(FileReferenceSender.class.getName());
+    private static final int partSize = 0x100000;
+    private static final int partsInFlight = 8;
+
+    private final Target target;
+
+    public FileReferenceSender(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * Returns the data to send for a file reference, where file is the single file or directory in the
+     * directory of the file reference. A directory is sent as a compressed archive.
+     */
+    public static FileReferenceData readFileReferenceData(FileReference reference, File file) throws IOException {
+        if (file.isDirectory()) {
+            //TODO Here we should compress to file, but then we have to clean up too. Pending.
+            byte [] blob = CompressedFileReference.compress(file.getParentFile());
+            return new FileReferenceDataBlob(reference, file.getName(), FileReferenceData.Type.compressed, blob);
+        } else {
+            return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.file, file);
+        }
+    }
+
+    /** Sends the given file data, followed by the given status, to the target */
+    public void send(FileReferenceData fileData, int statusCode, String statusDescription) {
+        int session = sendMeta(fileData);
+        sendParts(session, fileData);
+        sendEof(session, fileData, statusCode, statusDescription);
+    }
+
+    @Override
+    public String toString() {
+        return target.toString();
+    }
+
+    /**
+     * Sends parts asynchronously, keeping up to {@link #partsInFlight} parts in flight. Parts are
+     * delivered in order, as they are sent on the same connection and handled by the transport thread
+     * at the receiver. Buffers are reused once the receiver has acked the part they were sent in.
+     */
+    private void sendParts(int session, FileReferenceData fileData) {
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(partsInFlight);
+        for (int i = 0; i < partsInFlight; i++)
+            buffers.add(new byte[partSize]);
+        AtomicReference<String> error = new AtomicReference<>();
+        try {
+            for (int partId = 0; error.get() == null; partId++) {
+                byte[] buf = buffers.take();
+                ByteBuffer bb = ByteBuffer.wrap(buf);
+                int read = fileData.nextContent(bb);
+                if (read < 0) {
+                    buffers.add(buf);
+                    break;
+                }
+                byte[] part = (bb.position() == buf.length) ? buf : Arrays.copyOf(buf, bb.position());
+                sendPart(session, fileData.fileReference(), partId, part, () -> buffers.add(buf), error);
+            }
+            // Wait for all parts in flight to be acked
+            for (int i = 0; i < partsInFlight; i++)
+                buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending reference '" + fileData.fileReference().value() + "' to " + target);
+        }
+        if (error.get() != null)
+            throw new IllegalArgumentException(error.get());
+    }
+
+    private int sendMeta(FileReferenceData fileData) {
+        Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new StringValue(fileData.filename()));
+        request.parameters().add(new StringValue(fileData.type().name()));
+        request.parameters().add(new Int64Value(fileData.size()));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            log.warning("Failed delivering meta for reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
+                    target.toString() + " with error: '" + request.errorMessage() + "'.");
+            return 1;
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+            return request.returnValues().get(1).asInt32();
+        }
+    }
+
+    private void sendPart(int session, FileReference ref, int partId, byte [] buf, Runnable onDone, AtomicReference<String> error) {
+        Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
+        request.parameters().add(new StringValue(ref.value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int32Value(partId));
+        request.parameters().add(new DataValue(buf));
+        if ( ! target.isValid()) {
+            onDone.run();
+            throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
+        }
+        target.invokeAsync(request, 600, done -> {
+            if (done.isError()) {
+                error.compareAndSet(null, "Failed delivering reference '" + ref.value() + "' to " +
+                                          target.toString() + " with error: '" + done.errorMessage() + "'.");
+            } else if (done.returnValues().get(0).asInt32() != 0) {
+                error.compareAndSet(null, "Unknown error from target '" + target.toString() + "' during rpc call " + done.methodName());
+            }
+            onDone.run();
+        });
+    }
+
+    private void sendEof(int session, FileReferenceData fileData, int statusCode, String statusDescription) {
+        Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int64Value(fileData.xxhash()));
+        request.parameters().add(new Int32Value(statusCode));
+        request.parameters().add(new StringValue(statusDescription));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            throw new IllegalArgumentException("Failed delivering reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
+                                                       target.toString() + " with error: '" + request.errorMessage() + "'.");
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+        }
+    }
+
+    private void invokeRpcIfValidConnection(Request request) {
+        if (target.isValid()) {
+            target.invokeSync(request, 600);
+        } else {
+            throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
+        }
+    }
+
+}
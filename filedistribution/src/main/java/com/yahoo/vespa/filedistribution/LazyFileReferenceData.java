@@ -8,17 +8,15 @@ import net.jpountz.xxhash.XXHashFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class LazyFileReferenceData extends FileReferenceData {
-    private final File file;
-    private final ReadableByteChannel channel;
+    private final FileChannel channel;
     private final StreamingXXHash64 hasher;
     public LazyFileReferenceData(FileReference fileReference, String filename, Type type, File file) throws IOException {
         super(fileReference, filename, type);
-        this.file = file;
-        channel = Files.newByteChannel(file.toPath());
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
         this.hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
     }
 
@@ -45,7 +43,7 @@ public class LazyFileReferenceData extends FileReferenceData {
     @Override
     public long size() {
         try {
-            return Files.size(file.toPath());
+            return channel.size();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,94 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Acceptor;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.vespa.config.JRTConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests serving downloaded file references to peers
+ *
+ * @author agent
+ */
+public class FileDistributionRpcServerTest {
+
+    // No config server is listening here, so files can only be downloaded from peers
+    private static final String configServer = "tcp/localhost:1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JRTConnectionPool servingConfigServers;
+    private Acceptor acceptor;
+    private JRTConnectionPool configServers;
+    private JRTConnectionPool peers;
+
+    @Before
+    public void setup() throws IOException, ListenFailedException {
+        File servingDownloadDir = temporaryFolder.newFolder("serving");
+        File fileReferenceDir = new File(servingDownloadDir, "foo");
+        assertTrue(fileReferenceDir.mkdir());
+        IOUtils.writeFile(new File(fileReferenceDir, "foo.jar"), "content", false);
+
+        servingConfigServers = new JRTConnectionPool(Collections.singletonList(configServer));
+        FileDownloader servingDownloader = new FileDownloader(servingConfigServers, servingDownloadDir,
+                                                              temporaryFolder.newFolder("servingtmp"),
+                                                              Duration.ofSeconds(1), Duration.ofMillis(100));
+        new FileDistributionRpcServer(servingConfigServers.getSupervisor(), servingDownloader);
+        acceptor = servingConfigServers.getSupervisor().listen(new Spec(0));
+
+        configServers = new JRTConnectionPool(Collections.singletonList(configServer));
+        peers = new JRTConnectionPool(Collections.singletonList("tcp/localhost:" + acceptor.port()));
+    }
+
+    @After
+    public void shutdown() {
+        peers.close();
+        configServers.close();
+        acceptor.shutdown().join();
+        servingConfigServers.close();
+    }
+
+    @Test
+    public void downloadedFileReferenceIsServedToPeers() throws IOException {
+        FileDownloader downloader = new FileDownloader(configServers, Optional.of(peers),
+                                                       temporaryFolder.newFolder("download"),
+                                                       temporaryFolder.newFolder("tmp"),
+                                                       Duration.ofSeconds(10), Duration.ofMillis(100));
+        Optional<File> file = downloader.getFile(new FileReference("foo"));
+        assertTrue(file.isPresent());
+        assertEquals("foo.jar", file.get().getName());
+        assertEquals("content", IOUtils.readFile(file.get()));
+    }
+
+    @Test
+    public void fileReferenceWhichIsNotDownloadedIsNotServed() {
+        Request request = new Request("filedistribution.serveFile");
+        request.parameters().add(new StringValue("bar"));
+        request.parameters().add(new Int32Value(0));
+        peers.getCurrent().invokeSync(request, 10);
+        assertTrue(request.errorMessage(), ! request.isError());
+        assertEquals(1, request.returnValues().get(0).asInt32());
+    }
+
+}
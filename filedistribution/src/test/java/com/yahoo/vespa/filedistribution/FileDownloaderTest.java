@@ -25,7 +25,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.yahoo.jrt.ErrorCode.CONNECTION;
 import static org.junit.Assert.assertEquals;
@@ -198,6 +200,67 @@ public class FileDownloaderTest {
         assertFalse(fileDownloader.downloadIfNeeded(new FileReferenceDownload(foo)));
     }
 
+    @Test
+    public void getFileFromPeerBeforeConfigServer() throws InterruptedException {
+        MockConnection.CountingResponseHandler peerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.UnknownFileReferenceResponseHandler());
+        MockConnection.CountingResponseHandler configServerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.FileReferenceFoundResponseHandler());
+        MockConnection peers = new MockConnection(peerHandler);
+        connection.setResponseHandler(configServerHandler);
+        FileDownloader fileDownloader = new FileDownloader(connection, Optional.of(peers), downloadDir, tempDir,
+                                                           Duration.ofSeconds(2), Duration.ofMillis(100));
+
+        // Peer does not have the file reference, so it is requested from a config server
+        assertTrue(fileDownloader.downloadIfNeeded(new FileReferenceDownload(new FileReference("foo"))));
+        waitUntilRequested(configServerHandler, 1);
+        assertEquals(1, peerHandler.requests());
+
+        // Peer has the file reference, so config servers are not asked
+        peerHandler.setDelegate(new MockConnection.FileReferenceFoundResponseHandler());
+        assertTrue(fileDownloader.downloadIfNeeded(new FileReferenceDownload(new FileReference("bar"))));
+        waitUntilRequested(peerHandler, 2);
+        assertEquals(1, configServerHandler.requests());
+    }
+
+    @Test
+    public void getFileFromNextPeerWhenFirstPeerFails() throws InterruptedException {
+        MockConnection.CountingResponseHandler failingPeerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.ConnectionErrorResponseHandler(Integer.MAX_VALUE));
+        MockConnection.CountingResponseHandler peerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.FileReferenceFoundResponseHandler());
+        MockConnection.CountingResponseHandler configServerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.FileReferenceFoundResponseHandler());
+        connection.setResponseHandler(configServerHandler);
+        MockPeers peers = new MockPeers(new MockConnection(failingPeerHandler), new MockConnection(peerHandler));
+        // Retries are never reached, so the second peer must be asked in the same attempt as the first
+        FileDownloader fileDownloader = new FileDownloader(connection, Optional.of(peers), downloadDir, tempDir,
+                                                           Duration.ofSeconds(10), Duration.ofMinutes(10));
+
+        assertTrue(fileDownloader.downloadIfNeeded(new FileReferenceDownload(new FileReference("foo"))));
+        waitUntilRequested(peerHandler, 1);
+        assertEquals(1, failingPeerHandler.requests());
+        assertEquals(0, configServerHandler.requests());
+    }
+
+    @Test
+    public void getFileFromNextPeerWhenTransferFromFirstPeerFails() throws InterruptedException {
+        MockConnection.CountingResponseHandler firstPeerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.FileReferenceFoundResponseHandler());
+        MockConnection.CountingResponseHandler secondPeerHandler =
+                new MockConnection.CountingResponseHandler(new MockConnection.FileReferenceFoundResponseHandler());
+        MockPeers peers = new MockPeers(new MockConnection(firstPeerHandler), new MockConnection(secondPeerHandler));
+        FileDownloader fileDownloader = new FileDownloader(connection, Optional.of(peers), downloadDir, tempDir,
+                                                           Duration.ofSeconds(10), Duration.ofMinutes(10));
+        FileReference foo = new FileReference("foo");
+
+        assertTrue(fileDownloader.downloadIfNeeded(new FileReferenceDownload(foo)));
+        waitUntilRequested(firstPeerHandler, 1);
+        fileDownloader.fileReferenceDownloader().failedTransfer(foo);
+        waitUntilRequested(secondPeerHandler, 1);
+        assertEquals(1, firstPeerHandler.requests());
+    }
+
     @Test
     public void receiveFile() throws IOException {
         FileReference foo = new FileReference("foo");
@@ -207,6 +270,13 @@ public class FileDownloaderTest {
         assertEquals("content", IOUtils.readFile(downloadedFile));
     }
 
+    private static void waitUntilRequested(MockConnection.CountingResponseHandler handler, int requests) throws InterruptedException {
+        long end = System.currentTimeMillis() + 60_000;
+        while (handler.requests() < requests && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(requests, handler.requests());
+    }
+
     private void writeFileReference(File dir, String fileReferenceString, String fileName) throws IOException {
         File fileReferenceDir = new File(dir, fileReferenceString);
         fileReferenceDir.mkdir();
@@ -235,6 +305,49 @@ public class FileDownloaderTest {
         session.close(hasher.hash(ByteBuffer.wrap(content), 0));
     }
 
+    /** A pool of mock peers, where a new current connection is the next peer in the list */
+    private static class MockPeers implements ConnectionPool {
+
+        private final List<MockConnection> peers;
+        private int current = 0;
+
+        MockPeers(MockConnection ... peers) {
+            this.peers = Arrays.asList(peers);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public synchronized void setError(Connection connection, int errorCode) {
+            connection.setError(errorCode);
+            setNewCurrentConnection();
+        }
+
+        @Override
+        public synchronized Connection getCurrent() {
+            return peers.get(current);
+        }
+
+        @Override
+        public synchronized Connection setNewCurrentConnection() {
+            current = (current + 1) % peers.size();
+            return getCurrent();
+        }
+
+        @Override
+        public int getSize() {
+            return peers.size();
+        }
+
+        @Override
+        public Supervisor getSupervisor() {
+            return new Supervisor(new Transport());
+        }
+
+    }
+
     private static class MockConnection implements ConnectionPool, com.yahoo.vespa.config.Connection {
 
         private ResponseHandler responseHandler;
@@ -329,6 +442,30 @@ public class FileDownloaderTest {
             }
         }
 
+        static class CountingResponseHandler implements MockConnection.ResponseHandler {
+
+            private volatile ResponseHandler delegate;
+            private final AtomicInteger requests = new AtomicInteger();
+
+            CountingResponseHandler(ResponseHandler delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void request(Request request) {
+                delegate.request(request);
+                requests.incrementAndGet();
+            }
+
+            void setDelegate(ResponseHandler delegate) {
+                this.delegate = delegate;
+            }
+
+            int requests() {
+                return requests.get();
+            }
+        }
+
         static class WaitResponseHandler implements MockConnection.ResponseHandler {
 
             private final Duration waitUntilAnswering;
@@ -3,7 +3,15 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Transport;
 import com.yahoo.text.Utf8;
+import com.yahoo.vespa.config.JRTConnectionPool;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
 import org.junit.Before;
@@ -12,12 +20,15 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collections;
 
 public class FileReceiverTest {
     private File root;
@@ -66,6 +77,97 @@ public class FileReceiverTest {
         assertEquals("2", IOUtils.readFile(new File(downloadDir, "b")));
     }
 
+    @Test
+    public void inprogressFileIsDeletedWhenReceivingFails() {
+        byte[] data = Utf8.toBytes("content");
+        FileReceiver.Session session = new FileReceiver.Session(root, tempDir, 1, new FileReference("ref"),
+                                                                FileReferenceData.Type.file, "a", data.length);
+        assertEquals(1, tempDir.list().length);
+        try {
+            session.addPart(1, data);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Received partid 1 while expecting 0", e.getMessage());
+        }
+        assertEquals(0, tempDir.list().length);
+
+        session = new FileReceiver.Session(root, tempDir, 2, new FileReference("ref"),
+                                           FileReferenceData.Type.file, "a", data.length);
+        session.addPart(0, data);
+        try {
+            session.close(hasher.hash(ByteBuffer.wrap(data), 0) + 1);
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void sessionsAreAbortedWhenReplacedOrFailing() throws IOException {
+        JRTConnectionPool connectionPool = new JRTConnectionPool(Collections.singletonList("tcp/localhost:1"));
+        Supervisor supervisor = new Supervisor(new Transport());
+        try {
+            FileReceiver receiver = new FileReceiver(supervisor, downloader(connectionPool), root, tempDir, Duration.ofDays(1));
+            byte[] data = Utf8.toBytes("content");
+            int first = startSession(receiver, "ref", data.length);
+            int second = startSession(receiver, "ref", data.length);
+            assertEquals("The replaced session is aborted", 1, tempDir.list().length);
+            assertEquals(1, sendPart(receiver, "ref", first, 0, data));
+            assertEquals(0, sendPart(receiver, "ref", second, 0, data));
+
+            assertEquals(1, sendPart(receiver, "ref", second, 0, data));
+            assertEquals("The failed session is aborted", 0, tempDir.list().length);
+            assertEquals(1, sendPart(receiver, "ref", second, 1, data));
+        } finally {
+            supervisor.transport().shutdown().join();
+            connectionPool.close();
+        }
+    }
+
+    @Test
+    public void timedOutSessionsAreAbortedWhenANewSessionStarts() throws IOException {
+        JRTConnectionPool connectionPool = new JRTConnectionPool(Collections.singletonList("tcp/localhost:1"));
+        Supervisor supervisor = new Supervisor(new Transport());
+        try {
+            FileReceiver receiver = new FileReceiver(supervisor, downloader(connectionPool), root, tempDir, Duration.ZERO);
+            byte[] data = Utf8.toBytes("content");
+            int first = startSession(receiver, "ref-a", data.length);
+            startSession(receiver, "ref-b", data.length);
+            assertEquals(1, tempDir.list().length);
+            assertEquals(1, sendPart(receiver, "ref-a", first, 0, data));
+        } finally {
+            supervisor.transport().shutdown().join();
+            connectionPool.close();
+        }
+    }
+
+    private FileReferenceDownloader downloader(JRTConnectionPool connectionPool) throws IOException {
+        return new FileReferenceDownloader(temporaryFolder.newFolder(), temporaryFolder.newFolder(), connectionPool,
+                                           Duration.ofSeconds(1), Duration.ofMillis(100));
+    }
+
+    private static int startSession(FileReceiver receiver, String reference, long fileSize) {
+        Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new StringValue("a"));
+        request.parameters().add(new StringValue(FileReferenceData.Type.file.name()));
+        request.parameters().add(new Int64Value(fileSize));
+        receiver.receiveFileMeta(request);
+        assertEquals(0, request.returnValues().get(0).asInt32());
+        return request.returnValues().get(1).asInt32();
+    }
+
+    private static int sendPart(FileReceiver receiver, String reference, int sessionId, int partId, byte[] part) {
+        Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new Int32Value(sessionId));
+        request.parameters().add(new Int32Value(partId));
+        request.parameters().add(new DataValue(part));
+        receiver.receiveFilePart(request);
+        return request.returnValues().get(0).asInt32();
+    }
+
     private void transferPartsAndAssert(FileReference ref, String fileName, String all, int numParts) throws IOException {
         byte [] allContent = Utf8.toBytes(all);
 
@@ -0,0 +1,311 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.PrimitiveDataType;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.vespa.indexinglanguage.ExpressionConverter;
+import com.yahoo.vespa.indexinglanguage.ExpressionVisitor;
+import com.yahoo.vespa.objects.ObjectOperation;
+import com.yahoo.vespa.objects.ObjectPredicate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * An expression compiled once to be executed on many documents. Compiling
+ * <ul>
+ *     <li>folds constant sub-expressions, such as <code>"a" . "b" | lowercase</code>, into values,</li>
+ *     <li>resolves input field names to field paths of the document type,</li>
+ *     <li>holds variables in slots of the execution context rather than by name, and</li>
+ *     <li>flattens scripts and their statements into arrays of steps, with the type checks of each
+ *         statement resolved in advance.</li>
+ * </ul>
+ * Other composite expressions, such as if, switch and for_each, are steps which are interpreted as usual.
+ * Executing a compiled expression has the same effect as executing the expression it is compiled from.
+ *
+ * @author agent
+ */
+public final class CompiledExpression extends Expression {
+
+    private final Expression expression;
+    private final String[] variables;
+    private final Statement[] statements;
+    private final boolean isScript;
+
+    private CompiledExpression(Expression expression) {
+        super(expression.requiredInputType());
+        this.expression = expression;
+        this.variables = variablesIn(expression);
+        this.isScript = expression instanceof ScriptExpression;
+        if (isScript) {
+            List<Statement> statements = new ArrayList<>();
+            for (StatementExpression statement : (ScriptExpression)expression) {
+                statements.add(new Statement(statement, steps(statement)));
+            }
+            this.statements = statements.toArray(new Statement[0]);
+        } else {
+            // the type checks of the expression itself are done when executing this
+            this.statements = new Statement[] { new Statement(null, steps(expression)) };
+        }
+    }
+
+    /** Returns the expression this executes, with constant sub-expressions folded */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    @Override
+    protected void doExecute(ExecutionContext context) {
+        if ( ! context.hasVariableSlots(variables)) {
+            context.setVariableSlots(variables);
+        }
+        FieldValue input = context.getValue();
+        for (Statement statement : statements) {
+            if (isScript) {
+                context.setValue(input);
+            }
+            statement.execute(context);
+        }
+        if (isScript) {
+            context.setValue(input);
+        }
+    }
+
+    @Override
+    protected void doVerify(VerificationContext context) {
+        expression.verify(context);
+    }
+
+    @Override
+    public DataType createdOutputType() {
+        return expression.createdOutputType();
+    }
+
+    @Override
+    public void selectMembers(ObjectPredicate predicate, ObjectOperation operation) {
+        expression.select(predicate, operation);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompiledExpression)) {
+            return false;
+        }
+        return expression.equals(((CompiledExpression)obj).expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode() + expression.hashCode();
+    }
+
+    /** Compiles the given expression */
+    public static CompiledExpression compile(Expression expression) {
+        return new CompiledExpression(new ConstantFolder().convert(expression));
+    }
+
+    /** Compiles the given expression for execution on documents of the given type */
+    public static CompiledExpression compile(Expression expression, DocumentType documentType) {
+        InputExpression.FieldPathOptimizer fieldPathOptimizer = new InputExpression.FieldPathOptimizer(documentType);
+        expression.select(fieldPathOptimizer, fieldPathOptimizer);
+        return compile(expression);
+    }
+
+    private List<Consumer<ExecutionContext>> steps(Expression expression) {
+        List<Consumer<ExecutionContext>> steps = new ArrayList<>();
+        if (expression instanceof StatementExpression) {
+            for (Expression exp : (StatementExpression)expression) {
+                steps.add(step(exp));
+            }
+        } else {
+            steps.add(step(expression));
+        }
+        return steps;
+    }
+
+    private Consumer<ExecutionContext> step(Expression exp) {
+        if (exp instanceof GetVarExpression) {
+            int slot = slotOf(((GetVarExpression)exp).getVariableName());
+            return context -> context.setValue(context.getVariable(slot));
+        }
+        if (exp instanceof SetVarExpression) {
+            int slot = slotOf(((SetVarExpression)exp).getVariableName());
+            return context -> {
+                if (context.getValue() != null) {
+                    context.setVariable(slot, context.getValue());
+                }
+            };
+        }
+        if (exp instanceof SetValueExpression) {
+            FieldValue value = ((SetValueExpression)exp).getValue();
+            return context -> context.setValue(value);
+        }
+        return exp::execute;
+    }
+
+    private int slotOf(String variable) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Variable '" + variable + "' has no slot");
+    }
+
+    private static String[] variablesIn(Expression expression) {
+        Set<String> variables = new LinkedHashSet<>();
+        new ExpressionVisitor() {
+            @Override
+            protected void doVisit(Expression exp) {
+                if (exp instanceof GetVarExpression) {
+                    variables.add(((GetVarExpression)exp).getVariableName());
+                } else if (exp instanceof SetVarExpression) {
+                    variables.add(((SetVarExpression)exp).getVariableName());
+                }
+            }
+        }.visit(expression);
+        return variables.toArray(new String[0]);
+    }
+
+    /** A statement of a compiled script, as an array of steps */
+    private static class Statement {
+
+        /** The statement to check input and output types against, or null if the types are checked elsewhere */
+        private final Expression statement;
+        private final DataType inputType;
+        private final DataType outputType;
+        private final Consumer<ExecutionContext>[] steps;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Statement(Expression statement, List<Consumer<ExecutionContext>> steps) {
+            this.statement = statement;
+            this.inputType = statement != null ? statement.requiredInputType() : null;
+            this.outputType = statement != null ? statement.createdOutputType() : null;
+            this.steps = steps.toArray(new Consumer[0]);
+        }
+
+        void execute(ExecutionContext context) {
+            if ( ! hasInput(statement, inputType, context)) {
+                return;
+            }
+            for (Consumer<ExecutionContext> step : steps) {
+                step.accept(context);
+            }
+            checkOutput(statement, outputType, context);
+        }
+
+    }
+
+    /**
+     * Replaces constant sub-expressions by their values. Only primitive values are folded,
+     * as collections are mutable and the value is shared by all executions.
+     */
+    private static class ConstantFolder extends ExpressionConverter {
+
+        /** Expressions whose output depend on their input only */
+        private static final Set<Class<? extends Expression>> functions =
+                Set.of(Base64DecodeExpression.class, Base64EncodeExpression.class,
+                       HexDecodeExpression.class, HexEncodeExpression.class,
+                       LowerCaseExpression.class, SubstringExpression.class, ThisExpression.class,
+                       ToByteExpression.class, ToDoubleExpression.class, ToFloatExpression.class,
+                       ToIntegerExpression.class, ToLongExpression.class, ToStringExpression.class,
+                       TrimExpression.class, ZCurveExpression.class);
+
+        @Override
+        protected boolean shouldConvert(Expression exp) {
+            return exp instanceof StatementExpression ||
+                   exp instanceof ArithmeticExpression ||
+                   exp instanceof CatExpression ||
+                   exp instanceof ParenthesisExpression;
+        }
+
+        @Override
+        protected Expression doConvert(Expression exp) {
+            if (exp instanceof StatementExpression) {
+                return convertStatement((StatementExpression)exp);
+            }
+            if (exp instanceof ArithmeticExpression) {
+                ArithmeticExpression arithmetic = (ArithmeticExpression)innerConvert((ArithmeticExpression)exp);
+                return isConstant(arithmetic.getLeftHandSide()) && isConstant(arithmetic.getRightHandSide())
+                       ? fold(arithmetic) : arithmetic;
+            }
+            if (exp instanceof CatExpression) {
+                CatExpression cat = (CatExpression)innerConvert((CatExpression)exp);
+                for (Expression operand : cat) {
+                    if ( ! isConstant(operand)) {
+                        return cat;
+                    }
+                }
+                return fold(cat);
+            }
+            ParenthesisExpression parenthesis = (ParenthesisExpression)innerConvert((ParenthesisExpression)exp);
+            return isConstant(parenthesis.getInnerExpression()) ? fold(parenthesis) : parenthesis;
+        }
+
+        /** Folds each constant followed by functions of their input in the given statement */
+        private Expression convertStatement(StatementExpression statement) {
+            List<Expression> converted = new ArrayList<>();
+            List<Expression> constant = new ArrayList<>();
+            for (Expression exp : statement) {
+                Expression next = convert(exp);
+                if (next == null) {
+                    continue;
+                }
+                if (isConstant(next)) {
+                    foldInto(converted, constant);
+                    constant.add(next);
+                } else if ( ! constant.isEmpty() && functions.contains(next.getClass())) {
+                    constant.add(next);
+                } else {
+                    foldInto(converted, constant);
+                    converted.add(next);
+                }
+            }
+            foldInto(converted, constant);
+            return new StatementExpression(converted);
+        }
+
+        private static void foldInto(List<Expression> converted, List<Expression> constant) {
+            if (constant.size() > 1) {
+                converted.add(fold(new StatementExpression(constant)));
+            } else {
+                converted.addAll(constant);
+            }
+            constant.clear();
+        }
+
+        private static boolean isConstant(Expression exp) {
+            if (exp instanceof StatementExpression) {
+                StatementExpression statement = (StatementExpression)exp;
+                return statement.size() == 1 && isConstant(statement.get(0));
+            }
+            return exp instanceof SetValueExpression;
+        }
+
+        /** Returns the given expression as a constant value, or the expression itself if it can not be folded */
+        private static Expression fold(Expression exp) {
+            FieldValue value;
+            try {
+                value = exp.execute(new ExecutionContext());
+            } catch (RuntimeException e) {
+                return exp; // fail when executed on a document, as before folding
+            }
+            if (value == null || ! (value.getDataType() instanceof PrimitiveDataType)) {
+                return exp;
+            }
+            return new SetValueExpression(value);
+        }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import com.yahoo.language.Language;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.detect.Detection;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,6 +18,8 @@ import java.util.Map;
 public class ExecutionContext implements FieldTypeAdapter, FieldValueAdapter, Cloneable {
 
     private final Map<String, FieldValue> variables = new HashMap<>();
+    private String[] slotNames = null;
+    private FieldValue[] slotValues = null;
     private final FieldValueAdapter adapter;
     private FieldValue value;
     private Language language;
@@ -77,14 +80,70 @@ public class ExecutionContext implements FieldTypeAdapter, FieldValueAdapter, Cl
     }
 
     public FieldValue getVariable(String name) {
-        return variables.get(name);
+        int slot = slotOf(name);
+        return slot < 0 ? variables.get(name) : slotValues[slot];
     }
 
     public ExecutionContext setVariable(String name, FieldValue value) {
-        variables.put(name, value);
+        int slot = slotOf(name);
+        if (slot < 0) {
+            variables.put(name, value);
+        } else {
+            slotValues[slot] = value;
+        }
+        return this;
+    }
+
+    /** Returns the value of the variable in the given slot, see {@link #setVariableSlots} */
+    FieldValue getVariable(int slot) {
+        return slotValues[slot];
+    }
+
+    /** Sets the value of the variable in the given slot, see {@link #setVariableSlots} */
+    ExecutionContext setVariable(int slot, FieldValue value) {
+        slotValues[slot] = value;
         return this;
     }
 
+    /** Returns whether the variables of this are held in slots given by the given names */
+    boolean hasVariableSlots(String[] names) {
+        return slotNames == names;
+    }
+
+    /**
+     * Holds the variables with the given names in slots given by their index in the array,
+     * such that they can be accessed without looking up the name. Values already set are kept.
+     */
+    ExecutionContext setVariableSlots(String[] names) {
+        FieldValue[] values = new FieldValue[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = getVariable(names[i]);
+        }
+        for (int i = 0; slotNames != null && i < slotNames.length; i++) {
+            if (slotValues[i] != null) {
+                variables.put(slotNames[i], slotValues[i]);
+            }
+        }
+        for (String name : names) {
+            variables.remove(name);
+        }
+        slotNames = names;
+        slotValues = values;
+        return this;
+    }
+
+    private int slotOf(String name) {
+        if (slotNames == null) {
+            return -1;
+        }
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public Language getLanguage() {
         return language;
     }
@@ -124,6 +183,9 @@ public class ExecutionContext implements FieldTypeAdapter, FieldValueAdapter, Cl
 
     public ExecutionContext clear() {
         variables.clear();
+        if (slotValues != null) {
+            Arrays.fill(slotValues, null);
+        }
         value = null;
         return this;
     }
@@ -64,27 +64,47 @@ public abstract class Expression extends Selectable {
     }
 
     public final FieldValue execute(ExecutionContext context) {
-        DataType inputType = requiredInputType();
-        if (inputType != null) {
-            FieldValue input = context.getValue();
-            if (input == null) {
-                return null;
-            }
-            if (!inputType.isValueCompatible(input)) {
-                throw new IllegalArgumentException("Expression '" + this + "' expected " + inputType.getName() +
-                                                   " input, got " + input.getDataType().getName() + ".");
-            }
+        if ( ! hasInput(this, requiredInputType(), context)) {
+            return null;
         }
         doExecute(context);
-        DataType outputType = createdOutputType();
+        checkOutput(this, createdOutputType(), context);
+        return context.getValue();
+    }
+
+    /**
+     * Returns whether the given context has a value the given expression can execute on.
+     *
+     * @throws IllegalArgumentException if the value of the context is not compatible with the given input type
+     */
+    static boolean hasInput(Expression exp, DataType inputType, ExecutionContext context) {
+        if (inputType == null) {
+            return true;
+        }
+        FieldValue input = context.getValue();
+        if (input == null) {
+            return false;
+        }
+        if (!inputType.isValueCompatible(input)) {
+            throw new IllegalArgumentException("Expression '" + exp + "' expected " + inputType.getName() +
+                                               " input, got " + input.getDataType().getName() + ".");
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the value of the given context is compatible with the given output type.
+     *
+     * @throws IllegalStateException if it is not
+     */
+    static void checkOutput(Expression exp, DataType outputType, ExecutionContext context) {
         if (outputType != null) {
             FieldValue output = context.getValue();
             if (output != null && !outputType.isValueCompatible(output)) {
-                throw new IllegalStateException("Expression '" + this + "' expected " + outputType.getName() +
+                throw new IllegalStateException("Expression '" + exp + "' expected " + outputType.getName() +
                                                 " output, got " + output.getDataType().getName() + ".");
             }
         }
-        return context.getValue();
     }
 
     protected abstract void doExecute(ExecutionContext ctx);
@@ -3,9 +3,7 @@ package com.yahoo.vespa.indexinglanguage.linguistics;
 
 import com.yahoo.document.annotation.Annotation;
 import com.yahoo.document.annotation.AnnotationTypes;
-import com.yahoo.document.annotation.Span;
-import com.yahoo.document.annotation.SpanList;
-import com.yahoo.document.annotation.SpanTree;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.SpanTrees;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.language.Linguistics;
@@ -66,19 +64,17 @@ public class LinguisticsAnnotator {
      * @return whether or not anything was annotated
      */
     public boolean annotate(StringFieldValue text) {
-        if (text.getSpanTree(SpanTrees.LINGUISTICS) != null) return true;  // Already annotated with LINGUISTICS.
+        if (text.hasSpanTree(SpanTrees.LINGUISTICS)) return true;  // Already annotated with LINGUISTICS.
 
         Tokenizer tokenizer = factory.getTokenizer();
         String input = (text.getString().length() <=  config.getMaxTokenizeLength())
                 ? text.getString()
                 : text.getString().substring(0, config.getMaxTokenizeLength());
-        Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
-                                                    config.getRemoveAccents());
         TermOccurrences termOccurrences = new TermOccurrences(config.getMaxTermOccurrences());
-        SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
-        for (Token token : tokens) {
-            addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
-        }
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS);
+        tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(), config.getRemoveAccents(),
+                           token -> addAnnotationSpan(text.getString(), tree, tokenizer, token,
+                                                      config.getStemMode(), termOccurrences));
 
         if (tree.numAnnotations() == 0) return false;
         text.setSpanTree(tree);
@@ -101,17 +97,27 @@ public class LinguisticsAnnotator {
         return new Annotation(AnnotationTypes.TERM, new StringFieldValue(annotationValue));
     }
 
-    private static void addAnnotation(Span here, String term, String orig, TermOccurrences termOccurrences) {
+    /** Adds a TERM annotation to the given span, which has the lowercase term as value only if it differs from the original */
+    private static void addLowerCaseTermAnnotation(CompactSpanTree tree, int span, String term, String orig) {
+        String annotationValue = toLowerCase(term);
+        if (annotationValue.equals(orig)) {
+            tree.annotate(span, AnnotationTypes.TERM);
+        } else {
+            tree.annotate(span, AnnotationTypes.TERM, annotationValue);
+        }
+    }
+
+    private static void addAnnotation(CompactSpanTree tree, int span, String term, String orig, TermOccurrences termOccurrences) {
         if (termOccurrences.termCountBelowLimit(term)) {
-            here.annotate(lowerCaseTermAnnotation(term, orig));
+            addLowerCaseTermAnnotation(tree, span, term, orig);
         }
     }
 
-    private static void addAnnotationSpan(String input, SpanList parent, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
+    private static void addAnnotationSpan(String input, CompactSpanTree tree, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
         if ( ! token.isSpecialToken()) {
             if (token.getNumComponents() > 0) {
                 for (int i = 0; i < token.getNumComponents(); ++i) {
-                    addAnnotationSpan(input, parent, tokenizer, token.getComponent(i), mode, termOccurrences);
+                    addAnnotationSpan(input, tree, tokenizer, token.getComponent(i), mode, termOccurrences);
                 }
                 return;
             }
@@ -131,9 +137,9 @@ public class LinguisticsAnnotator {
                                                "the bounds of the input string; " + input);
         }
         if (mode == StemMode.ALL) {
-            Span where = parent.span(pos, len);
+            int where = tree.span(pos, len);
             String lowercasedOrig = toLowerCase(orig);
-            addAnnotation(where, orig, orig, termOccurrences);
+            addAnnotation(tree, where, orig, orig, termOccurrences);
 
             String lowercasedTerm = lowercasedOrig;
             String term = token.getTokenString();
@@ -144,13 +150,13 @@ public class LinguisticsAnnotator {
                 lowercasedTerm = toLowerCase(term);
             }
             if (! lowercasedOrig.equals(lowercasedTerm)) {
-                addAnnotation(where, term, orig, termOccurrences);
+                addAnnotation(tree, where, term, orig, termOccurrences);
             }
             for (int i = 0; i < token.getNumStems(); i++) {
                 String stem = token.getStem(i);
                 String lowercasedStem = toLowerCase(stem);
                 if (! (lowercasedOrig.equals(lowercasedStem) || lowercasedTerm.equals(lowercasedStem))) {
-                    addAnnotation(where, stem, orig, termOccurrences);
+                    addAnnotation(tree, where, stem, orig, termOccurrences);
                 }
             }
         } else {
@@ -162,7 +168,7 @@ public class LinguisticsAnnotator {
                 return;
             }
             if (termOccurrences.termCountBelowLimit(term))  {
-                parent.span(pos, len).annotate(lowerCaseTermAnnotation(term, token.getOrig()));
+                addLowerCaseTermAnnotation(tree, tree.span(pos, len), term, token.getOrig());
             }
         }
     }
@@ -0,0 +1,62 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespa.indexinglanguage.SimpleTestAdapter;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+
+/**
+ * Executes an indexing script with the statements typically generated for attribute and summary fields,
+ * interpreted and compiled.
+ *
+ * @author agent
+ */
+public class CompiledExpressionMicroBenchmark {
+
+    private static final String script =
+            "{ input title | lowercase | summary title | attribute title_lc;" +
+            "  input title | trim | set_var trimmed;" +
+            "  get_var trimmed | summary title_trimmed;" +
+            "  \"prefix\" . \"-\" . \"suffix\" | lowercase | attribute label;" +
+            "  60 * 60 * 24 | to_string | attribute seconds_per_day;" +
+            "  input count | to_int | set_var count;" +
+            "  get_var count + 1 | to_string | attribute count_plus_one;" +
+            "  input count | if (input count == \"0\") { \"none\" | summary quantity; } else { \"some\" | summary quantity; };" +
+            "  input brand | lowercase | attribute brand; }";
+
+    private final SimpleTestAdapter adapter;
+
+    public CompiledExpressionMicroBenchmark() {
+        adapter = new SimpleTestAdapter();
+        for (String field : new String[] { "title", "count", "brand", "title_lc", "title_trimmed", "label",
+                                           "seconds_per_day", "count_plus_one", "quantity" })
+            adapter.createField(new Field(field, DataType.STRING));
+        adapter.setOutputValue(null, "title", new StringFieldValue(" The Title of a Document "));
+        adapter.setOutputValue(null, "count", new StringFieldValue("42"));
+        adapter.setOutputValue(null, "brand", new StringFieldValue("Brand"));
+    }
+
+    public void benchmark(String name, Expression expression, int executions) {
+        execute(expression, executions / 10 + 1); // warm-up
+        long startTime = System.nanoTime();
+        execute(expression, executions);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(String.format("%-20s %8.1f ns per execution", name, (double)totalTime / executions));
+    }
+
+    private void execute(Expression expression, int executions) {
+        for (int i = 0; i < executions; i++)
+            expression.execute(adapter);
+    }
+
+    public static void main(String[] args) throws ParseException {
+        CompiledExpressionMicroBenchmark benchmark = new CompiledExpressionMicroBenchmark();
+        ScriptExpression expression = ScriptExpression.fromString(script);
+        expression.verify(benchmark.adapter);
+        benchmark.benchmark("Interpreted", expression, 1000000);
+        benchmark.benchmark("Compiled", CompiledExpression.compile(expression), 1000000);
+    }
+
+}
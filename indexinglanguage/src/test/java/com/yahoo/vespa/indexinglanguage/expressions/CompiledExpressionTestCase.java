@@ -0,0 +1,104 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.vespa.indexinglanguage.SimpleTestAdapter;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class CompiledExpressionTestCase {
+
+    @Test
+    public void requireThatConstantsAreFolded() throws ParseException {
+        assertCompiled("\"ab\" | attribute out", "\"a\" . \"B\" | lowercase | attribute out");
+        assertCompiled("7 | attribute out", "1 + 2 * 3 | attribute out");
+        assertCompiled("9 | attribute out", "(1 + 2) * 3 | attribute out");
+        assertCompiled("input in | \"3\" | attribute out", "input in | 1 + 2 | to_string | attribute out");
+        assertCompiled("{ 42 | set_var tmp; get_var tmp | to_string | attribute out; }",
+                       "{ \"4\" . \"2\" | to_int | set_var tmp; get_var tmp | to_string | attribute out; }");
+        assertCompiled("if (input in < 2) { 3 | attribute out; }",
+                       "if (input in < 1 + 1) { 1 + 2 | attribute out; }");
+    }
+
+    @Test
+    public void requireThatExpressionsDependingOnMoreThanConstantsAreNotFolded() throws ParseException {
+        assertNotFolded("input in | lowercase | attribute out");
+        assertNotFolded("input in . \"a\" | attribute out");
+        assertNotFolded("input in + 1 | attribute out");
+        assertNotFolded("now + 1 | attribute out");
+        assertNotFolded("\"a;b\" | split ';' | attribute out");
+        assertNotFolded("\"a\" | set_var tmp | lowercase | attribute out");
+        assertNotFolded("\"foo\" | to_int | attribute out");
+    }
+
+    @Test
+    public void requireThatCompiledExpressionsHaveTheSameEffect() throws ParseException {
+        assertSameEffect("input in | lowercase | attribute out", "A B");
+        assertSameEffect("{ input in | lowercase | attribute out; input in | to_string | index other; }", "A B");
+        assertSameEffect("{ \"a\" . \"B\" | lowercase | attribute out; input in | trim | summary other; }", " A ");
+        assertSameEffect("{ 0 | set_var tmp; " +
+                         "  input in | split ';' | for_each { to_int + get_var tmp | set_var tmp };" +
+                         "  get_var tmp | to_string | attribute out; }", "1;2;3");
+        assertSameEffect("if (input in == \"A\") { \"yes\" | attribute out; } else { \"no\" | attribute out; }", "A");
+        assertSameEffect("if (input in == \"A\") { \"yes\" | attribute out; } else { \"no\" | attribute out; }", "B");
+        assertSameEffect("{ input missing | attribute out; \"x\" | summary other; }", "A");
+    }
+
+    @Test
+    public void requireThatVariablesAreAccessibleByName() throws ParseException {
+        ExecutionContext ctx = new ExecutionContext(new SimpleTestAdapter());
+        ctx.setVariable("in", new IntegerFieldValue(3));
+        CompiledExpression.compile(Expression.fromString("get_var in + 1 | set_var out")).execute(ctx);
+        assertEquals(new IntegerFieldValue(4), ctx.getVariable("out"));
+        assertEquals(new IntegerFieldValue(3), ctx.getVariable("in"));
+    }
+
+    @Test
+    public void requireThatInputIsTypeChecked() throws ParseException {
+        CompiledExpression compiled = CompiledExpression.compile(ScriptExpression.fromString("{ lowercase | attribute out; }"));
+        ExecutionContext ctx = new ExecutionContext(new SimpleTestAdapter());
+        assertNull(compiled.execute(ctx));
+        assertNull(ctx.getInputValue("out"));
+        try {
+            compiled.execute(ctx.setValue(new IntegerFieldValue(1)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Expression '{ lowercase | attribute out; }' expected string input, got int.", e.getMessage());
+        }
+    }
+
+    private static void assertCompiled(String expected, String expression) throws ParseException {
+        assertEquals(Expression.fromString(expected).toString(),
+                     CompiledExpression.compile(Expression.fromString(expression)).toString());
+    }
+
+    private static void assertNotFolded(String expression) throws ParseException {
+        assertCompiled(expression, expression);
+    }
+
+    private static void assertSameEffect(String script, String input) throws ParseException {
+        assertEquals(execute(Expression.fromString(script), input),
+                     execute(CompiledExpression.compile(Expression.fromString(script)), input));
+    }
+
+    private static String execute(Expression expression, String input) {
+        SimpleTestAdapter adapter = new SimpleTestAdapter(new Field("in", DataType.STRING),
+                                                          new Field("out", DataType.STRING),
+                                                          new Field("other", DataType.STRING));
+        adapter.setOutputValue(null, "in", new StringFieldValue(input));
+        FieldValue value = expression.execute(adapter);
+        return value + " " + adapter.getInputValue("out") + " " + adapter.getInputValue("other");
+    }
+
+}
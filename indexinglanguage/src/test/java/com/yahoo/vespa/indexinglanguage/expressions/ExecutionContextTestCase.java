@@ -65,6 +65,38 @@ public class ExecutionContextTestCase {
         assertNull(ctx.getVariable("foo"));
     }
 
+    @Test
+    public void requireThatVariablesCanBeHeldInSlots() {
+        ExecutionContext ctx = new ExecutionContext();
+        FieldValue foo = new StringFieldValue("foo");
+        FieldValue bar = new StringFieldValue("bar");
+        ctx.setVariable("foo", foo);
+        ctx.setVariable("bar", bar);
+
+        String[] slots = new String[] { "baz", "foo" };
+        ctx.setVariableSlots(slots);
+        assertTrue(ctx.hasVariableSlots(slots));
+        assertNull(ctx.getVariable(0));
+        assertSame(foo, ctx.getVariable(1));
+        assertSame(bar, ctx.getVariable("bar"));
+
+        FieldValue baz = new StringFieldValue("baz");
+        ctx.setVariable(0, baz);
+        assertSame(baz, ctx.getVariable("baz"));
+        ctx.setVariable("foo", bar);
+        assertSame(bar, ctx.getVariable(1));
+
+        ctx.setVariableSlots(new String[] { "bar" });
+        assertFalse(ctx.hasVariableSlots(slots));
+        assertSame(bar, ctx.getVariable(0));
+        assertSame(baz, ctx.getVariable("baz"));
+        assertSame(bar, ctx.getVariable("foo"));
+
+        ctx.clear();
+        assertNull(ctx.getVariable(0));
+        assertNull(ctx.getVariable("baz"));
+    }
+
     @Test
     public void requireThatClearDoesNotClearLanguage() {
         ExecutionContext ctx = new ExecutionContext();
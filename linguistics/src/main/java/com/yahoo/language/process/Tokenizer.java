@@ -3,6 +3,8 @@ package com.yahoo.language.process;
 
 import com.yahoo.language.Language;
 
+import java.util.function.Consumer;
+
 /**
  * Language-sensitive tokenization of a text string.
  *
@@ -22,6 +24,26 @@ public interface Tokenizer {
      */
     Iterable<Token> tokenize(String input, Language language, StemMode stemMode, boolean removeAccents);
 
+    /**
+     * Passes the tokens produced from an input string under the rules of the given Language and additional options
+     * to the given consumer, in order. Tokenizers may implement this to avoid collecting the tokens when they are
+     * just iterated.
+     * <p>
+     * This default implementation passes the tokens returned by {@link #tokenize(String, Language, StemMode, boolean)}.
+     *
+     * @param input the string to tokenize. May be arbitrarily large.
+     * @param language the language of the input string.
+     * @param stemMode the stem mode applied on the tokens
+     * @param removeAccents if true accents and similar are removed from the tokens
+     * @param consumer the receiver of the tokens of the input String
+     * @throws ProcessingException If the underlying library throws an Exception.
+     */
+    default void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                          Consumer<Token> consumer) {
+        for (Token token : tokenize(input, language, stemMode, removeAccents))
+            consumer.accept(token);
+    }
+
     /**
      * Return a replacement for an input token string.
      * This accepts strings returned by Token.getTokenString
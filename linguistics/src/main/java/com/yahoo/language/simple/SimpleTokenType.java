@@ -8,7 +8,19 @@ import com.yahoo.language.process.TokenType;
  */
 public class SimpleTokenType {
 
+    /** The types of the ASCII code points, to avoid looking up their character type for the most common input */
+    private static final TokenType[] asciiTypes = new TokenType[128];
+    static {
+        for (int codePoint = 0; codePoint < asciiTypes.length; codePoint++)
+            asciiTypes[codePoint] = typeOf(codePoint);
+    }
+
     public static TokenType valueOf(int codePoint) {
+        if (codePoint >= 0 && codePoint < asciiTypes.length) return asciiTypes[codePoint];
+        return typeOf(codePoint);
+    }
+
+    private static TokenType typeOf(int codePoint) {
         switch (Character.getType(codePoint)) {
         case Character.NON_SPACING_MARK:
             // "combining grave accent"
@@ -9,11 +9,18 @@ import com.yahoo.language.simple.kstem.KStemmer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * <p>A tokenizer which splits on whitespace, normalizes and transforms using the given implementations
  * and stems using the kstem algorithm.</p>
  *
+ * <p>Stems are cached in a bounded cache shared by all instances.
+ * Normalizing and removing accents is skipped for ASCII tokens when using the simple normalizer and transformer,
+ * since it does not change them.</p>
+ *
  * <p>This is not multithread safe.</p>
  *
  * @author Mathias Mølster Lidal
@@ -22,10 +29,25 @@ import java.util.List;
 public class SimpleTokenizer implements Tokenizer {
 
     private final static int SPACE_CODE = 32;
+
+    /** The max number of stems cached by all instances of this together */
+    private final static int MAX_CACHED_STEMS = 50000;
+    private final static Map<String, String> stems = new ConcurrentHashMap<>();
+
+    /** Single character strings of the ASCII characters, which are most of the space and punctuation tokens */
+    private final static String[] asciiStrings = new String[128];
+    static {
+        for (char c = 0; c < asciiStrings.length; c++)
+            asciiStrings[c] = String.valueOf(c);
+    }
+
     private final Normalizer normalizer;
     private final Transformer transformer;
     private final KStemmer stemmer = new KStemmer();
 
+    /** Whether normalizing and removing accents is known to leave ASCII text unchanged */
+    private final boolean asciiIsNormalized;
+
     public SimpleTokenizer() {
         this(new SimpleNormalizer(), new SimpleTransformer());
     }
@@ -37,6 +59,8 @@ public class SimpleTokenizer implements Tokenizer {
     public SimpleTokenizer(Normalizer normalizer, Transformer transformer) {
         this.normalizer = normalizer;
         this.transformer = transformer;
+        this.asciiIsNormalized = normalizer.getClass() == SimpleNormalizer.class &&
+                                 transformer.getClass() == SimpleTransformer.class;
     }
 
     @Override
@@ -44,33 +68,64 @@ public class SimpleTokenizer implements Tokenizer {
         if (input.isEmpty()) return Collections.emptyList();
 
         List<Token> tokens = new ArrayList<>();
+        tokenize(input, language, stemMode, removeAccents, tokens::add);
+        return tokens;
+    }
+
+    @Override
+    public void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                         Consumer<Token> consumer) {
+        if (input.isEmpty()) return;
+
         int nextCode = input.codePointAt(0);
         TokenType prevType = SimpleTokenType.valueOf(nextCode);
+        boolean ascii = nextCode < 128; // whether the token from prev is all ASCII
         for (int prev = 0, next = Character.charCount(nextCode); next <= input.length(); ) {
             nextCode = next < input.length() ? input.codePointAt(next) : SPACE_CODE;
             TokenType nextType = SimpleTokenType.valueOf(nextCode);
             if (!prevType.isIndexable() || !nextType.isIndexable()) {
-                String original = input.substring(prev, next);
-                String token = processToken(original, language, stemMode, removeAccents);
-                tokens.add(new SimpleToken(original).setOffset(prev)
-                                                .setType(prevType)
-                                                .setTokenString(token));
+                String original = substring(input, prev, next);
+                String token = processToken(original, ascii, language, stemMode, removeAccents);
+                consumer.accept(new SimpleToken(original).setOffset(prev)
+                                                         .setType(prevType)
+                                                         .setTokenString(token));
                 prev = next;
                 prevType = nextType;
+                ascii = nextCode < 128;
+            }
+            else {
+                ascii &= nextCode < 128;
             }
             next += Character.charCount(nextCode);
         }
-        return tokens;
     }
 
-    private String processToken(String token, Language language, StemMode stemMode, boolean removeAccents) {
-        token = normalizer.normalize(token);
+    private static String substring(String input, int start, int end) {
+        if (end - start == 1 && input.charAt(start) < 128) return asciiStrings[input.charAt(start)];
+        return input.substring(start, end);
+    }
+
+    private String processToken(String token, boolean ascii, Language language, StemMode stemMode, boolean removeAccents) {
+        boolean normalized = ascii && asciiIsNormalized;
+        if ( ! normalized)
+            token = normalizer.normalize(token);
         token = LinguisticsCase.toLowerCase(token);
-        if (removeAccents)
+        if (removeAccents && ! normalized)
             token = transformer.accentDrop(token, language);
         if (stemMode != StemMode.NONE)
-            token = stemmer.stem(token);
+            token = stem(token);
         return token;
     }
 
+    private String stem(String token) {
+        String stem = stems.get(token);
+        if (stem != null) return stem;
+
+        stem = stemmer.stem(token);
+        if (stems.size() >= MAX_CACHED_STEMS)
+            stems.clear(); // Cheaper than tracking usage, and the frequent words are soon added back
+        stems.put(token, stem);
+        return stem;
+    }
+
 }
@@ -0,0 +1,87 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
+import com.yahoo.language.process.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tokenizes synthetic English documents as done when indexing, with word frequencies
+ * following a Zipf distribution and some capitalized, accented and punctuated words.
+ *
+ * @author agent
+ */
+public class SimpleTokenizerMicroBenchmark {
+
+    private static final String vocabulary =
+            "the of and to in is was for that on as with by he it at from his an were are which this be " +
+            "had not but first one their its new after who they have her she two been other when there all " +
+            "during into school time may years more most only over city some world would where later up such " +
+            "used many can state about national out known university united then made between system " +
+            "running searching indexed documents queries engines ranking relevance features servers clusters " +
+            "processing tokenizers normalization stemming languages characters annotations structures " +
+            "applications deployments configurations containers distributions computations algorithms " +
+            "caf\u00e9 na\u00efve r\u00e9sum\u00e9 M\u00fcller Z\u00fcrich S\u00e3o \u00c5sgard";
+
+    private final List<String> documents = new ArrayList<>();
+
+    public SimpleTokenizerMicroBenchmark(int documentCount, int wordsPerDocument) {
+        String[] words = vocabulary.split(" ");
+        Random random = new Random(1234);
+        for (int i = 0; i < documentCount; i++) {
+            StringBuilder document = new StringBuilder();
+            for (int j = 0; j < wordsPerDocument; j++) {
+                // Zipf-like: low ranks are picked much more often
+                String word = words[(int)(words.length * Math.pow(random.nextDouble(), 3))];
+                if (j % 12 == 0)
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                document.append(word);
+                if (j % 12 == 11)
+                    document.append(". ");
+                else if (random.nextInt(10) == 0)
+                    document.append(", ");
+                else
+                    document.append(' ');
+            }
+            documents.add(document.toString());
+        }
+    }
+
+    public void benchmark(String name, Tokenizer tokenizer, boolean consume, int rounds) {
+        tokenize(tokenizer, consume, rounds / 10 + 1); // warm-up
+        long startTime = System.nanoTime();
+        long tokens = tokenize(tokenizer, consume, rounds);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(String.format("%-40s %8.1f ns per token", name, (double)totalTime / tokens));
+    }
+
+    private long tokenize(Tokenizer tokenizer, boolean consume, int rounds) {
+        long[] tokens = new long[1];
+        for (int round = 0; round < rounds; round++) {
+            for (String document : documents) {
+                if (consume) {
+                    tokenizer.tokenize(document, Language.ENGLISH, StemMode.BEST, true, token -> tokens[0]++);
+                }
+                else {
+                    for (Token token : tokenizer.tokenize(document, Language.ENGLISH, StemMode.BEST, true))
+                        tokens[0]++;
+                }
+            }
+        }
+        return tokens[0];
+    }
+
+    public static void main(String[] args) {
+        SimpleTokenizerMicroBenchmark benchmark = new SimpleTokenizerMicroBenchmark(1000, 300);
+        // Subclasses of the simple normalizer and transformer are not known to leave ASCII unchanged
+        benchmark.benchmark("Without ASCII fast path", new SimpleTokenizer(new SimpleNormalizer() {}, new SimpleTransformer() {}), false, 20);
+        benchmark.benchmark("Token list", new SimpleTokenizer(), false, 20);
+        benchmark.benchmark("Token consumer", new SimpleTokenizer(), true, 20);
+    }
+
+}
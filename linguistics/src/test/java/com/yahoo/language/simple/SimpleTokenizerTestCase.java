@@ -1,10 +1,18 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.simple;
 
+import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author bratseth
@@ -33,4 +41,40 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
                             " ", "gods", ".", "running", ")");
     }
 
+    @Test
+    public void testAsciiFastPathGivesTheSameTokens() {
+        String input = "Running quickly, the Foxes jumped over 3 lazy dogs' kennels at 10:45! Running foxes " +
+                       "na\u00EFve caf\u00E9 R\u00C9SUM\u00C9S \uFB01nal \u00B2 a\u030a \u00A0 \uD800\uDFC8";
+        SimpleTokenizer fast = new SimpleTokenizer();
+        SimpleTokenizer full = new SimpleTokenizer(new SimpleNormalizer() {}, new SimpleTransformer() {});
+        for (StemMode stemMode : new StemMode[] { StemMode.NONE, StemMode.ALL }) {
+            for (boolean removeAccents : new boolean[] { false, true }) {
+                assertEquals(describe(full.tokenize(input, Language.ENGLISH, stemMode, removeAccents)),
+                             describe(fast.tokenize(input, Language.ENGLISH, stemMode, removeAccents)));
+            }
+        }
+    }
+
+    @Test
+    public void testTokenizingToConsumer() {
+        String input = "Foxes jumped over lazy dogs. R\u00C9SUM\u00C9S";
+        SimpleTokenizer tokenizer = new SimpleTokenizer();
+        List<Token> tokens = new ArrayList<>();
+        tokenizer.tokenize(input, Language.ENGLISH, StemMode.ALL, true, tokens::add);
+        assertEquals(describe(tokenizer.tokenize(input, Language.ENGLISH, StemMode.ALL, true)), describe(tokens));
+        assertEquals("fox", tokens.get(0).getTokenString());
+        assertEquals("resume", tokens.get(tokens.size() - 1).getTokenString());
+
+        tokens.clear();
+        tokenizer.tokenize("", Language.ENGLISH, StemMode.ALL, true, tokens::add);
+        assertTrue(tokens.isEmpty());
+    }
+
+    private static List<String> describe(Iterable<Token> tokens) {
+        List<String> descriptions = new ArrayList<>();
+        for (Token token : tokens)
+            descriptions.add(token.getOffset() + ":" + token.getType() + ":" + token.getOrig() + ":" + token.getTokenString());
+        return descriptions;
+    }
+
 }
@@ -0,0 +1,212 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.google.common.annotations.Beta;
+import com.gs.collections.impl.set.mutable.primitive.IntHashSet;
+import com.yahoo.document.predicate.Predicate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A {@link PredicateIndex} which supports adding and removing documents.
+ * <p>
+ * The index consists of an immutable base index and a small delta index of the documents changed since
+ * the base index was built. Changes are made with {@link #add(int, Predicate)} and {@link #remove(int)},
+ * and become visible to searches when they are committed by {@link #commit()}, which rebuilds the delta index.
+ * As this cost grows with the number of changes since the base index was built,
+ * {@link #merge()} should be called periodically to build a new base index of all the documents.
+ * Merging is done without blocking searches or changes, and changes made during a merge are kept in the delta index.
+ * </p><p>
+ * Each search sees a consistent snapshot of the index as of the last commit or merge.
+ * This is thread-safe, but a {@link Searcher} is not. Each thread <strong>must</strong> use its own searcher.
+ * Note that this keeps the predicates of all documents in memory, to be able to build new base indexes.
+ * </p>
+ *
+ * @author agent
+ */
+@Beta
+public class UpdatablePredicateIndex {
+
+    private final Config config;
+
+    /** Serializes merges */
+    private final Object mergeMonitor = new Object();
+
+    /** The documents of the current base index. Replaced, never modified. */
+    private Map<Integer, Predicate> baseDocuments = Collections.emptyMap();
+
+    /** The changes since the base index was built: The new predicate of each changed document, or null if it is removed */
+    private final Map<Integer, Predicate> changes = new HashMap<>();
+
+    /** The changes included in the base index being built by a merge, or null if no merge is in progress */
+    private Map<Integer, Predicate> mergingChanges = null;
+
+    private volatile Snapshot snapshot;
+
+    public UpdatablePredicateIndex(Config config) {
+        this.config = config;
+        this.snapshot = new Snapshot(new PredicateIndexBuilder(config).build(), null, new IntHashSet());
+    }
+
+    /**
+     * Adds a document to this, or replaces it if it is already present.
+     * The document will be visible to searches after the next {@link #commit()}.
+     *
+     * @param docId     a 32-bit document id, returned in the Hit objects when the predicate matches
+     * @param predicate the predicate to index
+     */
+    public synchronized void add(int docId, Predicate predicate) {
+        changes.put(docId, predicate);
+    }
+
+    /**
+     * Removes a document from this, if it is present.
+     * The document will be removed from searches after the next {@link #commit()}.
+     */
+    public synchronized void remove(int docId) {
+        if (baseDocuments.containsKey(docId) || (mergingChanges != null && mergingChanges.containsKey(docId)))
+            changes.put(docId, null);
+        else
+            changes.remove(docId);
+    }
+
+    /** Makes all changes made to this visible to searches */
+    public synchronized void commit() {
+        snapshot = snapshotOf(snapshot.base);
+    }
+
+    /**
+     * Builds a new base index of all the documents in this, and commits any changes made.
+     * Searches and changes can proceed while the new base index is built.
+     */
+    public void merge() {
+        merge(() -> {});
+    }
+
+    /** Merges, and runs the given task after the new base index is built, before it is published. For testing. */
+    void merge(Runnable afterBuild) {
+        synchronized (mergeMonitor) {
+            Map<Integer, Predicate> merged;
+            Map<Integer, Predicate> mergedChanges;
+            synchronized (this) {
+                merged = baseDocuments;
+                mergedChanges = new HashMap<>(changes);
+                mergingChanges = mergedChanges;
+            }
+
+            merged = new HashMap<>(merged);
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+            for (Map.Entry<Integer, Predicate> change : mergedChanges.entrySet()) {
+                if (change.getValue() == null)
+                    merged.remove(change.getKey());
+                else
+                    merged.put(change.getKey(), change.getValue());
+            }
+            for (Map.Entry<Integer, Predicate> document : merged.entrySet())
+                builder.indexDocument(document.getKey(), document.getValue());
+            PredicateIndex base = builder.build();
+            afterBuild.run();
+
+            synchronized (this) {
+                baseDocuments = merged;
+                mergingChanges = null;
+                // Keep the changes made while building, except removals of documents which are not in the new base
+                for (Iterator<Map.Entry<Integer, Predicate>> i = changes.entrySet().iterator(); i.hasNext(); ) {
+                    Map.Entry<Integer, Predicate> change = i.next();
+                    boolean isMerged = mergedChanges.containsKey(change.getKey()) &&
+                                       mergedChanges.get(change.getKey()) == change.getValue();
+                    if (isMerged || (change.getValue() == null && ! merged.containsKey(change.getKey())))
+                        i.remove();
+                }
+                snapshot = snapshotOf(base);
+            }
+        }
+    }
+
+    /** Returns a snapshot of the given base index and a delta index of the current changes. Must hold the lock of this. */
+    private Snapshot snapshotOf(PredicateIndex base) {
+        PredicateIndexBuilder deltaBuilder = new PredicateIndexBuilder(config);
+        IntHashSet changedInBase = new IntHashSet();
+        for (Map.Entry<Integer, Predicate> change : changes.entrySet()) {
+            if (change.getValue() != null)
+                deltaBuilder.indexDocument(change.getKey(), change.getValue());
+            if (baseDocuments.containsKey(change.getKey()))
+                changedInBase.add(change.getKey());
+        }
+        return new Snapshot(base, changes.isEmpty() ? null : deltaBuilder.build(), changedInBase);
+    }
+
+    /** Returns the number of documents changed since the base index was built */
+    public synchronized int getChangeCount() {
+        return changes.size();
+    }
+
+    public void rebuildPostingListCache() {
+        snapshot.base.rebuildPostingListCache();
+    }
+
+    /**
+     * Create a new searcher.
+     */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    /** The indexes searched at some point in time */
+    private static class Snapshot {
+
+        final PredicateIndex base;
+
+        /** The index of documents changed since the base index was built, or null if there are none */
+        final PredicateIndex delta;
+
+        /** The ids of documents which are in the base index, but changed or removed since it was built */
+        final IntHashSet changedInBase;
+
+        Snapshot(PredicateIndex base, PredicateIndex delta, IntHashSet changedInBase) {
+            this.base = base;
+            this.delta = delta;
+            this.changedInBase = changedInBase;
+        }
+
+    }
+
+    @Beta
+    public class Searcher {
+
+        private Snapshot snapshot = null;
+        private PredicateIndex.Searcher baseSearcher;
+        private PredicateIndex.Searcher deltaSearcher;
+
+        private Searcher() {}
+
+        /**
+         * Retrieves a stream of hits for the given query, from the last committed state of the index.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query) {
+            Snapshot current = UpdatablePredicateIndex.this.snapshot;
+            if (current != snapshot) {
+                if (snapshot == null || current.base != snapshot.base)
+                    baseSearcher = current.base.searcher();
+                deltaSearcher = current.delta != null ? current.delta.searcher() : null;
+                snapshot = current;
+            }
+
+            Stream<Hit> hits = baseSearcher.search(query);
+            if ( ! current.changedInBase.isEmpty())
+                hits = hits.filter(hit -> ! current.changedInBase.contains(hit.getDocId()));
+            if (deltaSearcher != null)
+                hits = Stream.concat(hits, deltaSearcher.search(query));
+            return hits;
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Iterators;
+import com.yahoo.document.predicate.Predicate;
+import com.yahoo.search.predicate.Config;
+import com.yahoo.search.predicate.PredicateQuery;
+import com.yahoo.search.predicate.UpdatablePredicateIndex;
+import com.yahoo.search.predicate.serialization.PredicateQuerySerializer;
+import com.yahoo.search.predicate.utils.VespaFeedParser;
+import com.yahoo.search.predicate.utils.VespaQueryParser;
+import io.airlift.airline.Command;
+import io.airlift.airline.HelpOption;
+import io.airlift.airline.Option;
+import io.airlift.airline.SingleCommand;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.yahoo.search.predicate.benchmarks.UpdatablePredicateIndexBenchmark.BenchmarkArguments.Algorithm;
+import static com.yahoo.search.predicate.benchmarks.UpdatablePredicateIndexBenchmark.BenchmarkArguments.Format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A benchmark that tests the search performance of an {@link UpdatablePredicateIndex}
+ * while documents are added and removed, and the changes are committed and merged.
+ *
+ * @author agent
+ */
+public class UpdatablePredicateIndexBenchmark {
+
+    private static final Map<String, Object> output = new TreeMap<>();
+
+    public static void main(String[] rawArgs) throws IOException {
+        BenchmarkArguments args = SingleCommand.singleCommand(BenchmarkArguments.class).parse(rawArgs);
+        if (args.helpOption.showHelpIfRequested()) return;
+        if (args.feedFile == null || args.queryFile == null) {
+            System.err.println("Provide both a feed file and a query file.");
+            return;
+        }
+        putBenchmarkArgumentsToOutput(args);
+
+        long start = System.currentTimeMillis();
+        Config config = new Config.Builder()
+                .setArity(args.arity)
+                .setUseConjunctionAlgorithm(args.algorithm == Algorithm.CONJUNCTION)
+                .build();
+        List<Predicate> predicates = parseDocuments(args);
+        UpdatablePredicateIndex index = buildIndex(predicates, config);
+        List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
+        output.put("Time warmup", search(queries, predicates, index, args, args.warmup, false));
+        search(queries, predicates, index, args, args.runtime, true);
+        output.put("Total time", System.currentTimeMillis() - start);
+        output.put("Timestamp", new Date().toString());
+        writeOutputToStandardOut();
+    }
+
+    private static void putBenchmarkArgumentsToOutput(BenchmarkArguments args) {
+        output.put("Arity", args.arity);
+        output.put("Max documents", args.maxDocuments);
+        output.put("Max queries", args.maxQueries);
+        output.put("Threads", args.nThreads);
+        output.put("Runtime", args.runtime);
+        output.put("Algorithm", args.algorithm);
+        output.put("Feed file", args.feedFile);
+        output.put("Query file", args.queryFile);
+        output.put("Query format", args.format);
+        output.put("Warmup", args.warmup);
+        output.put("Updates per commit", args.updatesPerCommit);
+        output.put("Commits per merge", args.commitsPerMerge);
+        output.put("Commit interval", args.commitInterval);
+    }
+
+    private static List<Predicate> parseDocuments(BenchmarkArguments args) throws IOException {
+        long start = System.currentTimeMillis();
+        List<Predicate> predicates = new ArrayList<>();
+        VespaFeedParser.parseDocuments(args.feedFile, args.maxDocuments, predicates::add);
+        output.put("Time parse documents", System.currentTimeMillis() - start);
+        output.put("Indexed document count", predicates.size());
+        return predicates;
+    }
+
+    private static UpdatablePredicateIndex buildIndex(List<Predicate> predicates, Config config) {
+        long start = System.currentTimeMillis();
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config);
+        for (int i = 0; i < predicates.size(); i++) {
+            index.add(i, predicates.get(i));
+        }
+        index.merge();
+        index.rebuildPostingListCache();
+        output.put("Time build index", System.currentTimeMillis() - start);
+        return index;
+    }
+
+    private static List<PredicateQuery> parseQueries(String queryFile, int maxQueryCount, Format format) throws IOException {
+        long start = System.currentTimeMillis();
+        List<PredicateQuery> queries = format == Format.VESPA ?
+                VespaQueryParser.parseQueries(queryFile, maxQueryCount) :
+                PredicateQuerySerializer.parseQueriesFromFile(queryFile, maxQueryCount);
+        output.put("Time parse queries", System.currentTimeMillis() - start);
+        output.put("Queries parsed", queries.size());
+        return queries;
+    }
+
+    /** Runs queries and updates concurrently for the given number of seconds, and returns the time spent */
+    private static long search(List<PredicateQuery> queries, List<Predicate> predicates, UpdatablePredicateIndex index,
+                               BenchmarkArguments args, int runtime, boolean writeMetrics) {
+        ExecutorService executor = Executors.newFixedThreadPool(args.nThreads + 1);
+        Random random = new Random(42);
+        List<QueryRunner> runners = new ArrayList<>();
+        for (int i = 0; i < args.nThreads; i++) {
+            List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
+            Collections.shuffle(shuffledQueries, random);
+            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+        }
+        long start = System.currentTimeMillis();
+        Future<UpdateMetrics> futureUpdates = executor.submit(new UpdateRunner(predicates, index, args));
+        List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
+        waitAndShutdown(runtime, executor);
+        long searchTime = System.currentTimeMillis() - start;
+        if (writeMetrics) {
+            getResult(futureResults).writeMetrics(output, searchTime);
+            getUpdates(futureUpdates).writeMetrics(output);
+        }
+        return searchTime;
+    }
+
+    private static void waitAndShutdown(int runtime, ExecutorService executor) {
+        try {
+            Thread.sleep(runtime * 1000);
+            executor.shutdownNow();
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ResultMetrics getResult(List<Future<ResultMetrics>> futureResults) {
+        try {
+            ResultMetrics combined = futureResults.get(0).get();
+            for (int i = 1; i < futureResults.size(); i++) {
+                combined.combine(futureResults.get(i).get());
+            }
+            return combined;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static UpdateMetrics getUpdates(Future<UpdateMetrics> futureUpdates) {
+        try {
+            return futureUpdates.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class QueryRunner implements Callable<ResultMetrics> {
+        private final List<PredicateQuery> queries;
+        private final UpdatablePredicateIndex.Searcher searcher;
+
+        public QueryRunner(List<PredicateQuery> queries, UpdatablePredicateIndex.Searcher searcher) {
+            this.queries = queries;
+            this.searcher = searcher;
+        }
+
+        @Override
+        public ResultMetrics call() throws Exception {
+            Iterator<PredicateQuery> iterator = Iterators.cycle(queries);
+            ResultMetrics result = new ResultMetrics();
+            while (!Thread.interrupted()) {
+                long start = System.nanoTime();
+                long hits = searcher.search(iterator.next()).count();
+                double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+                result.registerResult(hits, latencyMilliseconds);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Replaces random documents by the predicate of another random document, commits after each batch of updates,
+     * and merges after a given number of commits.
+     */
+    private static class UpdateRunner implements Callable<UpdateMetrics> {
+        private final List<Predicate> predicates;
+        private final UpdatablePredicateIndex index;
+        private final BenchmarkArguments args;
+
+        public UpdateRunner(List<Predicate> predicates, UpdatablePredicateIndex index, BenchmarkArguments args) {
+            this.predicates = predicates;
+            this.index = index;
+            this.args = args;
+        }
+
+        @Override
+        public UpdateMetrics call() throws Exception {
+            Random random = new Random(4711);
+            UpdateMetrics result = new UpdateMetrics();
+            try {
+                while (!Thread.interrupted()) {
+                    for (int i = 0; i < args.updatesPerCommit; i++) {
+                        int docId = random.nextInt(predicates.size());
+                        if (random.nextInt(10) == 0) {
+                            index.remove(docId);
+                        } else {
+                            index.add(docId, predicates.get(random.nextInt(predicates.size())));
+                        }
+                    }
+                    result.updates += args.updatesPerCommit;
+                    long start = System.nanoTime();
+                    index.commit();
+                    result.commitTime += System.nanoTime() - start;
+                    result.maxDeltaSize = Math.max(result.maxDeltaSize, index.getChangeCount());
+                    if (++result.commits % args.commitsPerMerge == 0) {
+                        start = System.nanoTime();
+                        index.merge();
+                        result.mergeTime += System.nanoTime() - start;
+                        ++result.merges;
+                    }
+                    Thread.sleep(args.commitInterval);
+                }
+            } catch (InterruptedException e) {
+                // Runtime is over
+            }
+            return result;
+        }
+    }
+
+    private static class UpdateMetrics {
+        private long updates = 0;
+        private long commits = 0;
+        private long merges = 0;
+        private long commitTime = 0; // ns
+        private long mergeTime = 0; // ns
+        private int maxDeltaSize = 0;
+
+        void writeMetrics(Map<String, Object> metricMap) {
+            metricMap.put("Total updates", updates);
+            metricMap.put("Total commits", commits);
+            metricMap.put("Total merges", merges);
+            metricMap.put("Average commit time", String.format("%.3fms", commits == 0 ? 0 : commitTime / 1_000_000d / commits));
+            metricMap.put("Average merge time", String.format("%.3fms", merges == 0 ? 0 : mergeTime / 1_000_000d / merges));
+            metricMap.put("Max delta size", maxDeltaSize);
+        }
+    }
+
+    private static void writeOutputToStandardOut() {
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+            objectMapper.writeValue(System.out, output);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Command(name = "updatable-benchmark",
+             description = "Java predicate search library benchmark of searching while updating the index")
+    public static class BenchmarkArguments {
+        public enum Format{JSON, VESPA}
+        public enum Algorithm{CONJUNCTION, INTERVALONLY}
+
+        @Option(name = {"-t", "--threads"}, description = "Number of search threads")
+        public int nThreads = 1;
+
+        @Option(name = {"-a", "--arity"}, description = "Arity")
+        public int arity = 2;
+
+        @Option(name = {"-r", "--runtime"}, description = "Number of seconds to run queries and updates")
+        public int runtime = 30;
+
+        @Option(name = {"-md", "--max-documents"},
+                description = "The maximum number of documents to index from feed file")
+        public int maxDocuments = Integer.MAX_VALUE;
+
+        @Option(name = {"-mq", "--max-queries"}, description = "The maximum number of queries to run from query file")
+        public int maxQueries = Integer.MAX_VALUE;
+
+        @Option(name = {"-al", "--algorithm"}, description = "Algorithm (CONJUNCTION or INTERVALONLY)")
+        public Algorithm algorithm = Algorithm.INTERVALONLY;
+
+        @Option(name = {"-w", "--warmup"}, description = "Warmup in seconds.")
+        public int warmup = 30;
+
+        @Option(name = {"-qf", "--query-format"},
+        description = "Query format. Valid formats are either 'VESPA' (obsolete query property format) or 'JSON'.")
+        public Format format = Format.VESPA;
+
+        @Option(name = {"-ff", "--feed-file"}, description = "File path to feed file (Vespa XML feed)")
+        public String feedFile;
+
+        @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
+        public String queryFile;
+
+        @Option(name = {"-uc", "--updates-per-commit"}, description = "Number of documents added or removed per commit")
+        public int updatesPerCommit = 100;
+
+        @Option(name = {"-cm", "--commits-per-merge"}, description = "Number of commits between each merge")
+        public int commitsPerMerge = 100;
+
+        @Option(name = {"-ci", "--commit-interval"}, description = "Milliseconds to wait after each commit")
+        public int commitInterval = 100;
+
+        @Inject
+        public HelpOption helpOption;
+    }
+}
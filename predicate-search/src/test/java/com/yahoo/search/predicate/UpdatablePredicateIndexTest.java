@@ -0,0 +1,147 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.document.predicate.Predicate;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class UpdatablePredicateIndexTest {
+
+    @Test
+    public void requireThatChangesAreVisibleAfterCommit() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = query("no", "male");
+        assertEquals("[]", search(searcher, query));
+
+        index.add(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        index.add(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        assertEquals("[]", search(searcher, query));
+        index.commit();
+        assertEquals("[1]", search(searcher, query));
+        assertEquals(2, index.getChangeCount());
+
+        index.add(2, Predicate.fromString("country in ['no']"));
+        index.remove(1);
+        index.add(3, Predicate.fromString("gender in ['male']"));
+        assertEquals("[1]", search(searcher, query));
+        index.commit();
+        assertEquals("[2, 3]", search(searcher, query));
+        assertEquals(2, index.getChangeCount());
+    }
+
+    @Test
+    public void requireThatMergingKeepsTheDocuments() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = query("no", "male");
+        index.add(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        index.add(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        index.add(3, Predicate.fromString("country in ['se']"));
+        index.merge();
+        assertEquals(0, index.getChangeCount());
+        assertEquals("[1]", search(searcher, query));
+
+        index.add(2, Predicate.fromString("gender in ['male']"));
+        index.add(4, Predicate.fromString("country in ['no']"));
+        index.remove(1);
+        index.remove(4);
+        index.commit();
+        assertEquals("Only documents in the base index are removed by a change", 2, index.getChangeCount());
+        assertEquals("[2]", search(searcher, query));
+
+        index.merge();
+        assertEquals(0, index.getChangeCount());
+        assertEquals("[2]", search(searcher, query));
+        assertEquals("[2]", search(index.searcher(), query));
+        assertEquals("[3]", search(searcher, query("se", "female")));
+    }
+
+    @Test
+    public void requireThatChangesDuringMergeAreKept() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = query("no", "male");
+        index.add(1, Predicate.fromString("country in ['no']"));
+        index.merge();
+        index.add(5, Predicate.fromString("country in ['no']"));
+        index.commit();
+        assertEquals("[1, 5]", search(searcher, query));
+
+        index.merge(() -> {
+            index.remove(5);
+            index.remove(1);
+            index.add(6, Predicate.fromString("gender in ['male']"));
+            index.commit();
+            assertEquals("[6]", search(searcher, query));
+        });
+        assertEquals("Removals of documents in the new base index are kept", 3, index.getChangeCount());
+        assertEquals("[6]", search(searcher, query));
+
+        index.merge();
+        assertEquals(0, index.getChangeCount());
+        assertEquals("[6]", search(searcher, query));
+    }
+
+    @Test
+    public void requireThatSearchesSeeConsistentSnapshotsDuringConcurrentUpdates() throws Exception {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        for (int i = 0; i < 100; i++)
+            index.add(i, Predicate.fromString("country in ['no']"));
+        index.merge();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicBoolean done = new AtomicBoolean(false);
+        CountDownLatch searching = new CountDownLatch(1);
+        Future<Integer> searches = executor.submit(() -> {
+            UpdatablePredicateIndex.Searcher searcher = index.searcher();
+            PredicateQuery query = query("no", "male");
+            int count = 0;
+            while ( ! done.get() || count == 0) {
+                // each document is moved by removing and adding it in the same commit, so the count is constant
+                assertEquals(100, searcher.search(query).count());
+                searching.countDown();
+                count++;
+            }
+            return count;
+        });
+        searching.await();
+        for (int i = 0; i < 100; i++) {
+            index.remove(i);
+            index.add(i + 100, Predicate.fromString("country in ['no']"));
+            index.commit();
+            if (i % 10 == 0)
+                index.merge();
+        }
+        done.set(true);
+        assertTrue(searches.get() > 0);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, index.searcher().search(query("no", "female")).count());
+    }
+
+    private static PredicateQuery query(String country, String gender) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", country);
+        query.addFeature("gender", gender);
+        return query;
+    }
+
+    private static String search(UpdatablePredicateIndex.Searcher searcher, PredicateQuery query) {
+        return searcher.search(query).sorted().collect(toList()).toString();
+    }
+
+}
@@ -11,7 +11,8 @@ import java.util.Map;
  * A HashMap backing of Properties.
  * <p>
  * When this is cloned it will deep copy not only the model object map, but also each
- * clonable member inside the map.
+ * clonable member inside the map. If there are no clonable members, the map is instead shared between
+ * the clones until one of them is modified, such that cloning is cheap when cloned instances are mostly read.
  * <p>
  * Subclassing is supported, a hook can be implemented to provide conditional inclusion in the map.
  * By default - all properties are accepted, so set is never propagated.
@@ -27,13 +28,24 @@ public class PropertyMap extends Properties {
      */
     private Map<CompoundName, Object> properties = new HashMap<>();
 
+    /** Whether the properties map is shared with a clone and must be copied before it is modified */
+    private boolean shared = false;
+
     public void set(CompoundName name, Object value, Map<String, String> context) {
         if (shouldSet(name, value))
-            properties.put(name, value);
+            writableProperties().put(name, value);
         else
             super.set(name, value, context);
     }
 
+    private Map<CompoundName, Object> writableProperties() {
+        if (shared) {
+            properties = new HashMap<>(properties);
+            shared = false;
+        }
+        return properties;
+    }
+
     /**
      * Return true if this value should be set in this map, false if the set should be propagated instead
      * This default implementation always returns true.
@@ -54,10 +66,24 @@ public class PropertyMap extends Properties {
     @Override
     PropertyMap clone() {
         PropertyMap clone = (PropertyMap) super.clone();
-        clone.properties = cloneMap(this.properties);
+        if (hasCloneableValues(properties)) {
+            clone.properties = cloneMap(this.properties);
+            clone.shared = false;
+        }
+        else { // nothing to deep copy: Share the map until one of us changes it
+            this.shared = true;
+            clone.shared = true;
+        }
         return clone;
     }
 
+    /** Returns whether any value in the given map would be deep copied by {@link #cloneMap} */
+    public static boolean hasCloneableValues(Map<CompoundName, Object> map) {
+        for (Object value : map.values())
+            if (value instanceof Cloneable) return true;
+        return false;
+    }
+
     @Override
     public Map<String, Object> listProperties(CompoundName path, Map<String, String> context, Properties substitution) {
         Map<String, Object> map = super.listProperties(path, context, substitution);
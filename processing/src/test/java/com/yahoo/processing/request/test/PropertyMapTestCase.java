@@ -10,7 +10,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -55,6 +57,29 @@ public class PropertyMapTestCase {
         assertTrue("Array was cloned", mapClone.get("byteArray") != byteArray);
     }
 
+    @Test
+    public void testCopyOnWriteCloning() {
+        PropertyMap map = new PropertyMap();
+        map.set("a", "a1");
+        map.set("b", "b1");
+
+        PropertyMap clone = map.clone();
+        PropertyMap cloneOfClone = clone.clone();
+        clone.set("a", "a2");
+        map.set("b", "b2");
+        cloneOfClone.set("c", "c3");
+
+        assertEquals("a1", map.get("a"));
+        assertEquals("b2", map.get("b"));
+        assertNull(map.get("c"));
+        assertEquals("a2", clone.get("a"));
+        assertEquals("b1", clone.get("b"));
+        assertNull(clone.get("c"));
+        assertEquals("a1", cloneOfClone.get("a"));
+        assertEquals("b1", cloneOfClone.get("b"));
+        assertEquals("c3", cloneOfClone.get("c"));
+    }
+
     private Object first(Object object) {
         if (object instanceof Object[])
             return ((Object[])object)[0];
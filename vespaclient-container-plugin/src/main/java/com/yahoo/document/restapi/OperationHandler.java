@@ -3,6 +3,9 @@ package com.yahoo.document.restapi;
 
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 /**
@@ -23,6 +26,22 @@ public interface OperationHandler {
         }
     }
 
+    /** A visit in progress, whose documents are written as they are received instead of being buffered */
+    interface VisitStream {
+
+        /**
+         * Writes the visited documents to the given stream as a comma separated list of JSON documents
+         * as they are received, until the visit is done, and then releases the resources of the visit.
+         * This must be called exactly once.
+         *
+         * @return the continuation token of the visit, or empty if the visit is complete
+         * @throws RestApiException if visiting fails
+         * @throws IOException if writing to the stream fails, in which case the visit is aborted
+         */
+        Optional<String> writeDocuments(OutputStream out) throws RestApiException, IOException;
+
+    }
+
     class VisitOptions {
         public final Optional<String> cluster;
         public final Optional<String> continuation;
@@ -90,6 +109,20 @@ public interface OperationHandler {
 
     VisitResult visit(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException;
 
+    /**
+     * Starts visiting, and returns the visit in progress to stream the documents from.
+     * This default implementation visits to completion before returning.
+     *
+     * @throws RestApiException if the visit could not be started
+     */
+    default VisitStream visitStreaming(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException {
+        VisitResult result = visit(restUri, documentSelection, options);
+        return out -> {
+            out.write(result.documentsAsJsonList.getBytes(StandardCharsets.UTF_8));
+            return result.token;
+        };
+    }
+
     void put(RestUri restUri, VespaXMLFeedReader.Operation data, Optional<String> route) throws RestApiException;
 
     void update(RestUri restUri, VespaXMLFeedReader.Operation data, Optional<String> route) throws RestApiException;
@@ -140,11 +140,47 @@ public class OperationHandlerImpl implements OperationHandler {
         LocalDataVisitorHandler localDataVisitorHandler = new LocalDataVisitorHandler();
         visitorParameters.setLocalDataHandler(localDataVisitorHandler);
 
-        final VisitorSession visitorSession;
+        VisitorSession visitorSession = createVisitorSession(visitorParameters, visitorControlHandler, restUri);
         try {
-            visitorSession = documentAccess.createVisitorSession(visitorParameters);
+            return doVisit(visitorControlHandler, localDataVisitorHandler, restUri);
+        } finally {
+            visitorSession.destroy();
+        }
+    }
+
+    @Override
+    public VisitStream visitStreaming(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException {
+        VisitorParameters visitorParameters = createVisitorParameters(restUri, documentSelection, options);
+
+        VisitorControlHandler visitorControlHandler = new VisitorControlHandler();
+        visitorParameters.setControlHandler(visitorControlHandler);
+        StreamingVisitorDataHandler dataHandler = new StreamingVisitorDataHandler();
+        visitorParameters.setLocalDataHandler(dataHandler);
+
+        VisitorSession visitorSession = createVisitorSession(visitorParameters, visitorControlHandler, restUri);
+        return out -> {
+            try {
+                dataHandler.writeDocuments(out, visitorControlHandler);
+                throwIfFatalVisitingError(visitorControlHandler, restUri);
+            } catch (InterruptedException e) {
+                throw new RestApiException(Response.createErrorResponse(500, ExceptionUtils.getStackTrace(e), restUri, RestUri.apiErrorCodes.INTERRUPTED));
+            } finally {
+                visitorSession.destroy();
+            }
+            if ( ! dataHandler.getErrors().isEmpty())
+                throw new RestApiException(Response.createErrorResponse(500, dataHandler.getErrors(), restUri, RestUri.apiErrorCodes.UNSPECIFIED));
+            return continuationToken(visitorControlHandler);
+        };
+    }
+
+    private VisitorSession createVisitorSession(VisitorParameters visitorParameters,
+                                                VisitorControlHandler visitorControlHandler,
+                                                RestUri restUri) throws RestApiException {
+        try {
+            VisitorSession visitorSession = documentAccess.createVisitorSession(visitorParameters);
             // Not sure if this line is required
             visitorControlHandler.setSession(visitorSession);
+            return visitorSession;
         } catch (Exception e) {
             throw new RestApiException(Response.createErrorResponse(
                     500,
@@ -152,11 +188,11 @@ public class OperationHandlerImpl implements OperationHandler {
                     restUri,
                     RestUri.apiErrorCodes.VISITOR_ERROR));
         }
-        try {
-            return doVisit(visitorControlHandler, localDataVisitorHandler, restUri);
-        } finally {
-            visitorSession.destroy();
-        }
+    }
+
+    private static Optional<String> continuationToken(VisitorControlHandler visitorControlHandler) {
+        if (visitorControlHandler.getProgress().isFinished()) return Optional.empty();
+        return Optional.of(visitorControlHandler.getProgress().serializeToString());
     }
 
     private static void throwIfFatalVisitingError(VisitorControlHandler handler, RestUri restUri) throws RestApiException {
@@ -181,13 +217,7 @@ public class OperationHandlerImpl implements OperationHandler {
             throw new RestApiException(Response.createErrorResponse(500, ExceptionUtils.getStackTrace(e), restUri, RestUri.apiErrorCodes.INTERRUPTED));
         }
         if (localDataVisitorHandler.getErrors().isEmpty()) {
-            Optional<String> continuationToken;
-            if (! visitorControlHandler.getProgress().isFinished()) {
-                continuationToken = Optional.of(visitorControlHandler.getProgress().serializeToString());
-            } else {
-                continuationToken = Optional.empty();
-            }
-            return new VisitResult(continuationToken, localDataVisitorHandler.getCommaSeparatedJsonDocuments());
+            return new VisitResult(continuationToken(visitorControlHandler), localDataVisitorHandler.getCommaSeparatedJsonDocuments());
         }
         throw new RestApiException(Response.createErrorResponse(500, localDataVisitorHandler.getErrors(), restUri, RestUri.apiErrorCodes.UNSPECIFIED));
     }
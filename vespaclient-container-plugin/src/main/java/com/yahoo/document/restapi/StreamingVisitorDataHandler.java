@@ -0,0 +1,92 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.restapi;
+
+import com.yahoo.document.json.JsonWriter;
+import com.yahoo.documentapi.AckToken;
+import com.yahoo.documentapi.VisitorControlHandler;
+import com.yahoo.documentapi.VisitorDataHandler;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.messagebus.Message;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling data from visit by handing the documents over to a thread writing them to a stream as they arrive.
+ *
+ * Documents are converted to JSON by the threads receiving them, but not acked until they are written.
+ * Visitors only have a limited number of unacked messages pending, so the content nodes are held back
+ * when the stream is written slower than the documents arrive, and the number of documents kept in memory
+ * is bounded.
+ *
+ * @author agent
+ */
+class StreamingVisitorDataHandler extends VisitorDataHandler {
+
+    private static final long pollIntervalMillis = 100;
+
+    private final BlockingQueue<ReceivedDocument> received = new LinkedBlockingQueue<>();
+    private final StringBuffer errors = new StringBuffer();
+
+    String getErrors() {
+        return errors.toString();
+    }
+
+    @Override
+    public void onMessage(Message message, AckToken token) {
+        try {
+            byte[] json;
+            if (message instanceof PutDocumentMessage)
+                json = JsonWriter.toByteArray(((PutDocumentMessage)message).getDocumentPut().getDocument());
+            else if (message instanceof RemoveDocumentMessage)
+                json = JsonWriter.documentRemove(((RemoveDocumentMessage)message).getDocumentId());
+            else
+                throw new UnsupportedOperationException("Received unsupported message " + message + " to streaming visitor data handler. " +
+                                                        "This handler only accepts Put and Remove");
+            received.add(new ReceivedDocument(json, token));
+        } catch (Exception e) {
+            errors.append(ExceptionUtils.getStackTrace(e)).append("\n");
+            ack(token);
+        }
+    }
+
+    /**
+     * Writes the documents received, separated by commas, to the given stream until the visit is done,
+     * acking each document once it is written.
+     */
+    void writeDocuments(OutputStream out, VisitorControlHandler controlHandler) throws IOException, InterruptedException {
+        boolean first = true;
+        while (true) {
+            ReceivedDocument document = received.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+            if (document == null) {
+                out.flush(); // Send what we have while waiting
+                if ( ! controlHandler.isDone()) continue;
+                document = received.poll(); // Drain documents received before the visit was done
+                if (document == null) break;
+            }
+            if ( ! first)
+                out.write(',');
+            first = false;
+            out.write(document.json);
+            ack(document.token);
+        }
+    }
+
+    private static class ReceivedDocument {
+
+        final byte[] json;
+        final AckToken token;
+
+        ReceivedDocument(byte[] json, AckToken token) {
+            this.json = json;
+            this.token = token;
+        }
+
+    }
+
+}
@@ -35,6 +35,7 @@ import com.yahoo.vespaclient.ClusterDef;
 import com.yahoo.vespaclient.ClusterList;
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -67,6 +68,7 @@ public class RestApi extends LoggingRequestHandler {
     private static final String FIELD_SET = "fieldSet";
     private static final String CONCURRENCY = "concurrency";
     private static final String BUCKET_SPACE = "bucketSpace";
+    private static final String STREAM = "stream";
     private static final String APPLICATION_JSON = "application/json";
     private final OperationHandler operationHandler;
     private SingleDocumentParser singleDocumentParser;
@@ -395,12 +397,21 @@ public class RestApi extends LoggingRequestHandler {
     private HttpResponse handleVisit(RestUri restUri, HttpRequest request) throws RestApiException {
         String documentSelection;
         OperationHandler.VisitOptions options;
+        boolean stream;
         try {
             documentSelection = documentSelectionFromRequest(restUri, request);
             options = visitOptionsFromRequest(request);
         } catch (BadRequestParameterException e) {
             return createInvalidParameterResponse(e.getParameter(), e.getMessage());
         }
+        try {
+            stream = parseBoolean(STREAM, request).orElse(false);
+        } catch (IllegalArgumentException e) {
+            return createInvalidParameterResponse(STREAM, e.getMessage());
+        }
+        if (stream)
+            return handleStreamingVisit(restUri, documentSelection, options);
+
         final OperationHandler.VisitResult visit = operationHandler.visit(restUri, documentSelection, options);
         final ObjectNode resultNode = mapper.createObjectNode();
         visit.token.ifPresent(t -> resultNode.put(CONTINUATION, t));
@@ -421,4 +432,34 @@ public class RestApi extends LoggingRequestHandler {
         };
         return httpResponse;
     }
+
+    /**
+     * Writes the visited documents to the response as they are received, rather than collecting them first.
+     * As the status code is sent before visiting completes, a failure during visiting is reported as
+     * an "errors" field after the documents.
+     */
+    private HttpResponse handleStreamingVisit(RestUri restUri, String documentSelection,
+                                              OperationHandler.VisitOptions options) throws RestApiException {
+        OperationHandler.VisitStream visit = operationHandler.visitStreaming(restUri, documentSelection, options);
+        return new HttpResponse(200) {
+            @Override
+            public String getContentType() { return APPLICATION_JSON; }
+            @Override
+            public void render(OutputStream outputStream) throws IOException {
+                outputStream.write(("{\"" + DOCUMENTS + "\":[").getBytes(StandardCharsets.UTF_8));
+                ObjectNode resultNode = mapper.createObjectNode();
+                try {
+                    visit.writeDocuments(outputStream).ifPresent(t -> resultNode.put(CONTINUATION, t));
+                } catch (RestApiException e) {
+                    ByteArrayOutputStream error = new ByteArrayOutputStream();
+                    e.getResponse().render(error);
+                    resultNode.set("errors", mapper.readTree(error.toByteArray()).get("errors"));
+                }
+                resultNode.put(PATH_NAME, restUri.getRawPath());
+                String trailer = resultNode.toString(); // {"continuation":...,"pathId":...}
+                outputStream.write(("]," + trailer.substring(1)).getBytes(StandardCharsets.UTF_8));
+            }
+        };
+    }
+
 }
@@ -1,6 +1,11 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.restapi;
 
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.DocumentAccess;
 import com.yahoo.documentapi.ProgressToken;
 import com.yahoo.documentapi.VisitorControlHandler;
@@ -9,6 +14,9 @@ import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.SyncParameters;
 import com.yahoo.documentapi.SyncSession;
 import com.yahoo.documentapi.messagebus.MessageBusSyncSession;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.StaticThrottlePolicy;
 import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.vdslib.VisitorStatistics;
@@ -17,7 +25,9 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -29,6 +39,8 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -108,6 +120,9 @@ public class OperationHandlerImplTest {
         int bucketsVisited = 0;
         Map<String, String> bucketSpaces = new HashMap<>();
         SyncSession mockSyncSession = mock(MessageBusSyncSession.class); // MBus session needed to avoid setRoute throwing.
+        VisitorSession visitorSession = mock(VisitorSession.class);
+        List<Message> visitedMessages = new ArrayList<>(); // Delivered to the local data handler, if any
+        boolean visitingCompletes = true;
 
         OperationHandlerImplFixture() {
             bucketSpaces.put("foo", "global");
@@ -115,12 +130,18 @@ public class OperationHandlerImplTest {
         }
 
         OperationHandlerImpl createHandler() throws Exception {
-            VisitorSession visitorSession = mock(VisitorSession.class);
-            // Pre-bake an already completed session
+            // Pre-bake an already completed session, unless visitingCompletes is false
             when(documentAccess.createVisitorSession(any(VisitorParameters.class))).thenAnswer(p -> {
                 VisitorParameters params = (VisitorParameters)p.getArguments()[0];
                 assignedParameters.set(params);
 
+                if (params.getLocalDataHandler() != null) {
+                    params.getLocalDataHandler().setSession(visitorSession);
+                    for (Message message : visitedMessages)
+                        params.getLocalDataHandler().onMessage(message, new AckToken(message));
+                }
+                if ( ! visitingCompletes) return visitorSession;
+
                 VisitorStatistics statistics = new VisitorStatistics();
                 statistics.setBucketsVisited(bucketsVisited);
                 params.getControlHandler().onVisitorStatistics(statistics);
@@ -138,6 +159,77 @@ public class OperationHandlerImplTest {
         }
     }
 
+    private static Message putMessage(String id) {
+        return new PutDocumentMessage(new DocumentPut(new Document(new DocumentType("document-type"),
+                                                                   "id:namespace:document-type::" + id)));
+    }
+
+    private static Message removeMessage(String id) {
+        return new RemoveDocumentMessage(new DocumentId("id:namespace:document-type::" + id));
+    }
+
+    @Test
+    public void streaming_visit_writes_documents_and_acks_them_after_they_are_written() throws Exception {
+        OperationHandlerImplFixture fixture = new OperationHandlerImplFixture();
+        fixture.visitedMessages.add(putMessage("foo"));
+        fixture.visitedMessages.add(removeMessage("bar"));
+        OperationHandlerImpl handler = fixture.createHandler();
+
+        OperationHandler.VisitStream stream = handler.visitStreaming(dummyVisitUri(), "", emptyVisitOptions());
+        verify(fixture.visitorSession, never()).ack(any(AckToken.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Optional<String> token = stream.writeDocuments(out);
+        String written = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(written, containsString("\"id\":\"id:namespace:document-type::foo\""));
+        assertThat(written, containsString("\"remove\":\"id:namespace:document-type::bar\""));
+        assertThat(written.indexOf("::foo") < written.indexOf("::bar"), is(true));
+        assertThat(token.isPresent(), is(false)); // The progress token of the fixture is finished
+        verify(fixture.visitorSession, times(2)).ack(any(AckToken.class));
+        verify(fixture.visitorSession).destroy();
+    }
+
+    @Test
+    public void streaming_visit_is_cancelled_when_writing_fails() throws Exception {
+        OperationHandlerImplFixture fixture = new OperationHandlerImplFixture();
+        fixture.visitedMessages.add(putMessage("foo"));
+        fixture.visitingCompletes = false;
+        OperationHandlerImpl handler = fixture.createHandler();
+
+        OperationHandler.VisitStream stream = handler.visitStreaming(dummyVisitUri(), "", emptyVisitOptions());
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException { throw new IOException("Connection closed"); }
+        };
+        try {
+            stream.writeDocuments(failing);
+            fail("Expected exception");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("Connection closed"));
+        }
+        verify(fixture.visitorSession, never()).ack(any(AckToken.class));
+        verify(fixture.visitorSession).destroy();
+    }
+
+    @Test
+    public void streaming_visit_fails_after_writing_documents_when_visiting_fails() throws Exception {
+        OperationHandlerImplFixture fixture = new OperationHandlerImplFixture();
+        fixture.visitedMessages.add(putMessage("foo"));
+        fixture.completionCode = VisitorControlHandler.CompletionCode.FAILURE;
+        OperationHandlerImpl handler = fixture.createHandler();
+
+        OperationHandler.VisitStream stream = handler.visitStreaming(dummyVisitUri(), "", emptyVisitOptions());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            stream.writeDocuments(out);
+            fail("Expected exception");
+        } catch (RestApiException e) {
+            assertThat(e.getResponse().getStatus(), is(400));
+        }
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), containsString("::foo"));
+        verify(fixture.visitorSession).destroy();
+    }
+
     private static OperationHandler.VisitOptions.Builder optionsBuilder() {
         return OperationHandler.VisitOptions.builder();
     }
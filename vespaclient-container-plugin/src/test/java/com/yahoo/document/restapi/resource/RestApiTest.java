@@ -310,6 +310,24 @@ public class RestApiTest {
         assertThat(response.body, containsString(visit_response_part3));
     }
 
+    @Test
+    public void testStreamingVisit() throws Exception {
+        Request request = new Request("http://localhost:" + getFirstListenPort() + visit_test_uri + "&stream=true");
+        HttpGet get = new HttpGet(request.getUri());
+        Response response = doRest(get);
+        assertThat(response.code, is(200));
+        assertThat(response.body, containsString(visit_response_part1));
+        assertThat(response.body, containsString(visit_response_part2));
+        assertThat(response.body, containsString(visit_response_part3));
+    }
+
+    @Test
+    public void invalid_visit_stream_parameter_returns_error_response() {
+        Request request = new Request(String.format("http://localhost:%s/document/v1/namespace/document-type/docid/?stream=badgers", getFirstListenPort()));
+        HttpGet get = new HttpGet(request.getUri());
+        assertHttp400ResponseContains(doRest(get), "Invalid 'stream' value");
+    }
+
     private static String encoded(String original) {
         try {
             return URLEncoder.encode(original, StandardCharsets.UTF_8.name());